@@ -0,0 +1,192 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+//Plans the competitive AI's moves on a background thread while the game waits for the human.
+//It keeps two speculative plans: one on the current maze (after a new game or a load), and one on
+//the maze the next regeneration will swap in, which is picked and prepared ahead of time.
+//Every maze is stamped with the grid version it is for and every plan with its start position.
+//The game only takes a plan if both still match; otherwise it plans on its own thread, so a stale
+//plan is never followed. If a plan is still being made when the game needs it, the game waits for
+//it, which is never slower than starting over.
+public class AIPlanner {
+
+    //A maze to plan on, stamped with the grid version it is (or will be) in the game.
+    public static class Layout {
+
+        public final long version;
+        public final long seed;               // generator seed, 0 if not known
+        public final MazeGrid grid;
+        public final Point entrance;
+        public final Point exit;
+        public final Terrain terrain;         // null when every step costs 1
+        public final JunctionGraph junctions; // null with terrain
+
+        //Builds the junction graph if the maze has no terrain and 'junctions' is not for it.
+        public Layout(long version, MazeGrid grid, Point entrance, Point exit, Terrain terrain,
+                      JunctionGraph junctions) {
+            this(version, 0, grid, entrance, exit, terrain, junctions);
+        }
+
+        //Like Layout(version, grid, ..), for a maze generated from 'seed'.
+        public Layout(long version, long seed, MazeGrid grid, Point entrance, Point exit, Terrain terrain,
+                      JunctionGraph junctions) {
+            this.version = version;
+            this.seed = seed;
+            this.grid = grid;
+            this.entrance = entrance;
+            this.exit = exit;
+            this.terrain = terrain;
+            if (terrain != null) {
+                this.junctions = null;
+            } else if (junctions != null && junctions.isFor(grid, entrance, exit)) {
+                this.junctions = junctions;
+            } else {
+                this.junctions = new JunctionGraph(grid, entrance, exit);
+            }
+        }
+    }
+
+    //The moves from (startX, startY) to the exit of a layout.
+    public static class Plan {
+
+        public final Layout layout;
+        public final int startX;
+        public final int startY;
+        public final MovePath moves;
+
+        Plan(Layout layout, int startX, int startY, MovePath moves) {
+            this.layout = layout;
+            this.startX = startX;
+            this.startY = startY;
+            this.moves = moves;
+        }
+
+        //Checks if this plan is for grid version 'version' and starts at (x, y).
+        public boolean isFor(long version, int x, int y) {
+            return layout.version == version && startX == x && startY == y;
+        }
+    }
+
+    private final ExecutorService planner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "maze-ai-planner");
+        t.setDaemon(true);
+        return t;
+    });
+    private final WeightedSolver weightedSolver = new WeightedSolver(); // planner thread only
+
+    // Only touched by the game thread
+    private CompletableFuture<Plan> currentPlan;
+    private CompletableFuture<Layout> nextMaze;
+    private long nextVersion;
+    private CompletableFuture<Plan> nextPlan;
+    private int nextX, nextY; // start of nextPlan
+
+    //Plans from (x, y) on the maze 'layout' supplies. The supplier runs on the planner thread.
+    public void planCurrent(Supplier<Layout> layout, int x, int y) {
+        cancel(currentPlan);
+        currentPlan = CompletableFuture.supplyAsync(() -> plan(layout.get(), x, y), planner);
+    }
+
+    //Takes the plan started by planCurrent(), waiting for it if necessary. Returns null if there is
+    //none, it failed, or it is not for this grid version and position.
+    public Plan takeCurrent(long version, int x, int y) {
+        Plan plan = join(currentPlan);
+        currentPlan = null;
+        return plan != null && plan.isFor(version, x, y) ? plan : null;
+    }
+
+    //Checks if the maze for grid version 'version' is already being prepared.
+    public boolean isPreparing(long version) {
+        return nextMaze != null && nextVersion == version;
+    }
+
+    //Prepares the maze for the next regeneration, which will be grid version 'version'. The
+    //supplier runs on the planner thread. Replaces any maze prepared before.
+    public void prepareNext(long version, Supplier<Layout> layout) {
+        cancel(nextPlan);
+        drop(nextMaze);
+        nextPlan = null;
+        nextVersion = version;
+        nextMaze = CompletableFuture.supplyAsync(layout, planner);
+    }
+
+    //Plans from (x, y) on the prepared next maze, replacing the plan from the AI's last position.
+    public void planNext(int x, int y) {
+        if (nextMaze == null || (nextPlan != null && nextX == x && nextY == y)) return;
+        cancel(nextPlan);
+        nextX = x;
+        nextY = y;
+        nextPlan = nextMaze.thenApplyAsync(layout -> plan(layout, x, y), planner);
+    }
+
+    //Takes the prepared next maze, waiting for it if necessary. Returns null if there is none, it
+    //failed, or it was prepared for another grid version. The plan on it stays for takeNextPlan().
+    public Layout takeNextMaze(long version) {
+        Layout layout = join(nextMaze);
+        nextMaze = null;
+        if (layout == null || layout.version != version) {
+            cancel(nextPlan);
+            nextPlan = null;
+            if (layout != null) close(layout.grid);
+            return null;
+        }
+        return layout;
+    }
+
+    //Takes the plan on the maze returned by takeNextMaze(), like takeCurrent().
+    public Plan takeNextPlan(long version, int x, int y) {
+        Plan plan = join(nextPlan);
+        nextPlan = null;
+        return plan != null && plan.isFor(version, x, y) ? plan : null;
+    }
+
+    //Drops all plans and the prepared maze, at the end of a game.
+    public void clear() {
+        cancel(currentPlan);
+        drop(nextMaze);
+        cancel(nextPlan);
+        currentPlan = null;
+        nextMaze = null;
+        nextPlan = null;
+    }
+
+    //Drops everything like clear() and stops the planner thread. The planner cannot be used afterwards.
+    public void close() {
+        clear();
+        planner.shutdown(); // a prepared maze being made is still freed when it is done
+    }
+
+    private Plan plan(Layout layout, int x, int y) {
+        MovePath moves = layout.terrain != null
+                ? weightedSolver.solve(layout.grid, layout.terrain, x, y, layout.exit.x, layout.exit.y)
+                : layout.junctions.solve(x, y, layout.exit.x, layout.exit.y);
+        return new Plan(layout, x, y, moves);
+    }
+
+    //Result of 'future', null if there is none or it failed or was cancelled.
+    private static <T> T join(CompletableFuture<T> future) {
+        if (future == null) return null;
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    //Frees the grid of a prepared maze the game will never take, once it is made. The game never
+    //published it, so nothing else reads it. Not cancelled: a maze being made would not be freed.
+    private static void drop(CompletableFuture<Layout> future) {
+        if (future != null) future.thenAccept(layout -> close(layout.grid));
+    }
+
+    private static void close(MazeGrid grid) {
+        if (grid instanceof PackedGrid packed) packed.close();
+    }
+
+    //Cancels work that has not started yet; running work finishes and is ignored.
+    private static void cancel(CompletableFuture<?> future) {
+        if (future != null) future.cancel(false);
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+//Many AI racers in one maze, kept in primitive arrays and advanced together once per tick.
+//All agents share one DistanceField to the exit. Each agent has a mistake rate, the chance of
+//taking a random open direction instead of the shortest step, so the race is not a tie.
+//Random choices are derived from (seed, agent, tick), so a tick gives the same result on any
+//number of threads.
+public class AgentSwarm {
+
+    private static final int BLOCK_SIZE = 4096; // agents per parallel task
+    private static final float MIN_MISTAKE_RATE = 0.05f;
+    private static final float MAX_MISTAKE_RATE = 0.45f;
+
+    private final int count;
+    private final long seed;
+    private final int[] position;     // y * width + x
+    private final int[] moves;
+    private final int[] finishTick;   // -1 while still racing
+    private final float[] mistakeRate;
+    private final int[] blockFinished;
+    private final int[] blockWinner;
+    private final ForkJoinPool pool;
+
+    private volatile DistanceField field;
+    private int tick;
+    private int finished;
+    private int winner = -1;
+
+    public AgentSwarm(int count, long seed, int threads) {
+        this.count = count;
+        this.seed = seed;
+        this.position = new int[count];
+        this.moves = new int[count];
+        this.finishTick = new int[count];
+        this.mistakeRate = new float[count];
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.blockFinished = new int[blocks];
+        this.blockWinner = new int[blocks];
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+
+        for (int i = 0; i < count; i++) {
+            double r = (mix(seed, i, -1) >>> 11) * 0x1.0p-53;
+            mistakeRate[i] = (float) (MIN_MISTAKE_RATE + r * (MAX_MISTAKE_RATE - MIN_MISTAKE_RATE));
+        }
+    }
+
+    //Places every agent on the start cell and follows the given field.
+    public void start(DistanceField field, int startX, int startY) {
+        this.field = field;
+        int start = startY * field.getWidth() + startX;
+        for (int i = 0; i < count; i++) {
+            position[i] = start;
+            moves[i] = 0;
+            finishTick[i] = -1;
+        }
+        tick = 0;
+        finished = 0;
+        winner = -1;
+    }
+
+    //Switches to a new maze of the same size (after a regeneration), keeping the positions.
+    public void setField(DistanceField field) {
+        this.field = field;
+    }
+
+    //Moves every agent that is still racing by one step.
+    public void tick() {
+        DistanceField current = field; // a regeneration may swap it, use one field for the whole tick
+        int blocks = blockFinished.length;
+        if (blocks <= 1) {
+            advanceBlock(0, current);
+        } else {
+            pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b -> advanceBlock(b, current))).join();
+        }
+
+        for (int b = 0; b < blocks; b++) {
+            finished += blockFinished[b];
+            if (winner < 0 && blockWinner[b] >= 0) winner = blockWinner[b];
+        }
+        tick++;
+    }
+
+    //Advances agents [block * BLOCK_SIZE, ...) and records who finished in this block.
+    private void advanceBlock(int block, DistanceField current) {
+        int width = current.getWidth();
+        int target = current.getTargetY() * width + current.getTargetX();
+        int from = block * BLOCK_SIZE;
+        int to = Math.min(count, from + BLOCK_SIZE);
+        int done = 0, first = -1;
+
+        for (int i = from; i < to; i++) {
+            if (finishTick[i] >= 0) continue;
+            int cell = position[i];
+            int dir = current.getStepToward(cell);
+
+            long r = mix(seed, i, tick);
+            if (dir < 0 || (r >>> 40) * 0x1.0p-24 < mistakeRate[i]) {
+                dir = randomOpening(current.getOpenings(cell), (int) r & 3);
+            }
+            if (dir < 0) continue;
+
+            cell += dir == 0 ? -width : dir == 1 ? 1 : dir == 2 ? width : -1;
+            position[i] = cell;
+            moves[i]++;
+            if (cell == target) {
+                finishTick[i] = tick;
+                done++;
+                if (first < 0) first = i;
+            }
+        }
+        blockFinished[block] = done;
+        blockWinner[block] = first;
+    }
+
+    //Picks an open direction, starting the search at 'offset'. -1 if the cell is closed.
+    private static int randomOpening(int mask, int offset) {
+        for (int k = 0; k < 4; k++) {
+            int dir = (offset + k) & 3;
+            if ((mask & (1 << dir)) != 0) return dir;
+        }
+        return -1;
+    }
+
+    //Marks the cells occupied by at least one agent, in one pass over the agents.
+    public BitSet getOccupiedCells(BitSet cells) {
+        cells.clear();
+        for (int i = 0; i < count; i++) {
+            if (finishTick[i] < 0) cells.set(position[i]);
+        }
+        return cells;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getFinishedCount() {
+        return finished;
+    }
+
+    //Index of the first agent to reach the exit (lowest index on a tie), -1 if none yet.
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getMoves(int agent) {
+        return moves[agent];
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static long mix(long seed, int agent, int tick) {
+        long z = seed ^ (agent * 0x9E3779B97F4A7C15L) ^ (tick * 0xC2B2AE3D27D4EB4FL);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
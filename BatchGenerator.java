@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Non-interactive batch generation, no Turtle needed:
+//  java BatchGenerator --size 30 --count 100000 --algorithm dfs --seed 1 --out mazes.bin [--threads 8]
+public class BatchGenerator {
+
+    private static final int RUN_BYTES = 1 << 20; // bytes written per positional write
+
+    private final int width;
+    private final int height;
+    private final int count;
+    private final MazeGenerator.Algorithm algorithm;
+    private final long firstSeed;
+    private final int threads;
+
+    public BatchGenerator(int width, int height, int count, MazeGenerator.Algorithm algorithm, long firstSeed, int threads) {
+        this.width = width;
+        this.height = height;
+        this.count = count;
+        this.algorithm = algorithm;
+        this.firstSeed = firstSeed;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) {
+        int width = 30, height = 30, count = 1000, threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        MazeGenerator.Algorithm algorithm = MazeGenerator.Algorithm.DFS;
+        Path out = Paths.get("mazes.bin");
+
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--size" -> {
+                        String[] parts = value.toLowerCase().split("x");
+                        width = Integer.parseInt(parts[0]);
+                        height = parts.length > 1 ? Integer.parseInt(parts[1]) : width;
+                    }
+                    case "--count" -> count = Integer.parseInt(value);
+                    case "--algorithm" -> algorithm = MazeGenerator.Algorithm.valueOf(value.toUpperCase());
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--out" -> out = Paths.get(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.out.println("Usage: java BatchGenerator --size N|WxH --count N --algorithm dfs|eller --seed N --out FILE [--threads N]");
+            return;
+        }
+
+        try {
+            new BatchGenerator(width, height, count, algorithm, seed, threads).run(out);
+        } catch (IOException | IllegalStateException e) {
+            String what = e instanceof IOException ? "Error writing " + out : "Error generating " + out;
+            System.out.println(what + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(out); // its header promises mazes that were never written
+            } catch (IOException ignored) {
+            }
+            System.exit(1);
+        }
+    }
+
+    //Generates all mazes and writes them to 'out'. Prints mazes/second and cells/second at the end.
+    //If any worker fails the others stop, and the failure is thrown: an IOException as is, anything
+    //else as an IllegalStateException.
+    public void run(Path out) throws IOException {
+        int recordSize = MazeBatchFile.recordSize(width, height);
+        int mazesPerRun = Math.max(1, Math.min(256, RUN_BYTES / recordSize));
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, MazeBatchFile.encodeHeader(width, height, count, algorithm, firstSeed), 0);
+
+            Thread[] workers = new Thread[threads];
+            Throwable[] failure = new Throwable[1]; // the first failure of any worker
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    // Every worker reuses one grid and one buffer, and claims runs of consecutive mazes
+                    // so each run is a single positional write at a fixed offset
+                    PackedGrid grid = null;
+                    try {
+                        grid = new PackedGrid(width, height, PackedGrid.Storage.OFF_HEAP);
+                        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+                        ByteBuffer run = ByteBuffer.allocateDirect(recordSize * mazesPerRun);
+                        int first;
+                        while ((first = next.getAndAdd(mazesPerRun)) < count) {
+                            int last = Math.min(count, first + mazesPerRun);
+                            run.clear();
+                            for (int index = first; index < last; index++) {
+                                long seed = firstSeed + index;
+                                MazeGenerator generator = new MazeGenerator(new Random(seed));
+                                generator.generate(grid, algorithm);
+                                Point[] openings = generator.createEntranceAndExit(grid);
+                                MazeBatchFile.encodeMaze(record, seed, grid, openings[0], openings[1]);
+                                run.put(record);
+                            }
+                            run.flip();
+                            writeFully(channel, run, MazeBatchFile.HEADER_SIZE + (long) first * recordSize);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) failure[0] = e;
+                        }
+                        next.set(count); // the other workers stop after their current run
+                    } finally {
+                        if (grid != null) grid.close();
+                    }
+                }, "maze-batch-" + t);
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
+            }
+            synchronized (failure) {
+                if (failure[0] instanceof IOException e) throw e;
+                if (failure[0] != null) throw new IllegalStateException(failure[0].toString(), failure[0]);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d mazes of %dx%d (%s) with %d threads in %.2f s%n",
+                count, width, height, algorithm, threads, seconds);
+        System.out.printf("%.0f mazes/s, %.0f cells/s, %d bytes per maze%n",
+                count / seconds, (double) count * width * height / seconds, recordSize);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class CellGrid implements MazeGrid, Serializable {
+
+    private final Cell[][] cells;
+    private final int width;
+    private final int height;
+
+    public CellGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new Cell[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[y][x] = new Cell(x, y);
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean hasWall(int x, int y, int dir) {
+        return cells[y][x].walls[dir];
+    }
+
+    @Override
+    public void removeWall(int x, int y, int dir) {
+        cells[y][x].walls[dir] = false;
+        int nx = x + (dir == RIGHT ? 1 : dir == LEFT ? -1 : 0);
+        int ny = y + (dir == BOTTOM ? 1 : dir == TOP ? -1 : 0);
+        if (isValidCell(nx, ny)) {
+            cells[ny][nx].walls[(dir + 2) % 4] = false;
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (Cell[] row : cells) {
+            for (Cell cell : row) {
+                cell.visited = false;
+                Arrays.fill(cell.walls, true);
+            }
+        }
+    }
+
+    //Cell object (~32 bytes) + walls array (~24 bytes) + row reference, on a 64-bit JVM with compressed oops.
+    @Override
+    public long getMemoryFootprint() {
+        return getCellCount() * 60L + height * 16L;
+    }
+
+    public Cell getCell(int x, int y) {
+        return cells[y][x];
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ChunkCache {
+
+    private final int chunkSize;
+    private final int recordSize;
+    private final int maxChunksInMemory;
+    private final int maxSpilledChunks;
+
+    // Hot chunks, in access order (eldest = least recently used)
+    private final LinkedHashMap<Long, MazeChunk> chunks;
+
+    // Spill file: chunk key -> record slot. Also LRU-bounded, dropped chunks are simply regenerated.
+    private final LinkedHashMap<Long, Integer> spillIndex;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    private final File spillFile;
+    private RandomAccessFile spill;
+
+    // Statistics
+    private long hits;
+    private long spillHits;
+    private long misses;
+    private long spillWrites;
+
+    public ChunkCache(int chunkSize, long memoryBudgetBytes, int maxSpilledChunks) throws IOException {
+        this.chunkSize = chunkSize;
+        this.recordSize = chunkSize * chunkSize;
+        long perChunk = new MazeChunk(0, 0, chunkSize).sizeInBytes();
+        this.maxChunksInMemory = (int) Math.max(9, Math.min(Integer.MAX_VALUE, memoryBudgetBytes / perChunk));
+        this.maxSpilledChunks = Math.max(0, maxSpilledChunks);
+
+        this.chunks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MazeChunk> eldest) {
+                if (size() > maxChunksInMemory) {
+                    spillChunk(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.spillIndex = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                if (size() > ChunkCache.this.maxSpilledChunks) {
+                    freeSlots.push(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.spillFile = File.createTempFile("maze-chunks", ".spill");
+        this.spillFile.deleteOnExit();
+        this.spill = new RandomAccessFile(spillFile, "rw");
+    }
+
+    //Returns the chunk if it is in memory or in the spill file, otherwise null.
+    public synchronized MazeChunk get(int chunkX, int chunkY) {
+        long key = MazeChunk.key(chunkX, chunkY);
+        MazeChunk chunk = chunks.get(key);
+        if (chunk != null) {
+            hits++;
+            return chunk;
+        }
+
+        Integer slot = spillIndex.remove(key);
+        if (slot != null) {
+            chunk = readSpilled(chunkX, chunkY, slot);
+            freeSlots.push(slot);
+            if (chunk != null) {
+                spillHits++;
+                chunks.put(key, chunk);
+                return chunk;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    //Non-counting lookup of in-memory chunks only (used by rendering).
+    public synchronized MazeChunk peek(int chunkX, int chunkY) {
+        return chunks.get(MazeChunk.key(chunkX, chunkY));
+    }
+
+    public synchronized void put(MazeChunk chunk) {
+        chunks.put(MazeChunk.key(chunk.chunkX, chunk.chunkY), chunk);
+    }
+
+    public synchronized int getChunksInMemory() {
+        return chunks.size();
+    }
+
+    public int getMaxChunksInMemory() {
+        return maxChunksInMemory;
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("chunks in memory: %d/%d, spilled: %d, hits: %d, spill hits: %d, misses: %d, spill writes: %d",
+                chunks.size(), maxChunksInMemory, spillIndex.size(), hits, spillHits, misses, spillWrites);
+    }
+
+    //Closes and deletes the spill file.
+    public synchronized void close() {
+        try {
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing chunk spill file: " + e.getMessage());
+        }
+        spillFile.delete();
+        chunks.clear();
+        spillIndex.clear();
+    }
+
+    //Writes an evicted chunk to its slot in the spill file.
+    private void spillChunk(long key, MazeChunk chunk) {
+        if (spill == null || maxSpilledChunks == 0) return;
+        int slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+        try {
+            spill.seek((long) slot * recordSize);
+            spill.write(chunk.toBytes());
+            spillIndex.put(key, slot);
+            spillWrites++;
+        } catch (IOException e) {
+            // Not fatal: the chunk is deterministic and will be regenerated on demand
+            freeSlots.push(slot);
+        }
+    }
+
+    private MazeChunk readSpilled(int chunkX, int chunkY, int slot) {
+        if (spill == null) return null;
+        byte[] data = new byte[recordSize];
+        try {
+            spill.seek((long) slot * recordSize);
+            spill.readFully(data);
+            return MazeChunk.fromBytes(chunkX, chunkY, chunkSize, data);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
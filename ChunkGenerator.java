@@ -0,0 +1,93 @@
+import java.util.Random;
+
+public class ChunkGenerator {
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    private final long worldSeed;
+    private final int chunkSize;
+
+    public ChunkGenerator(long worldSeed, int chunkSize) {
+        this.worldSeed = worldSeed;
+        this.chunkSize = chunkSize;
+    }
+
+    //Generates the chunk at (chunkX, chunkY). The result depends only on the world seed and the coordinates.
+    public MazeChunk generate(int chunkX, int chunkY) {
+        MazeChunk chunk = new MazeChunk(chunkX, chunkY, chunkSize);
+        Random random = new Random(mix(worldSeed, chunkX, chunkY, 0));
+
+        // Same randomized DFS as Maze.generate(), on primitive arrays
+        boolean[] visited = new boolean[chunkSize * chunkSize];
+        int[] stack = new int[chunkSize * chunkSize];
+        int[] candidates = new int[4];
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+
+        while (top > 0) {
+            int current = stack[top - 1];
+            int cx = current % chunkSize;
+            int cy = current / chunkSize;
+
+            int count = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                int nx = cx + DX[dir];
+                int ny = cy + DY[dir];
+                if (nx >= 0 && nx < chunkSize && ny >= 0 && ny < chunkSize && !visited[ny * chunkSize + nx]) {
+                    candidates[count++] = dir;
+                }
+            }
+
+            if (count > 0) {
+                int dir = candidates[random.nextInt(count)];
+                int nx = cx + DX[dir];
+                int ny = cy + DY[dir];
+                chunk.removeWall(cx, cy, dir);
+                chunk.removeWall(nx, ny, (dir + 2) % 4);
+                visited[ny * chunkSize + nx] = true;
+                stack[top++] = ny * chunkSize + nx;
+            } else {
+                top--;
+            }
+        }
+
+        openBoundaries(chunk);
+        return chunk;
+    }
+
+    //Position of the single passage through an edge shared by two chunks.
+    //Both neighbours derive it from the same edge key, so they always agree.
+    public int edgeOpening(int chunkX, int chunkY, boolean vertical) {
+        long h = mix(worldSeed, chunkX, chunkY, vertical ? 2 : 1);
+        return (int) Math.floorMod(h, (long) chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    //Opens one passage on each of the four chunk edges.
+    private void openBoundaries(MazeChunk chunk) {
+        int cx = chunk.chunkX;
+        int cy = chunk.chunkY;
+        int last = chunkSize - 1;
+
+        // right edge is shared with (cx + 1, cy), bottom edge with (cx, cy + 1)
+        chunk.removeWall(last, edgeOpening(cx, cy, false), 1);
+        chunk.removeWall(edgeOpening(cx, cy, true), last, 2);
+        // left and top edges belong to the neighbours' keys
+        chunk.removeWall(0, edgeOpening(cx - 1, cy, false), 3);
+        chunk.removeWall(edgeOpening(cx, cy - 1, true), 0, 0);
+    }
+
+    //SplitMix64-style hash of the seed and chunk coordinates.
+    private static long mix(long seed, int a, int b, int salt) {
+        long z = seed ^ (a * 0x9E3779B97F4A7C15L) ^ (b * 0xC2B2AE3D27D4EB4FL) ^ (salt * 0x165667B19E3779F9L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ChunkedMaze {
+
+    private final ChunkGenerator generator;
+    private final ChunkCache cache;
+    private final int chunkSize;
+
+    // Chunks currently being generated in the background
+    private final Map<Long, Boolean> pending = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    public ChunkedMaze(long worldSeed, int chunkSize, long memoryBudgetBytes) throws IOException {
+        this.chunkSize = Math.max(2, chunkSize);
+        this.generator = new ChunkGenerator(worldSeed, this.chunkSize);
+        this.cache = new ChunkCache(this.chunkSize, memoryBudgetBytes, 4096);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "maze-chunk-generator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    //Checks if a move from (x, y) by (dx, dy) is possible.
+    //Never blocks: if the current chunk is not ready yet the move is refused and the chunk is requested.
+    public boolean canMove(int x, int y, int dx, int dy) {
+        int dir = getDirectionIndex(dx, dy);
+        if (dir < 0) return false;
+        MazeChunk chunk = getChunkIfReady(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize));
+        if (chunk == null) return false;
+        return !chunk.hasWall(Math.floorMod(x, chunkSize), Math.floorMod(y, chunkSize), dir);
+    }
+
+    //Checks whether the cell at world position (x, y) is generated and in memory.
+    public boolean isReady(int x, int y) {
+        return getChunkIfReady(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize)) != null;
+    }
+
+    //Wall lookup for rendering. Cells of chunks that are not in memory are reported as fully walled.
+    public boolean hasWall(int x, int y, int dir) {
+        MazeChunk chunk = cache.peek(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize));
+        if (chunk == null) return true;
+        return chunk.hasWall(Math.floorMod(x, chunkSize), Math.floorMod(y, chunkSize), dir);
+    }
+
+    //Schedules generation of all chunks within 'radius' chunks of world position (x, y).
+    public void prefetchAround(int x, int y, int radius) {
+        int centerX = Math.floorDiv(x, chunkSize);
+        int centerY = Math.floorDiv(y, chunkSize);
+        for (int cy = centerY - radius; cy <= centerY + radius; cy++) {
+            for (int cx = centerX - radius; cx <= centerX + radius; cx++) {
+                getChunkIfReady(cx, cy);
+            }
+        }
+    }
+
+    //Generates the chunk containing (x, y) on the calling thread, used once before the first move.
+    public void loadNow(int x, int y) {
+        int cx = Math.floorDiv(x, chunkSize);
+        int cy = Math.floorDiv(y, chunkSize);
+        if (cache.get(cx, cy) == null) {
+            cache.put(generator.generate(cx, cy));
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public String getStatistics() {
+        return cache.getStatistics() + ", generating: " + pending.size();
+    }
+
+    public void close() {
+        workers.shutdownNow();
+        cache.close();
+    }
+
+    //Returns the chunk if it is available, otherwise starts generating it and returns null.
+    private MazeChunk getChunkIfReady(int cx, int cy) {
+        MazeChunk chunk = cache.get(cx, cy);
+        if (chunk != null) return chunk;
+
+        long key = MazeChunk.key(cx, cy);
+        if (pending.putIfAbsent(key, Boolean.TRUE) == null) {
+            workers.execute(() -> {
+                try {
+                    cache.put(generator.generate(cx, cy));
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        }
+        return null;
+    }
+
+    private int getDirectionIndex(int dx, int dy) {
+        if (dy < 0) return 0;   // Top
+        if (dx > 0) return 1;   // Right
+        if (dy > 0) return 2;   // Bottom
+        if (dx < 0) return 3;   // Left
+        return -1;
+    }
+}
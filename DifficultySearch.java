@@ -0,0 +1,275 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+//Picks a maze of a given difficulty within its size. Up to 'candidates' mazes are generated from
+//different seeds on several threads and scored in linear time (one pass over the cells, one BFS):
+//solution length, dead ends, and decision points (junctions) on the solution path. How long a
+//solution or how many dead ends are typical depends on the size, algorithm and braiding, so a
+//target is relative to the medians of CALIBRATION mazes of the same settings, measured on the
+//first search. The candidate closest to the target wins; the search stops early once a candidate
+//is within GOOD_ENOUGH. Only seeds are kept: the caller generates the chosen maze again with
+//MazeGenerator(new Random(seed)).generateMaze(...), which gives the same maze.
+public class DifficultySearch {
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    public static final double GOOD_ENOUGH = 0.01; // distance at which the search stops
+    public static final int CALIBRATION = 32;      // mazes measured for the typical values
+    private static final long CALIBRATION_SEED = 0x6C62272E07BB0142L;
+
+    //How a maze should compare with a typical one of its settings: factors on the median solution
+    //length, dead ends and share of decision points on the solution path.
+    public enum Target {
+        GENTLE(0.5, 1.05, 0.8),
+        NORMAL(1.0, 1.0, 1.0),
+        TOUGH(1.6, 0.95, 1.2);
+
+        public final double solutionFactor;
+        public final double deadEndFactor;
+        public final double decisionFactor;
+
+        Target(double solutionFactor, double deadEndFactor, double decisionFactor) {
+            this.solutionFactor = solutionFactor;
+            this.deadEndFactor = deadEndFactor;
+            this.decisionFactor = decisionFactor;
+        }
+    }
+
+    //The measures of one maze.
+    public static class Score {
+
+        public final long seed;
+        public final int solutionLength; // moves from entrance to exit, -1 if unreachable
+        public final int deadEnds;
+        public final int decisions;      // cells on the solution path with three or four openings
+
+        public Score(long seed, int solutionLength, int deadEnds, int decisions) {
+            this.seed = seed;
+            this.solutionLength = solutionLength;
+            this.deadEnds = deadEnds;
+            this.decisions = decisions;
+        }
+
+        //Decision points per move of the solution.
+        public double getDecisionShare() {
+            return solutionLength <= 0 ? 0 : (double) decisions / solutionLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("solution %d, dead ends %d, decisions %d (%.1f%% of the path)",
+                    solutionLength, deadEnds, decisions, 100 * getDecisionShare());
+        }
+    }
+
+    //Result of a search: the chosen candidate, its distance to the target and how many were scored.
+    public static class Result {
+
+        public final Score best;
+        public final double distance;
+        public final int scored;
+
+        Result(Score best, double distance, int scored) {
+            this.best = best;
+            this.distance = distance;
+            this.scored = scored;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final MazeGenerator.Algorithm algorithm;
+    private final double braidFraction;
+    private final int threads;
+    private volatile double[] typical; // median solution length, dead ends and decision share, null until calibrated
+
+    public DifficultySearch(int width, int height, MazeGenerator.Algorithm algorithm, double braidFraction,
+                            int threads) {
+        this.width = width;
+        this.height = height;
+        this.algorithm = algorithm;
+        this.braidFraction = braidFraction;
+        this.threads = Math.max(1, threads);
+    }
+
+    //Checks if this search generates mazes with these settings.
+    public boolean isFor(int width, int height, MazeGenerator.Algorithm algorithm, double braidFraction) {
+        return this.width == width && this.height == height && this.algorithm == algorithm
+                && this.braidFraction == braidFraction;
+    }
+
+    //Scores up to 'candidates' mazes with seeds drawn from 'random' and returns the one closest to
+    //'target', or the first one within GOOD_ENOUGH. Calibrates first if this is the first search.
+    public Result search(Target target, int candidates, Random random) {
+        calibrate();
+        long[] seeds = new long[Math.max(1, candidates)];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        Score[] best = new Score[1];
+        double[] bestDistance = {Double.MAX_VALUE};
+        int scored = scoreAll(seeds, score -> {
+            double distance = distance(target, score);
+            synchronized (bestDistance) {
+                if (best[0] == null || distance < bestDistance[0]) {
+                    bestDistance[0] = distance;
+                    best[0] = score;
+                }
+            }
+            return distance <= GOOD_ENOUGH;
+        });
+        synchronized (bestDistance) {
+            return new Result(best[0], bestDistance[0], scored);
+        }
+    }
+
+    //Measures the typical values of these settings on CALIBRATION mazes with fixed seeds, once.
+    //Throws an IllegalStateException if interrupted; the next call calibrates again.
+    public synchronized void calibrate() {
+        if (typical != null) return;
+        long[] seeds = new long[CALIBRATION];
+        Random random = new Random(CALIBRATION_SEED);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        Score[] scores = new Score[seeds.length];
+        AtomicInteger count = new AtomicInteger();
+        int scored = scoreAll(seeds, score -> {
+            scores[count.getAndIncrement()] = score;
+            return false;
+        });
+        if (scored < scores.length) throw new IllegalStateException("Calibration interrupted");
+        double[] solutions = new double[scores.length];
+        double[] deadEnds = new double[scores.length];
+        double[] decisions = new double[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            solutions[i] = Math.max(1, scores[i].solutionLength);
+            deadEnds[i] = Math.max(1, scores[i].deadEnds);
+            decisions[i] = scores[i].getDecisionShare();
+        }
+        typical = new double[]{median(solutions), median(deadEnds), Math.max(1e-3, median(decisions))};
+    }
+
+    //Median solution length, dead ends and decision share of these settings (calibrates if needed).
+    public double[] getTypical() {
+        calibrate();
+        return typical.clone();
+    }
+
+    //Sum of the squared relative errors of the three measures against the target, 0 = a perfect match.
+    public double distance(Target target, Score score) {
+        if (score.solutionLength < 0) return Double.MAX_VALUE;
+        double solution = score.solutionLength / (typical[0] * target.solutionFactor) - 1;
+        double deadEnds = score.deadEnds / (typical[1] * target.deadEndFactor) - 1;
+        double decisions = score.getDecisionShare() / (typical[2] * target.decisionFactor) - 1;
+        return solution * solution + deadEnds * deadEnds + decisions * decisions;
+    }
+
+    //Generates and scores the mazes of 'seeds' on the worker threads, each with its own grid and
+    //buffers, until all are scored or 'done' returns true for one. Returns the number scored, fewer
+    //if interrupted. A failure of any worker stops the others and is thrown once they are done.
+    private int scoreAll(long[] seeds, Predicate<Score> done) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger scored = new AtomicInteger();
+        RuntimeException[] failure = new RuntimeException[1];
+        Thread[] workers = new Thread[Math.min(threads, seeds.length)];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                PackedGrid grid = null;
+                try {
+                    Scorer scorer = new Scorer();
+                    grid = new PackedGrid(width, height, PackedGrid.Storage.OFF_HEAP);
+                    int index;
+                    while ((index = next.getAndIncrement()) < seeds.length) {
+                        Point[] openings = new MazeGenerator(new Random(seeds[index]))
+                                .generateMaze(grid, algorithm, braidFraction, null);
+                        Score score = scorer.score(grid, openings[0], openings[1], seeds[index]);
+                        scored.incrementAndGet();
+                        if (done.test(score)) next.set(seeds.length); // good enough, stop everyone
+                    }
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                    next.set(seeds.length);
+                } finally {
+                    if (grid != null) grid.close();
+                }
+            }, "difficulty-search-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                next.set(seeds.length); // the workers stop after their current maze
+                break;
+            }
+        }
+        if (failure[0] != null) throw failure[0];
+        return scored.get();
+    }
+
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    //Scoring buffers of one thread, reused for every maze it scores.
+    private static class Scorer {
+
+        private byte[] openMask = new byte[0];
+        private byte[] cameFrom = new byte[0]; // direction taken into the cell + 1, 0 = not reached
+        private int[] queue = new int[0];
+
+        //Scores a generated maze: a pass over the cells for the dead ends, a BFS from the entrance and a
+        //walk back from the exit along the solution.
+        Score score(MazeGrid grid, Point entrance, Point exit, long seed) {
+            int gridWidth = grid.getWidth();
+            int cells = (int) grid.getCellCount();
+            if (openMask.length < cells) {
+                openMask = new byte[cells];
+                cameFrom = new byte[cells];
+                queue = new int[cells];
+            }
+
+            int deadEnds = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                int open = grid.getOpenings(cell % gridWidth, cell / gridWidth);
+                openMask[cell] = (byte) open;
+                if (Integer.bitCount(open) == 1) deadEnds++;
+            }
+
+            Arrays.fill(cameFrom, 0, cells, (byte) 0);
+            int start = entrance.y * gridWidth + entrance.x;
+            int target = exit.y * gridWidth + exit.x;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            cameFrom[start] = 5;
+            while (head < tail && cameFrom[target] == 0) {
+                int current = queue[head++];
+                for (int dir = 0; dir < 4; dir++) {
+                    if ((openMask[current] & (1 << dir)) == 0) continue;
+                    int neighbour = current + DY[dir] * gridWidth + DX[dir];
+                    if (cameFrom[neighbour] == 0) {
+                        cameFrom[neighbour] = (byte) (dir + 1);
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            if (cameFrom[target] == 0) return new Score(seed, -1, deadEnds, 0);
+
+            int length = 0, decisions = 0;
+            for (int cell = target; cell != start; length++) {
+                int dir = cameFrom[cell] - 1;
+                cell -= DY[dir] * gridWidth + DX[dir];
+                if (Integer.bitCount(openMask[cell]) >= 3) decisions++;
+            }
+            return new Score(seed, length, deadEnds, decisions);
+        }
+    }
+}
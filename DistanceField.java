@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+//Distance from every cell to one target cell, computed with a single breadth-first search.
+//Immutable once built, so any number of agents and threads can read it at the same time.
+public class DistanceField {
+
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    private final int width;
+    private final int height;
+    private final int targetX;
+    private final int targetY;
+    private final byte[] openMask;   // bit d set = can move in direction d, inside the grid
+    private final byte[] toward;     // direction of the next step to the target, -1 if none
+    private final int[] distance;    // -1 = unreachable
+
+    public DistanceField(MazeGrid grid, int targetX, int targetY) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.targetX = targetX;
+        this.targetY = targetY;
+        int cells = (int) grid.getCellCount();
+        this.openMask = new byte[cells];
+        this.toward = new byte[cells];
+        this.distance = new int[cells];
+
+        for (int cell = 0; cell < cells; cell++) {
+            openMask[cell] = (byte) grid.getOpenings(cell % width, cell / width);
+        }
+        Arrays.fill(distance, -1);
+        Arrays.fill(toward, (byte) -1);
+
+        int[] queue = new int[cells];
+        int head = 0, tail = 0;
+        int target = targetY * width + targetX;
+        queue[tail++] = target;
+        distance[target] = 0;
+
+        while (head < tail) {
+            int current = queue[head++];
+            int cx = current % width, cy = current / width;
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openMask[current] & (1 << dir)) == 0) continue;
+                int next = (cy + DY[dir]) * width + cx + DX[dir];
+                if (distance[next] >= 0) continue;
+                distance[next] = distance[current] + 1;
+                toward[next] = (byte) ((dir + 2) & 3); // step back the way we came
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTargetX() {
+        return targetX;
+    }
+
+    public int getTargetY() {
+        return targetY;
+    }
+
+    //Moves left to the target, -1 if it cannot be reached.
+    public int getDistance(int x, int y) {
+        return distance[y * width + x];
+    }
+
+    //Direction (0 top, 1 right, 2 bottom, 3 left) of the next step to the target, -1 at the target or if unreachable.
+    public int getStepToward(int x, int y) {
+        return toward[y * width + x];
+    }
+
+    //Same as getStepToward, by cell index (y * width + x).
+    public int getStepToward(int cell) {
+        return toward[cell];
+    }
+
+    //Open directions of a cell by index (getOpenings never includes the entrance and exit openings).
+    public int getOpenings(int cell) {
+        return openMask[cell];
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//Runs a game on a single thread. Input lines, timer ticks, AI turns and regenerations are queued
+//as events and applied in order by the thread that calls run(), so game state has one writer.
+//Events that change the picture call requestFrame(); after each batch of queued events at most
+//one frame is rendered. Input-to-frame latency is measured for every input line whose batch ended in
+//a frame; input that changed nothing on screen (an unknown command, say) is only counted.
+public class GameEventLoop {
+
+    //A queued action. receivedNanos is the time an input line arrived, -1 for other events.
+    private static class Event {
+
+        final Runnable action;
+        final long receivedNanos;
+
+        Event(Runnable action, long receivedNanos) {
+            this.action = action;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "maze-event-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean running = true; // until stop()
+
+    // Only touched by the loop thread
+    private boolean frameRequested;
+    private long[] batchInputs = new long[16];
+    private int batchInputCount;
+    private long inputs, framedInputs, frames, totalLatencyNanos, maxLatencyNanos;
+
+    //Reads lines on a daemon thread and queues each one for 'handler'. End of input is passed on as "q".
+    public void startInput(Scanner scanner, Consumer<String> handler) {
+        Thread reader = new Thread(() -> {
+            while (running && scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (!running) break;
+                postInput(line, handler);
+            }
+            if (running) postInput("q", handler);
+        }, "maze-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    //Queues an input line, stamped with its arrival time.
+    public void postInput(String line, Consumer<String> handler) {
+        events.add(new Event(() -> handler.accept(line), System.nanoTime()));
+    }
+
+    //Queues an action for the loop thread.
+    public void post(Runnable action) {
+        events.add(new Event(action, -1));
+    }
+
+    //Queues 'action' after a delay. The timer thread only queues it, the loop thread runs it.
+    public ScheduledFuture<?> schedule(Runnable action, long delayMillis) {
+        return scheduler.schedule(() -> post(action), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Queues 'action' periodically.
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable action, long initialDelayMillis, long periodMillis) {
+        return scheduler.scheduleAtFixedRate(() -> post(action), initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Asks for one frame after the current batch of events. Loop thread only.
+    public void requestFrame() {
+        frameRequested = true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    //Applies events until stop() is called. After each batch 'onBatch' runs (to publish the new
+    //state), then 'renderer' if a frame was requested.
+    public void run(Runnable onBatch, Runnable renderer) {
+        try {
+            while (running) {
+                apply(events.take());
+                Event next;
+                while (running && (next = events.poll()) != null) {
+                    apply(next);
+                }
+                onBatch.run();
+                boolean rendered = frameRequested && running;
+                if (rendered) {
+                    frameRequested = false;
+                    renderer.run();
+                    frames++;
+                }
+                recordLatency(rendered);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            scheduler.shutdownNow();
+        }
+    }
+
+    //Ends run() after the current event. Pending timers are cancelled.
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        events.add(new Event(() -> { }, -1)); // wake the loop if it is waiting
+    }
+
+    private void apply(Event event) {
+        if (event.receivedNanos >= 0) {
+            if (batchInputCount == batchInputs.length) {
+                batchInputs = Arrays.copyOf(batchInputs, batchInputCount * 2);
+            }
+            batchInputs[batchInputCount++] = event.receivedNanos;
+        }
+        event.action.run();
+    }
+
+    //Adds the latencies of the batch's inputs if the batch ended in a frame.
+    private void recordLatency(boolean rendered) {
+        if (rendered) {
+            long now = System.nanoTime();
+            for (int i = 0; i < batchInputCount; i++) {
+                long latency = now - batchInputs[i];
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            }
+            framedInputs += batchInputCount;
+        }
+        inputs += batchInputCount;
+        batchInputCount = 0;
+    }
+
+    public long getInputCount() {
+        return inputs;
+    }
+
+    //Inputs whose latency was measured, those in batches that rendered a frame.
+    public long getFramedInputCount() {
+        return framedInputs;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public double getAverageLatencyMillis() {
+        return framedInputs == 0 ? 0 : totalLatencyNanos / 1e6 / framedInputs;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    public String getStatistics() {
+        return String.format("event loop: %d inputs (%d with a frame), %d frames, input-to-frame latency avg %.3f ms, "
+                + "max %.3f ms", inputs, framedInputs, frames, getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
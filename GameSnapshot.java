@@ -0,0 +1,124 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+//Immutable, versioned copy of the game state. Maze publishes a new one through an atomic
+//reference after every batch of changes, so renderers, saves, metrics and spectators read a
+//consistent state without locks. The grid is shared, not copied: Maze never changes a grid
+//once it has been published, nor closes it: a grid the game has replaced stays readable through
+//every snapshot that holds it and is freed by the GC with the last one. The one exception to
+//immutability is a maze still generated progressively: its walls keep opening, a snapshot shows at
+//least the batches carved before it was published, and saves and spectators get no snapshot of it
+//until it is complete.
+public class GameSnapshot {
+
+    public final long version;          // increases with every published snapshot, 0 when loaded
+    public final boolean isGameRunning; // not saved
+    public final int width;
+    public final int height;
+    public final int cellSize;
+    public final MazeGrid grid;
+    public final Player player;
+    public final Player aiPlayer;
+    public final Point entrance;
+    public final Point exit;
+    public final int humanMoveCount;
+    public final int aiMoveCount;
+    public final int elapsedTime;
+    public final boolean isCompetitiveMode;
+    public final boolean isHumanTurn;
+    public final int timeUntilNextRegen;
+    public final double braidFraction;  // -1 in saves written before it was recorded
+    public final long seed;             // of the maze the game started on, 0 if unknown
+    public final Terrain terrain;       // movement costs, null when every step costs 1
+    public final double terrainShare;   // of ice and mud on new mazes, -1 in saves written before it was recorded
+    public final VisitHeatmap heatmap;  // a copy for saves, null in published states and older saves
+
+    public GameSnapshot(long version, boolean isGameRunning, int width, int height, int cellSize, MazeGrid grid,
+                        Player player, Player aiPlayer, Point entrance, Point exit, int humanMoveCount,
+                        int aiMoveCount, int elapsedTime, boolean isCompetitiveMode, boolean isHumanTurn,
+                        int timeUntilNextRegen, double braidFraction, long seed, Terrain terrain,
+                        double terrainShare, VisitHeatmap heatmap) {
+        this.version = version;
+        this.isGameRunning = isGameRunning;
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.grid = grid;
+        // Players are mutable, keep private copies
+        this.player = player == null ? null : new Player(player.x, player.y);
+        this.aiPlayer = aiPlayer == null ? null : new Player(aiPlayer.x, aiPlayer.y);
+        this.entrance = entrance;
+        this.exit = exit;
+        this.humanMoveCount = humanMoveCount;
+        this.aiMoveCount = aiMoveCount;
+        this.elapsedTime = elapsedTime;
+        this.isCompetitiveMode = isCompetitiveMode;
+        this.isHumanTurn = isHumanTurn;
+        this.timeUntilNextRegen = timeUntilNextRegen;
+        this.braidFraction = braidFraction;
+        this.seed = seed;
+        this.terrain = terrain;
+        this.terrainShare = terrainShare;
+        this.heatmap = heatmap;
+    }
+
+    //Writes the snapshot as a save slot holds it after its header (see SaveSlots).
+    public void writeTo(ObjectOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(cellSize);
+        out.writeObject(grid);
+        out.writeObject(player);
+        out.writeObject(aiPlayer);
+        out.writeObject(entrance);
+        out.writeObject(exit);
+        out.writeInt(humanMoveCount);
+        out.writeInt(aiMoveCount);
+        out.writeInt(elapsedTime);
+        out.writeBoolean(isCompetitiveMode);
+        out.writeBoolean(isHumanTurn);
+        out.writeInt(timeUntilNextRegen);
+        out.writeDouble(braidFraction); // new fields last, so older saves still read up to here
+        out.writeLong(seed);
+        out.writeObject(terrain);
+        out.writeObject(heatmap);
+        out.writeDouble(terrainShare);
+    }
+
+    //Reads a snapshot written by writeTo().
+    public static GameSnapshot readFrom(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int width = in.readInt();
+        int height = in.readInt();
+        int cellSize = in.readInt();
+        MazeGrid grid = (MazeGrid) in.readObject();
+        Player player = (Player) in.readObject();
+        Player aiPlayer = (Player) in.readObject();
+        Point entrance = (Point) in.readObject();
+        Point exit = (Point) in.readObject();
+        int humanMoveCount = in.readInt();
+        int aiMoveCount = in.readInt();
+        int elapsedTime = in.readInt();
+        boolean isCompetitiveMode = in.readBoolean();
+        boolean isHumanTurn = in.readBoolean();
+        int timeUntilNextRegen = in.readInt();
+        double braidFraction = -1;
+        long seed = 0;
+        Terrain terrain = null;
+        double terrainShare = -1;
+        VisitHeatmap heatmap = null;
+        try {
+            braidFraction = in.readDouble();
+            seed = in.readLong();
+            terrain = (Terrain) in.readObject();
+            heatmap = (VisitHeatmap) in.readObject();
+            terrainShare = in.readDouble();
+        } catch (EOFException e) {
+            // saved before these fields existed
+        }
+        return new GameSnapshot(0, true, width, height, cellSize, grid, player, aiPlayer, entrance, exit,
+                humanMoveCount, aiMoveCount, elapsedTime, isCompetitiveMode, isHumanTurn, timeUntilNextRegen,
+                braidFraction, seed, terrain, terrainShare, heatmap);
+    }
+}
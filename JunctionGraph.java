@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+//The maze with its corridors contracted into weighted edges. Nodes are the cells that are not
+//plain corridor cells (junctions and dead ends, anything without exactly two openings) plus the
+//entrance and the exit; an edge is a corridor between two nodes, weighted by its length in moves.
+//solve() runs Dijkstra over the nodes and expands the chosen edges back into moves by walking
+//their corridors, so only the cells on the path are visited after the graph is built.
+//Built once per maze; the grid must not change afterwards (Maze never changes a published grid).
+public class JunctionGraph {
+
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    private final MazeGrid grid;
+    private final Point entrance;
+    private final Point exit;
+    private final int width;
+    private final byte[] openings;  // open directions of every cell, bit d = direction d
+    private final int[] nodeOf;     // node of every cell, -1 for corridor cells
+    private final int[] nodeCell;   // cell of every node
+    private final int[] edgeStart;  // edges of node n are [edgeStart[n], edgeStart[n + 1])
+    private final int[] edgeTarget;
+    private final int[] edgeLength;
+    private final byte[] edgeDir;   // direction the corridor leaves its node
+
+    public JunctionGraph(MazeGrid grid, Point entrance, Point exit) {
+        this.grid = grid;
+        this.entrance = entrance;
+        this.exit = exit;
+        this.width = grid.getWidth();
+        int height = grid.getHeight();
+        int cells = (int) grid.getCellCount();
+        this.openings = new byte[cells];
+        this.nodeOf = new int[cells];
+
+        // Nodes, and the number of edges leaving each
+        int nodes = 0;
+        long edges = 0;
+        for (int y = 0, cell = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, cell++) {
+                int open = grid.getOpenings(x, y);
+                openings[cell] = (byte) open;
+                boolean isNode = Integer.bitCount(open) != 2 || isAt(entrance, x, y) || isAt(exit, x, y);
+                nodeOf[cell] = isNode ? nodes++ : -1;
+                if (isNode) edges += Integer.bitCount(open);
+            }
+        }
+        this.nodeCell = new int[nodes];
+        this.edgeStart = new int[nodes + 1];
+        this.edgeTarget = new int[(int) edges];
+        this.edgeLength = new int[(int) edges];
+        this.edgeDir = new byte[(int) edges];
+
+        // Walk every corridor from both of its ends
+        int edge = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int node = nodeOf[cell];
+            if (node < 0) continue;
+            nodeCell[node] = cell;
+            edgeStart[node] = edge;
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings[cell] & (1 << dir)) == 0) continue;
+                int end = cell, length = 0;
+                for (int d = dir; ; ) {
+                    end += DY[d] * width + DX[d];
+                    length++;
+                    if (nodeOf[end] >= 0) break;
+                    d = Integer.numberOfTrailingZeros(openings[end] & ~(1 << ((d + 2) & 3)));
+                }
+                edgeTarget[edge] = nodeOf[end];
+                edgeLength[edge] = length;
+                edgeDir[edge] = (byte) dir;
+                edge++;
+            }
+        }
+        edgeStart[nodes] = edge;
+    }
+
+    //Checks if this graph was built for this grid with these openings.
+    public boolean isFor(MazeGrid grid, Point entrance, Point exit) {
+        return this.grid == grid && isAt(entrance, this.entrance.x, this.entrance.y)
+                && isAt(exit, this.exit.x, this.exit.y);
+    }
+
+    //Finds a shortest path from (startX, startY) to (targetX, targetY), like MazeSolver.solve().
+    //Returns an empty path if the target cannot be reached.
+    public MovePath solve(int startX, int startY, int targetX, int targetY) {
+        int start = startY * width + startX;
+        int target = nodeOf[targetY * width + targetX];
+        if (target < 0 || !isCompact()) {
+            return MazeSolver.solve(grid, startX, startY, targetX, targetY); // only nodes can be targets
+        }
+
+        int nodes = nodeCell.length;
+        int[] distance = new int[nodes];
+        int[] cameBy = new int[nodes];   // edge into the node, or -1 - first direction for a start node
+        int[] previous = new int[nodes]; // node that edge leaves from
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        long[] heap = new long[16];      // distance << 32 | node
+        int heapSize = 0;
+
+        // Start on a node, or between the two nodes at the ends of its corridor
+        if (nodeOf[start] >= 0) {
+            distance[nodeOf[start]] = 0;
+            cameBy[nodeOf[start]] = -1;
+            heap[heapSize++] = nodeOf[start];
+        } else {
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings[start] & (1 << dir)) == 0) continue;
+                int end = start, length = 0;
+                for (int d = dir; ; ) {
+                    end += DY[d] * width + DX[d];
+                    length++;
+                    if (nodeOf[end] >= 0) break;
+                    d = Integer.numberOfTrailingZeros(openings[end] & ~(1 << ((d + 2) & 3)));
+                }
+                int node = nodeOf[end];
+                if (length < distance[node]) {
+                    distance[node] = length;
+                    cameBy[node] = -1 - dir;
+                    heap = push(heap, heapSize++, (long) length << 32 | node);
+                }
+            }
+        }
+
+        // Dijkstra with a binary heap of (distance, node); stale entries are skipped
+        while (heapSize > 0) {
+            long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+            int node = (int) top;
+            int nodeDistance = (int) (top >>> 32);
+            if (nodeDistance > distance[node]) continue;
+            if (node == target) break;
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int next = edgeTarget[e];
+                int nextDistance = nodeDistance + edgeLength[e];
+                if (nextDistance < distance[next]) {
+                    distance[next] = nextDistance;
+                    cameBy[next] = e;
+                    previous[next] = node;
+                    heap = push(heap, heapSize++, (long) nextDistance << 32 | next);
+                }
+            }
+        }
+        if (distance[target] == Integer.MAX_VALUE) return new MovePath();
+
+        // Edges back from the target, then walk them forward
+        int[] path = new int[16]; // nodes on the path, from the target back
+        int count = 0;
+        int node = target;
+        while (cameBy[node] >= 0) {
+            if (count == path.length) path = Arrays.copyOf(path, count * 2);
+            path[count++] = node;
+            node = previous[node];
+        }
+        MovePath moves = new MovePath(distance[target]);
+        if (nodeOf[start] < 0) {
+            walk(start, -1 - cameBy[node], moves);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            int next = path[i];
+            walk(nodeCell[previous[next]], edgeDir[cameBy[next]], moves);
+        }
+        return moves;
+    }
+
+    //Checks if the graph is small enough to beat a plain BFS: with more than a third of the cells as
+    //nodes (short corridors, as Eller's algorithm makes) the heap costs more than the skipped cells.
+    public boolean isCompact() {
+        return 3L * nodeCell.length <= openings.length;
+    }
+
+    public int getNodeCount() {
+        return nodeCell.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeTarget.length;
+    }
+
+    //Bytes of the graph arrays.
+    public long getMemoryFootprint() {
+        return openings.length + 4L * nodeOf.length + 4L * nodeCell.length + 4L * edgeStart.length
+                + 9L * edgeTarget.length;
+    }
+
+    //Appends the moves from 'cell' through the corridor leaving in 'dir' up to the next node.
+    private void walk(int cell, int dir, MovePath moves) {
+        for (int d = dir; ; ) {
+            moves.add(d);
+            cell += DY[d] * width + DX[d];
+            if (nodeOf[cell] >= 0) return;
+            d = Integer.numberOfTrailingZeros(openings[cell] & ~(1 << ((d + 2) & 3)));
+        }
+    }
+
+    private static long[] push(long[] heap, int size, long value) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        heap[size] = value;
+        siftUp(heap, size);
+        return heap;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long value = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) return;
+        long value = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= value) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    private static boolean isAt(Point point, int x, int y) {
+        return point != null && point.x == x && point.y == y;
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Results of finished games in an append-only log, with the best results per board kept in memory.
+//A board is one maze size, mode and terrain share, since moves on ice and mud cost more than one.
+//Every result is one RECORD_SIZE record:
+//  long seed, int width, int height, int seconds, int moves,
+//  int timestamp (epoch seconds), byte mode, byte flags, short checksum
+//where bit 0 of 'flags' is set for a win and bits 1-7 hold the terrain share in percent (0 in logs
+//written before terrain was recorded, when boards had none).
+//An append holds a file lock on one byte far past the end of the log, which excludes appends of
+//other processes too, while it takes the current end (rounded up to a whole record) and writes the
+//record there with one positional write. A record that was not (fully) written, after a crash,
+//fails its checksum and is skipped when the index is rebuilt on startup.
+//The index holds the INDEX_DEPTH best wins of each board by time and by moves, in concurrent
+//sorted sets, so top(k) is a walk over the first k entries.
+public class Leaderboard implements Closeable {
+
+    public enum Mode { SINGLE, COMPETITIVE, SWARM }
+
+    public enum Order { TIME, MOVES }
+
+    public static final int RECORD_SIZE = 32;
+    public static final int INDEX_DEPTH = 100;
+    private static final int READ_CHUNK = RECORD_SIZE * 32 * 1024; // 1 MB
+    private static final Mode[] MODES = Mode.values();
+    private static final int RECENT_BOARDS = 64;
+    private static final int MAX_TERRAIN_PERCENT = 100;
+    private static final long APPEND_LOCK_POSITION = Long.MAX_VALUE - 1; // never part of the log
+    // File locks are held by the whole JVM and do not exclude its threads: one append at a time in it
+    private static final ReentrantLock APPEND_LOCK = new ReentrantLock();
+
+    //One result. 'position' is its offset in the log, which makes equal results distinct.
+    public static class Entry {
+
+        public final long seed;
+        public final int width;
+        public final int height;
+        public final Mode mode;
+        public final int terrainPercent; // share of cells with ice or mud
+        public final boolean won;
+        public final int seconds;
+        public final int moves;
+        public final long timestamp; // epoch seconds
+        public final long position;
+
+        Entry(long seed, int width, int height, Mode mode, int terrainPercent, boolean won, int seconds, int moves,
+              long timestamp, long position) {
+            this.seed = seed;
+            this.width = width;
+            this.height = height;
+            this.mode = mode;
+            this.terrainPercent = terrainPercent;
+            this.won = won;
+            this.seconds = seconds;
+            this.moves = moves;
+            this.timestamp = timestamp;
+            this.position = position;
+        }
+    }
+
+    private static final Comparator<Entry> BY_TIME = Comparator.<Entry>comparingInt(e -> e.seconds)
+            .thenComparingInt(e -> e.moves).thenComparingLong(e -> e.position);
+    private static final Comparator<Entry> BY_MOVES = Comparator.<Entry>comparingInt(e -> e.moves)
+            .thenComparingInt(e -> e.seconds).thenComparingLong(e -> e.position);
+
+    //The best entries of one order, at most about INDEX_DEPTH of them.
+    private static class Ranking {
+
+        final boolean byTime;
+        final Comparator<Entry> order;
+        final ConcurrentSkipListSet<Entry> best;
+        final AtomicInteger size = new AtomicInteger();
+        volatile Entry worst; // last entry once the ranking is full
+
+        Ranking(boolean byTime) {
+            this.byTime = byTime;
+            this.order = byTime ? BY_TIME : BY_MOVES;
+            this.best = new ConcurrentSkipListSet<>(order);
+        }
+
+        //Cheap check without an Entry: false if the result cannot get into the ranking.
+        boolean accepts(int seconds, int moves) {
+            Entry last = worst;
+            if (last == null) return true;
+            int primary = byTime ? seconds : moves, lastPrimary = byTime ? last.seconds : last.moves;
+            int secondary = byTime ? moves : seconds, lastSecondary = byTime ? last.moves : last.seconds;
+            return primary < lastPrimary || (primary == lastPrimary && secondary <= lastSecondary);
+        }
+
+        void offer(Entry entry) {
+            Entry last = worst;
+            if (last != null && order.compare(entry, last) >= 0) return; // the common case once the ranking is full
+            if (best.add(entry) && size.incrementAndGet() > INDEX_DEPTH && best.pollLast() != null) {
+                size.decrementAndGet();
+            }
+            if (size.get() >= INDEX_DEPTH) worst = best.last();
+        }
+    }
+
+    //The rankings of one maze size, mode and terrain share.
+    private static class Board {
+
+        final Ranking byTime = new Ranking(true);
+        final Ranking byMoves = new Ranking(false);
+    }
+
+    private final FileChannel log;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final Map<Long, Board> boards = new ConcurrentHashMap<>();
+    private final long rebuildNanos;
+
+    //Opens (or creates) the log and rebuilds the index from it.
+    public Leaderboard(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long start = System.nanoTime();
+        long size = log.size();
+        rebuild(size);
+        this.rebuildNanos = System.nanoTime() - start;
+    }
+
+    //Appends a result and adds it to the index if it is a win. Safe to call from any number of threads
+    //and processes. Results other processes append are only seen by the next Leaderboard opened.
+    public Entry append(int width, int height, Mode mode, int terrainPercent, long seed, boolean won, int seconds,
+                        int moves) throws IOException {
+        if (terrainPercent < 0 || terrainPercent > MAX_TERRAIN_PERCENT) {
+            throw new IllegalArgumentException("Terrain share must be 0-100%: " + terrainPercent);
+        }
+        long timestamp = System.currentTimeMillis() / 1000;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        Entry entry;
+        APPEND_LOCK.lock();
+        FileLock lock = null;
+        try {
+            lock = log.lock(APPEND_LOCK_POSITION, 1, false);
+            // A torn last record is skipped by rebuild(); appends continue at the next whole record
+            long end = (log.size() + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+            entry = new Entry(seed, width, height, mode, terrainPercent, won, seconds, moves, timestamp, end);
+            encode(entry, record);
+            record.flip();
+            while (record.hasRemaining()) {
+                log.write(record, end + record.position());
+            }
+        } finally {
+            try {
+                if (lock != null) lock.release();
+            } finally {
+                APPEND_LOCK.unlock();
+            }
+        }
+        index(entry);
+        return entry;
+    }
+
+    //The k best wins on a board, best first. k is at most INDEX_DEPTH.
+    public List<Entry> top(int width, int height, Mode mode, int terrainPercent, Order order, int k) {
+        List<Entry> result = new ArrayList<>(Math.min(k, INDEX_DEPTH));
+        Board board = boards.get(key(width, height, mode, terrainPercent));
+        if (board == null) return result;
+        Ranking ranking = order == Order.TIME ? board.byTime : board.byMoves;
+        Iterator<Entry> it = ranking.best.iterator();
+        while (result.size() < k && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    //Number of results in the log, valid ones only.
+    public long getEntryCount() {
+        return entries.get();
+    }
+
+    //Records that failed their checksum when the index was rebuilt.
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public double getRebuildMillis() {
+        return rebuildNanos / 1e6;
+    }
+
+    //Writes everything appended so far to the disk. Appends themselves do not wait for the disk.
+    public void flush() throws IOException {
+        log.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            log.force(false);
+        } finally {
+            log.close();
+        }
+    }
+
+    //Reads the log in chunks and indexes every valid record. Most wins are worse than the ones
+    //already ranked and are rejected before an Entry is created.
+    private void rebuild(long size) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(READ_CHUNK);
+        long position = 0, valid = 0, invalid = 0;
+        long[] recentKeys = new long[RECENT_BOARDS]; // a few boards by key hash, to skip the map lookup
+        Board[] recentBoards = new Board[RECENT_BOARDS];
+        Arrays.fill(recentKeys, -1);
+        while (position + RECORD_SIZE <= size) {
+            chunk.clear();
+            chunk.limit((int) Math.min(READ_CHUNK, (size - position) / RECORD_SIZE * RECORD_SIZE));
+            while (chunk.hasRemaining() && log.read(chunk, position + chunk.position()) > 0) {
+                // read the whole chunk
+            }
+            chunk.flip();
+            for (; chunk.remaining() >= RECORD_SIZE; position += RECORD_SIZE) {
+                long seed = chunk.getLong();
+                int width = chunk.getInt();
+                int height = chunk.getInt();
+                int seconds = chunk.getInt();
+                int moves = chunk.getInt();
+                int timestamp = chunk.getInt();
+                int mode = chunk.get();
+                int flags = chunk.get() & 0xFF;
+                short checksum = chunk.getShort();
+                int terrainPercent = flags >>> 1;
+                if (width <= 0 || height <= 0 || mode < 0 || mode >= MODES.length
+                        || terrainPercent > MAX_TERRAIN_PERCENT
+                        || checksum != checksum(seed, width, height, seconds, moves, timestamp, mode, flags)) {
+                    invalid++;
+                    continue;
+                }
+                valid++;
+                if ((flags & 1) == 0) continue;
+
+                long key = key(width, height, MODES[mode], terrainPercent);
+                int slot = (int) (key ^ (key >>> 41) ^ (key >>> 9)) & (RECENT_BOARDS - 1);
+                if (recentKeys[slot] != key) {
+                    recentBoards[slot] = boards.computeIfAbsent(key, k -> new Board());
+                    recentKeys[slot] = key;
+                }
+                Board board = recentBoards[slot];
+                if (!board.byTime.accepts(seconds, moves) && !board.byMoves.accepts(seconds, moves)) continue;
+                Entry entry = new Entry(seed, width, height, MODES[mode], terrainPercent, true, seconds, moves,
+                        Integer.toUnsignedLong(timestamp), position);
+                board.byTime.offer(entry);
+                board.byMoves.offer(entry);
+            }
+        }
+        entries.addAndGet(valid);
+        skipped.addAndGet(invalid);
+    }
+
+    //Counts an appended entry and ranks it if it is a win.
+    private void index(Entry entry) {
+        entries.incrementAndGet();
+        if (!entry.won) return;
+        Board board = boards.computeIfAbsent(key(entry.width, entry.height, entry.mode, entry.terrainPercent),
+                k -> new Board());
+        board.byTime.offer(entry);
+        board.byMoves.offer(entry);
+    }
+
+    private static void encode(Entry entry, ByteBuffer out) {
+        out.putLong(entry.seed);
+        out.putInt(entry.width);
+        out.putInt(entry.height);
+        out.putInt(entry.seconds);
+        out.putInt(entry.moves);
+        out.putInt((int) entry.timestamp);
+        int flags = entry.terrainPercent << 1 | (entry.won ? 1 : 0);
+        out.put((byte) entry.mode.ordinal());
+        out.put((byte) flags);
+        out.putShort(checksum(entry.seed, entry.width, entry.height, entry.seconds, entry.moves,
+                (int) entry.timestamp, entry.mode.ordinal(), flags));
+    }
+
+    private static short checksum(long seed, int width, int height, int seconds, int moves, int timestamp,
+                                  int mode, int flags) {
+        long h = seed * 0x9E3779B97F4A7C15L;
+        h = (h ^ width) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ height) * 0x94D049BB133111EBL;
+        h = (h ^ seconds) * 0x9E3779B97F4A7C15L;
+        h = (h ^ moves) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ timestamp) * 0x94D049BB133111EBL;
+        h = (h ^ (mode << 8 | flags)) * 0x9E3779B97F4A7C15L;
+        return (short) (h >>> 48);
+    }
+
+    private static long key(int width, int height, Mode mode, int terrainPercent) {
+        return ((long) width << 41) | ((long) height << 9) | ((long) terrainPercent << 2) | mode.ordinal();
+    }
+}
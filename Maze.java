@@ -1,10 +1,12 @@
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Maze implements Serializable {
 
@@ -14,12 +16,36 @@ public class Maze implements Serializable {
     
     private final int PLAYER_COLOR = 0x0000FF;    // Blue
     private final int AI_COLOR = 0xFF0000;        // Red
+    private final int SWARM_COLOR = 0xFF8800;     // Orange
     private final int WALL_COLOR = 0x000000;      // Black
     private final int ENTRANCE_COLOR = 0x00FF00;  // Green
     private final int EXIT_COLOR = 0xFF0000;      // Red
     private final int TIMER_TEXT_COLOR = 0x000000;// Black
     private final int REGENERATION_TIME = 180; // seconds
+    private final int AI_MOVE_DELAY = 500; // ms
+    private final int PLAN_AHEAD_TIME = 10; // seconds before a regeneration the AI plans on the next maze
     private final int PATH_COLOR = 0x00FF00; // Green path for solve/next10
+    private final int ICE_COLOR = 0x88CCFF;       // Light blue
+    private final int MUD_COLOR = 0x8B5A2B;       // Brown
+    private final int[] HEAT_COLORS = {0xFFE080, 0xFFB040, 0xFF7020, 0xE02000}; // Yellow to red, one per level
+    private final String SAVE_DIRECTORY = "saves";
+    private final String DEFAULT_SLOT = "quicksave";
+    private final String AUTOSAVE_SLOT = "autosave";
+    private final String LEGACY_SAVE_FILE = "savegame.dat"; // single save from before slots, imported once
+    private final String LEGACY_SLOT = "savegame";
+    private final String LEADERBOARD_FILE = "leaderboard.log";
+    private final String HEATMAP_DIRECTORY = "heatmaps"; // in SAVE_DIRECTORY, one file per maze
+    private final long HEATMAP_DISK_BUDGET = 256L << 20; // least recently written heatmap files beyond it are deleted
+    private final int LEADERBOARD_SHOWN = 5;
+    private final long POOL_MEMORY_BUDGET = 64L * 1024 * 1024; // bytes of pre-generated mazes
+    private final int POOL_MAZES_PER_SIZE = 2;
+    private final int ENDLESS_CHUNK_SIZE = 16;
+    private final long ENDLESS_MEMORY_BUDGET = 4L * 1024 * 1024; // bytes of chunks kept in memory
+    private final int MAX_SWARM_AGENTS = 100_000;
+    private final long PROGRESSIVE_MIN_CELLS = 250_000; // larger new games start while their maze is generated
+    private final int PROGRESSIVE_BATCHES = 64; // frames drawn while a maze is generated
+    private final int GENERATION_ATTEMPTS = 3; // mazes generated before strict validation gives up
+    private final int DIFFICULTY_CANDIDATES = 32; // mazes scored for a challenge
     
     //FIELDS
      
@@ -29,28 +55,53 @@ public class Maze implements Serializable {
     private int cellSize;
     
     // Maze data
-    private Cell[][] grid;
+    private volatile MazeGrid grid;
+    private transient AtomicReference<GameSnapshot> state = new AtomicReference<>(); // last published state
+    private transient long stateVersion;
+    private transient long gridVersion; // counts the grids the game has played on, stamps AI plans
     private final Random random;
+    private MazeGenerator.Algorithm algorithm = MazeGenerator.Algorithm.DFS;
+    private PackedGrid.Storage packedStorage; // null = object grid (Cell[][])
+    private double braidFraction; // share of dead ends removed, 0 = perfect maze
+    private double terrainShare; // share of cells with ice or mud, 0 = every step costs 1
+    private DifficultySearch.Target difficultyTarget; // null = any maze
+    private transient volatile DifficultySearch difficultySearch; // for the current settings, see newMazeSeed()
+    private Terrain terrain; // movement costs of the current maze, null when every step costs 1
+    private boolean strictValidation = true; // reject invalid mazes and saves instead of warning
+    private transient MazePool mazePool;
+    private transient ProgressiveGeneration generation; // maze still being generated, null once complete
     
     // Entrance and exit cells
-    private Cell entrance;
-    private Cell exit;
+    private Point entrance;
+    private Point exit;
     
     // Player and AI
     private Player player;
     private Player aiPlayer;
     
     // AI solution path
-    private final List<Character> aiSolution;
-    private List<Character> aiPlannedMoves;
-    
-    // Turtle for drawing
+    private MovePath aiSolution;
+    private transient JunctionGraph junctions; // corridors of the current grid, for findSolution()
+    private transient WeightedSolver weightedSolver; // for findSolution() on terrain
+    private transient Reachability reachability; // for mazes accepted without strict validation
+    private MovePath aiPlannedMoves;
+    private transient AIPlanner aiPlanner = new AIPlanner(); // plans ahead while the human thinks
+    private transient boolean aiPlanPending; // aiPlanner is planning on the current grid
+    
+    // Turtle for drawing, or the terminal renderer
     private transient Turtle turtle;
-    
-    // Game timers
-    private transient Timer gameTimer;
-    private  transient Timer displayTimer;
-    private transient Timer regenerationTimer;
+    private transient TerminalRenderer terminal;
+    
+    // Game event loop and its timers (game state is only changed on the loop thread)
+    private transient GameEventLoop eventLoop;
+    private transient ScheduledFuture<?> gameTimer;
+    private transient ScheduledFuture<?> regenerationTimer;
+    private transient ScheduledFuture<?> planAheadTimer;
+    private transient ScheduledFuture<?> autosaveTimer;
+    private transient Deque<Character> deferredMoves = new ArrayDeque<>(); // typed during the AI's turn
+    private transient boolean aiTurnScheduled; // an AI move is waiting in the event loop
+    private int autosaveInterval; // seconds, 0 = off
+    private int regenerationInterval = REGENERATION_TIME; // seconds
     
     // Game state
     private int elapsedTime;
@@ -63,20 +114,42 @@ public class Maze implements Serializable {
     private int aiMoveCount;
     private boolean isHumanTurn;
 
+    // Endless mode (lazily generated chunks, not saved)
+    private transient ChunkedMaze endlessMaze;
+
+    // Swarm mode (many AI racers sharing one distance field, not saved)
+    private transient AgentSwarm swarm;
+    private transient BitSet swarmCells = new BitSet();
+
+    // Results of finished games, opened with the first result
+    private transient Leaderboard leaderboard;
+    private long mazeSeed; // generator seed of the current maze
+    private VisitHeatmap heatmap; // cells entered by the human and the AI on the current maze, null in endless mode
+
+    // Spectators watching over the network, null until started
+    private transient SpectatorServer spectators;
+
+    // Save slots and background save writer
+    private transient SaveSlots saveSlots = new SaveSlots(Paths.get(SAVE_DIRECTORY));
+    private transient SaveWriter saveWriter = new SaveWriter();
+    private String currentSlot = DEFAULT_SLOT;
+
     // Scanner (no longer static)
     private transient Scanner scanner = new Scanner(System.in);
 
     //CONSTRUCTOR
     public Maze(Turtle turtle, int width, int height, int cellSize) {
         this.turtle = turtle;
+        this.terminal = turtle == null ? new TerminalRenderer(System.out) : null;
         this.width = Math.max(MIN_SIZE, width);
         this.height = Math.max(MIN_SIZE, height);
         this.cellSize = Math.max(MIN_CELL_SIZE, cellSize);
         this.random = new Random();
+        this.mazePool = new MazePool(algorithm, packedStorage, braidFraction, POOL_MEMORY_BUDGET);
         
         this.grid = initializeGrid();
-        this.aiSolution = new ArrayList<>();
-        this.aiPlannedMoves = new ArrayList<>();
+        this.aiSolution = new MovePath();
+        this.aiPlannedMoves = new MovePath();
         
         this.isCompetitiveMode = false;
         this.humanMoveCount = 0;
@@ -91,11 +164,17 @@ public class Maze implements Serializable {
         aiMoveCount = 0;
         humanMoveCount = 0;
         elapsedTime = 0;
-        generate();
+        if ((long) width * height >= PROGRESSIVE_MIN_CELLS && difficultyTarget == null) {
+            generateProgressively();
+        } else {
+            generate();
+        }
         draw();
         initializePlayer();
+        startHeatmap();
         startTimer();
         startRegenerationTimer();
+        startAutosaveTimer();
         runGameLoop();
     }
     
@@ -109,26 +188,71 @@ public class Maze implements Serializable {
         isCompetitiveMode = true;
         isHumanTurn = true;
 
-        player = new Player(entrance);
-        aiPlayer = new Player(entrance);
+        player = new Player(entrance.x, entrance.y);
+        aiPlayer = new Player(entrance.x, entrance.y);
+        startHeatmap();
 
-        aiSolution.clear();
-        aiPlannedMoves.clear();
-
-        findSolution(getCell(aiPlayer.x, aiPlayer.y), new HashSet<>(), new ArrayList<>());
-        aiPlannedMoves.addAll(aiSolution);
+        planAIInBackground();
 
         draw();
         redrawMazeAndPlayer();
         startTimer();
         startRegenerationTimer();
+        startAutosaveTimer();
         runCompetitiveGameLoop();
     }
 
+    //Starts an endless game on a lazily generated, chunked maze.
+    public void startEndlessMode() {
+        humanMoveCount = 0;
+        elapsedTime = 0;
+        isCompetitiveMode = false;
+        try {
+            endlessMaze = new ChunkedMaze(random.nextLong(), ENDLESS_CHUNK_SIZE, ENDLESS_MEMORY_BUDGET);
+        } catch (IOException e) {
+            System.out.println("Error starting endless mode: " + e.getMessage());
+            return;
+        }
+        endlessMaze.loadNow(0, 0);
+        endlessMaze.prefetchAround(0, 0, 1);
+        player = new Player(0, 0);
+        heatmap = null; // the endless maze has no fixed size
+
+        startTimer();
+        redrawEndlessView();
+        runEndlessGameLoop();
+    }
+
+    //Starts a race against many AI agents that all follow one shared distance field to the exit.
+    public void startSwarmMode(int agents) {
+        humanMoveCount = 0;
+        aiMoveCount = 0;
+        elapsedTime = 0;
+        isCompetitiveMode = false;
+        generate();
+        terrain = null; // the swarm's distance field counts every step as 1
+
+        player = new Player(entrance.x, entrance.y);
+        startHeatmap();
+        swarm = new AgentSwarm(Math.max(1, Math.min(MAX_SWARM_AGENTS, agents)), random.nextLong(),
+                Runtime.getRuntime().availableProcessors());
+        swarm.start(new DistanceField(grid, exit.x, exit.y), entrance.x, entrance.y);
+
+        startTimer();
+        startRegenerationTimer();
+        redrawMazeAndPlayers();
+        runSwarmGameLoop();
+    }
+
     //menu
     public void play() {
+        // Generate mazes for every difficulty while the player reads the menu
+        for (int size : new int[]{10, 20, 30}) {
+            mazePool.fill(size, size, POOL_MAZES_PER_SIZE);
+        }
+
         System.out.println("Welcome to the Maze Game!");
-        System.out.println("1) Load Last Saved Game");
+        System.out.println("1) Load Saved Game");
         System.out.println("2) Start New Game");
 
         int choice = -1;
@@ -138,7 +262,10 @@ public class Maze implements Serializable {
             scanner.nextLine();
         }
             if (choice == 1) {
-                loadGame();
+                String slot = chooseSlot();
+                if (slot != null) {
+                    loadGame(slot);
+                }
                 if (isGameRunning) {
                     System.out.println("Continuing the loaded game...");
                     continueGame();
@@ -161,6 +288,33 @@ public class Maze implements Serializable {
                 default -> size = 10; // Easy
             }
 
+            // Braiding removes dead ends and adds loops
+            System.out.print("Remove dead ends (0-100%, Enter for none): ");
+            String braidInput = scanner.nextLine().trim().replace("%", "");
+            try {
+                setBraid(braidInput.isEmpty() ? 0 : Integer.parseInt(braidInput) / 100.0);
+            } catch (NumberFormatException e) {
+                setBraid(0);
+            }
+
+            // A challenge picks the closest of several candidate mazes
+            System.out.print("Challenge (gentle/normal/tough, Enter for any maze): ");
+            String challengeInput = scanner.nextLine().trim().toUpperCase();
+            try {
+                setDifficultyTarget(challengeInput.isEmpty() ? null : DifficultySearch.Target.valueOf(challengeInput));
+            } catch (IllegalArgumentException e) {
+                setDifficultyTarget(null);
+            }
+
+            // Ice and mud make some steps cost more than one move
+            System.out.print("Ice and mud (0-100% of cells, Enter for none): ");
+            String terrainInput = scanner.nextLine().trim().replace("%", "");
+            try {
+                setTerrain(terrainInput.isEmpty() ? 0 : Integer.parseInt(terrainInput) / 100.0);
+            } catch (NumberFormatException e) {
+                setTerrain(0);
+            }
+
             // We'll keep cellSize always 20px
             int cellSize = 20;
 
@@ -172,12 +326,36 @@ public class Maze implements Serializable {
 
             // Choose mode
             System.out.println("Select game mode:");
-            System.out.println("1) Single Player\n2) Competitive (vs AI)");
+            System.out.println("1) Single Player\n2) Competitive (vs AI)\n3) Endless\n4) Swarm (vs many AIs)");
             int mode = scanner.nextInt();
             scanner.nextLine();
 
+            if (turtle != null) {
+                System.out.print("Draw in this terminal instead of the window? (y/N): ");
+                setTerminalRendering(scanner.nextLine().trim().equalsIgnoreCase("y"));
+            }
+
+            if (spectators == null) {
+                System.out.print("Port for spectators (Enter for none): ");
+                String portInput = scanner.nextLine().trim();
+                if (!portInput.isEmpty()) {
+                    try {
+                        System.out.println("Spectators can connect on port " + startSpectatorServer(Integer.parseInt(portInput)) + ".");
+                    } catch (NumberFormatException | IOException e) {
+                        System.out.println("No spectators: " + e.getMessage());
+                    }
+                }
+            }
+
             if (mode == 2) {
                 startCompetitiveMode();
+            } else if (mode == 3) {
+                startEndlessMode();
+            } else if (mode == 4) {
+                System.out.print("Number of AI racers (1-" + MAX_SWARM_AGENTS + "): ");
+                int agents = scanner.nextInt();
+                scanner.nextLine();
+                startSwarmMode(agents);
             } else {
                 startGame();
             }
@@ -196,101 +374,162 @@ public class Maze implements Serializable {
     }
 
     
-     //Generates the maze (mit DFS).
+     //Generates the maze (mit DFS, or the selected algorithm).
+     //Takes a pre-generated maze from the pool if one is ready.
      
     public void generate() {
-        resetGrid();
-        Cell startCell = grid[0][0];
-        startCell.visited = true;
-
-        List<Cell> stack = new ArrayList<>();
-        stack.add(startCell);
+        generation = null;
+        gridVersion++;
+        if (!takePooledMaze()) {
+            MazePool.Entry generated = generateMaze(newMazeSeed()); // published grids are never modified
+            grid = generated.grid;
+            mazeSeed = generated.seed;
+            entrance = generated.entrance;
+            exit = generated.exit;
+        }
+        terrain = terrainFor(mazeSeed);
+        fillPool();
+    }
 
-        while (!stack.isEmpty()) {
-            Cell current = stack.get(stack.size() - 1);
-            Cell next = getUnvisitedNeighbor(current);
+    
+    //Switches to a pre-generated maze if the pool has one of this size.
+     
+    private boolean takePooledMaze() {
+        if (difficultyTarget != null) return false; // pooled mazes are random
+        MazePool.Entry pooled = mazePool.take(width, height);
+        if (pooled == null) return false;
+        grid = pooled.grid;
+        entrance = pooled.entrance;
+        exit = pooled.exit;
+        mazeSeed = pooled.seed;
+        return true;
+    }
 
-            if (next != null) {
-                removeWalls(current, next);
-                next.visited = true;
-                stack.add(next);
-            } else {
-                stack.remove(stack.size() - 1);
-            }
+    
+    //Starts generating the maze on a background thread and returns as soon as its entrance and exit
+    //are chosen, so the game starts on the unfinished maze. Each batch of carved cells asks for a frame;
+    //the player can move once the entrance is carved. Takes a pre-generated maze from the pool if one is ready.
+     
+    private void generateProgressively() {
+        generation = null;
+        gridVersion++;
+        if (takePooledMaze()) {
+            terrain = terrainFor(mazeSeed);
+            fillPool();
+            return;
         }
-        createEntranceAndExit();
+        MazeGrid target = initializeGrid(); // only the generator thread writes it until it is complete
+        GameEventLoop loop = getEventLoop();
+        ProgressiveGeneration progressive = new ProgressiveGeneration(target,
+                target.getCellCount() / PROGRESSIVE_BATCHES, () -> loop.post(this::requestRedraw));
+        generation = progressive;
+        grid = target;
+        mazeSeed = random.nextLong();
+        Point[] openings = progressive.start(new MazeGenerator(new Random(mazeSeed)), algorithm, braidFraction,
+                done -> {
+                    MazeValidator.Result result = validate(target, done[0], done[1]);
+                    loop.post(() -> finishGeneration(progressive, result));
+                });
+        entrance = openings[0];
+        exit = openings[1];
+        terrain = terrainFor(mazeSeed);
+        fillPool();
     }
 
     
-    //Saves the current game state to a file (savegame.dat).
+    //Saves the current game state to the current save slot.
      
     public void saveGame() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("savegame.dat"))) {
-            out.writeInt(this.width);
-            out.writeInt(this.height);
-            out.writeInt(this.cellSize);
-            out.writeObject(this.grid);
-            out.writeObject(this.player);
-            out.writeObject(this.aiPlayer);
-            out.writeObject(this.entrance);
-            out.writeObject(this.exit);
-            out.writeInt(this.humanMoveCount);
-            out.writeInt(this.aiMoveCount);
-            out.writeInt(this.elapsedTime);
-            out.writeBoolean(this.isCompetitiveMode);
-            out.writeBoolean(this.isHumanTurn);
-
-        int timePassedSinceLastRegen = this.elapsedTime % REGENERATION_TIME;
-        int timeUntilNextRegen = REGENERATION_TIME - timePassedSinceLastRegen;
-        out.writeInt(timeUntilNextRegen);
-
-            System.out.println("Game saved successfully.");
-        } catch (IOException e) {
-            System.out.println("Error saving game: " + e.getMessage());
-        }
+        saveGame(currentSlot);
     }
 
     
-    //Loads the game state from a file (savegame.dat).
+    //Saves the current game state to the named slot (saves/<slot>.sav), which becomes the current slot.
+     
+    public void saveGame(String slot) {
+        currentSlot = SaveSlots.sanitize(slot);
+        saveToSlot(currentSlot);
+    }
+
     
-    @SuppressWarnings("unchecked")
-    public void loadGame() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream("savegame.dat"))) {
-            this.width = in.readInt();
-            this.height = in.readInt();
-            this.cellSize = in.readInt();
-            this.grid = (Cell[][]) in.readObject();
-            this.player = (Player) in.readObject();
-            this.aiPlayer = (Player) in.readObject();
-            this.entrance = (Cell) in.readObject();
-            this.exit = (Cell) in.readObject();
-            this.humanMoveCount = in.readInt();
-            this.aiMoveCount = in.readInt();
-            this.elapsedTime = in.readInt();
-            this.isCompetitiveMode = in.readBoolean();
-            this.isHumanTurn = in.readBoolean();
+    //Saves every 'seconds' seconds while a game is running, 0 turns autosave off.
+     
+    public void setAutosaveInterval(int seconds) {
+        this.autosaveInterval = Math.max(0, seconds);
+    }
 
-            
+    
+    //Regenerates the maze every 'seconds' seconds (REGENERATION_TIME by default) in the next game.
+     
+    public void setRegenerationInterval(int seconds) {
+        this.regenerationInterval = Math.max(1, seconds);
+    }
 
+    
+    //Loads the game state from the current save slot.
+    
+    public void loadGame() {
+        loadGame(currentSlot);
+    }
+
+    
+    //Loads the game state from the named slot. Only this slot's file is read.
+    
+    public void loadGame(String slot) {
+        String name = SaveSlots.sanitize(slot);
+        if (!saveSlots.exists(name)) {
+            System.out.println("No saved game in slot '" + name + "'.");
+            return;
+        }
+        try {
+            GameSnapshot snapshot = saveSlots.load(name);
+            String problem = checkSave(snapshot);
+            if (problem != null) {
+                System.out.println("Slot '" + name + "' is corrupt: " + problem);
+                return;
+            }
+            currentSlot = name;
+            if (snapshot.braidFraction >= 0) setBraid(snapshot.braidFraction);
+            // New mazes of the game keep its terrain; older saves only have the terrain itself
+            setTerrain(snapshot.terrainShare >= 0 ? snapshot.terrainShare
+                    : snapshot.terrain != null ? snapshot.terrain.getShare() : 0);
+            this.width = snapshot.width;
+            this.height = snapshot.height;
+            this.cellSize = snapshot.cellSize;
+            this.grid = snapshot.grid;
+            this.gridVersion++;
+            this.player = snapshot.player;
+            this.aiPlayer = snapshot.aiPlayer;
+            this.entrance = snapshot.entrance;
+            this.exit = snapshot.exit;
+            this.humanMoveCount = snapshot.humanMoveCount;
+            this.aiMoveCount = snapshot.aiMoveCount;
+            this.elapsedTime = snapshot.elapsedTime;
+            this.isCompetitiveMode = snapshot.isCompetitiveMode;
+            this.isHumanTurn = snapshot.isHumanTurn;
+            this.mazeSeed = snapshot.seed;
+            this.terrain = snapshot.terrain;
+            this.heatmap = snapshot.heatmap != null ? snapshot.heatmap : new VisitHeatmap(width, height);
 
             System.out.println("Game loaded successfully.");
             isGameRunning = true;
 
             if (isCompetitiveMode) {
-                aiSolution.clear();
-                aiPlannedMoves.clear();
-                findSolution(getCell(aiPlayer.x, aiPlayer.y), new HashSet<>(), new ArrayList<>());
-                aiPlannedMoves.addAll(aiSolution);
+                planAIInBackground();
             }
 
 
             
             startTimer();
-            int timePassedSinceLastRegen = elapsedTime % REGENERATION_TIME;
-            int timeUntilNextRegen = REGENERATION_TIME - timePassedSinceLastRegen;
+            int timePassedSinceLastRegen = elapsedTime % regenerationInterval;
+            int timeUntilNextRegen = regenerationInterval - timePassedSinceLastRegen;
             startRegenerationTimer(timeUntilNextRegen);
+            startAutosaveTimer();
+            if (isCompetitiveMode && !isHumanTurn) {
+                scheduleAITurn(); // saved while the AI's move was pending
+            }
            
-            redrawMazeAndPlayer();
+            requestRedraw();
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Error loading game: " + e.getMessage());
         }
@@ -300,30 +539,105 @@ public class Maze implements Serializable {
      //Draws the maze (walls, entrance, exit, timer, etc.).
      
     public void draw() {
+        if (terminal != null) {
+            publishState(); // drawn right away, not as a frame of the event loop
+            renderTerminal();
+            return;
+        }
         if (turtle == null) {
             throw new IllegalStateException("Turtle not initialized");
         }
         setupTurtle();
         drawMazeStructure();
+        drawTerrain();
         colorEntranceAndExit();
         drawTimer();
     }
 
     
-    public Cell getEntrance() {
+    public Point getEntrance() {
         return entrance;
     }
 
     
-    public Cell getExit() {
+    public Point getExit() {
         return exit;
     }
 
-    public Cell[][] getGrid() {
+    //Latest published game state, or null before the first game. Never blocks, safe from any thread.
+    //The snapshot stays readable for as long as the caller keeps it, also after the game has moved on
+    //to another grid: the game never closes a grid it has published.
+    public GameSnapshot getState() {
+        return state.get();
+    }
+
+    public MazeGrid getGrid() {
         return grid;
     }
 
     
+    //Selects the generation algorithm used by generate().
+     
+    public void setAlgorithm(MazeGenerator.Algorithm algorithm) {
+        this.algorithm = algorithm;
+        replacePool();
+    }
+
+    
+    //Selects packed 2-bit wall storage (off-heap or memory-mapped), or null for the object grid.
+    //Takes effect the next time the grid is initialized.
+     
+    public void setPackedStorage(PackedGrid.Storage storage) {
+        this.packedStorage = storage;
+        replacePool();
+    }
+
+    //Closes the maze pool and starts a new one for the current settings.
+    private void replacePool() {
+        mazePool.close();
+        mazePool = new MazePool(algorithm, packedStorage, braidFraction, POOL_MEMORY_BUDGET);
+    }
+
+    //Draws in the console with ANSI escape codes instead of the Turtle window.
+    public void setTerminalRendering(boolean enabled) {
+        this.terminal = enabled ? new TerminalRenderer(System.out) : null;
+    }
+
+    //Removes this share (0..1) of the dead ends from new mazes. Braided mazes have loops.
+    public void setBraid(double fraction) {
+        double clamped = Math.max(0, Math.min(1, fraction));
+        if (clamped == braidFraction) return; // keep the mazes already in the pool
+        this.braidFraction = clamped;
+        replacePool();
+    }
+
+    //Makes new mazes as close to this challenge as DifficultySearch can find, or any maze for null.
+    //Mazes are then generated when needed instead of taken from the pool.
+    public void setDifficultyTarget(DifficultySearch.Target target) {
+        this.difficultyTarget = target;
+    }
+
+    //Covers this share (0..1) of the cells of new mazes with ice and mud, which cost more moves to enter.
+    public void setTerrain(double share) {
+        this.terrainShare = Math.max(0, Math.min(1, share));
+    }
+
+    //Lets spectators watch the games of this Maze on 'port' (0 = any free port). Returns the port.
+    public int startSpectatorServer(int port) throws IOException {
+        if (spectators == null) {
+            spectators = new SpectatorServer(port);
+        }
+        return spectators.getPort();
+    }
+
+    
+    //In strict mode (the default) a generated maze or a save that fails MazeValidator is an error;
+    //otherwise it is only reported.
+    public void setStrictValidation(boolean strict) {
+        this.strictValidation = strict;
+    }
+
+    
     public int getWidth() {
         return width;
     }
@@ -357,21 +671,18 @@ public class Maze implements Serializable {
     
      //Initializes the maze grid with empty cells.
      
-    private Cell[][] initializeGrid() {
-        Cell[][] newGrid = new Cell[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newGrid[y][x] = new Cell(x, y);
-            }
+    private MazeGrid initializeGrid() {
+        if (packedStorage != null) {
+            return new PackedGrid(width, height, packedStorage);
         }
-        return newGrid;
+        return new CellGrid(width, height);
     }
 
     
      //Initializes the player at the entrance.
     
     private void initializePlayer() {
-        player = new Player(entrance);
+        player = new Player(entrance.x, entrance.y);
         drawPlayerPosition();
     }
 
@@ -379,28 +690,8 @@ public class Maze implements Serializable {
      //Runs the main game loop for single-player mode.
      
     private void runGameLoop() {
-        while (isGameRunning) {
-            System.out.print("Move (WASD/solve/next/save/load/q): ");
-            String input = scanner.nextLine().toLowerCase();
-            if (input.isEmpty()) continue;
-
-            switch (input) {
-                case "q" -> {
-                    stopGame();
-                    return;
-                }
-                case "solve" -> solveMaze();
-                case "next" -> provideNext10Steps();
-                case "save" -> saveGame();
-                case "load" -> loadGame();
-                default -> {
-                    if ("wasd".indexOf(input.charAt(0)) != -1) {
-                        movePlayer(input.charAt(0));
-                    }
-                }
-            }
-        }
-        stopGame();
+        printPrompt();
+        runEventLoop();
     }
 
     
@@ -409,49 +700,364 @@ public class Maze implements Serializable {
     private void runCompetitiveGameLoop() {
         System.out.println("Competitive Mode! Take turns moving.");
         System.out.println("Use WASD keys to move, 'q' to quit.");
+        if (!isHumanTurn) {
+            scheduleAITurn();
+        }
+        printPrompt();
+        runEventLoop();
+    }
 
-        while (isGameRunning) {
-            if (isHumanTurn) {
-                System.out.print("Your turn (WASD/save/load/q): ");
-                String input = scanner.nextLine().toLowerCase();
-                if (input.isEmpty()) continue;
+    
+    //Runs the game loop for swarm mode: every human move is followed by one tick of all agents.
+     
+    private void runSwarmGameLoop() {
+        System.out.println("Swarm Mode! Race " + swarm.getCount() + " AI racers to the exit.");
+        printPrompt();
+        runEventLoop();
+    }
 
-                switch (input) {
-                    case "q" -> {
-                        stopGame();
-                        return;
-                    }
-                    case "save" -> saveGame();
-                    case "load" -> loadGame();
-                    default -> {
-                        if ("wasd".indexOf(input.charAt(0)) != -1) {
-                            movePlayer(input.charAt(0));
-                            isHumanTurn = false;
-                            System.out.println("Moves - You: " + humanMoveCount + ", AI: " + aiMoveCount);
-                        }
-                    }
-                }
+    
+    //Runs the game loop for endless mode.
+     
+    private void runEndlessGameLoop() {
+        System.out.println("Endless Mode! The maze keeps going in every direction.");
+        printPrompt();
+        runEventLoop();
+    }
+
+    
+    //Reads input on its own thread and applies input, timer ticks, AI turns and regenerations
+    //one at a time on this thread until the game ends. At most one frame is drawn per batch.
+     
+    private void runEventLoop() {
+        GameEventLoop loop = getEventLoop();
+        publishState();
+        loop.startInput(scanner, this::handleInput);
+        loop.run(this::publishState, this::renderFrame);
+        stopGame();
+    }
+
+    
+    //Applies one input line (on the game thread), then prompts for the next one.
+     
+    private void handleInput(String line) {
+        String input = line.toLowerCase();
+        if (!input.isEmpty()) {
+            if (endlessMaze != null) {
+                handleEndlessInput(input);
+            } else if (swarm != null) {
+                handleSwarmInput(input);
+            } else if (isCompetitiveMode) {
+                handleCompetitiveInput(input);
             } else {
-                // AI's turn
-                System.out.println("AI's turn...");
-                makeAIMove();
-                aiMoveCount++;
-                isHumanTurn = true;
-                System.out.println("Moves - You: " + humanMoveCount + ", AI: " + aiMoveCount);
-                delay(500);
+                handleSingleInput(input);
+            }
+        }
+        printPrompt();
+    }
+
+    
+    private void printPrompt() {
+        if (!isGameRunning) return;
+        if (endlessMaze != null) {
+            System.out.print("Move (WASD/stats/q): ");
+        } else if (swarm != null) {
+            System.out.print("Move (WASD/q): ");
+        } else if (isCompetitiveMode) {
+            if (isHumanTurn) System.out.print("Your turn (WASD/save [slot]/load [slot]/scores/heat/q): ");
+        } else {
+            System.out.print("Move (WASD/solve/next/save [slot]/load [slot]/scores/heat/q): ");
+        }
+    }
+
+    
+    private void handleSingleInput(String input) {
+        if (generation != null && isWaitingForGeneration(input)) return;
+        if (handleSlotCommand(input)) return;
+
+        switch (input) {
+            case "q" -> quitGame();
+            case "solve" -> solveMaze();
+            case "next" -> provideNext10Steps();
+            case "heat" -> showHeatmap();
+            case "scores" -> printLeaderboard(Leaderboard.Mode.SINGLE);
+            case "save" -> saveGame();
+            case "load" -> loadGame();
+            default -> {
+                if ("wasd".indexOf(input.charAt(0)) != -1) {
+                    movePlayer(input.charAt(0));
+                }
             }
+        }
+    }
+
+    
+    //While the maze is generated the player can move once the entrance is carved, and quit or look at
+    //the scores; solving, saving and loading wait for the complete maze. Says why if 'input' has to wait.
+     
+    private boolean isWaitingForGeneration(String input) {
+        if (input.equals("q") || input.equals("scores")) return false;
+        boolean command = input.equals("solve") || input.equals("next") || input.equals("heat")
+                || input.startsWith("save") || input.startsWith("load");
+        if (!command && generation.isEntranceReady()) return false;
+        System.out.printf("The maze is still being generated (%.0f%% carved)%s.%n", 100 * generation.getProgress(),
+                command ? "" : ", the entrance is not ready yet");
+        return true;
+    }
+
+    
+    //Moves typed while the AI is still on its turn wait in deferredMoves, nothing else waits for the AI.
+     
+    private void handleCompetitiveInput(String input) {
+        if (handleSlotCommand(input)) return;
+
+        switch (input) {
+            case "q" -> quitGame();
+            case "save" -> saveGame();
+            case "load" -> loadGame();
+            case "scores" -> printLeaderboard(Leaderboard.Mode.COMPETITIVE);
+            case "heat" -> showHeatmap();
+            default -> {
+                if ("wasd".indexOf(input.charAt(0)) == -1) return;
+                if (isHumanTurn) {
+                    playHumanTurn(input.charAt(0));
+                } else {
+                    deferredMoves.add(input.charAt(0));
+                }
+            }
+        }
+    }
+
+    
+    private void playHumanTurn(char move) {
+        movePlayer(move);
+        if (!isGameRunning) return;
+        isHumanTurn = false;
+        System.out.println("Moves - You: " + humanMoveCount + ", AI: " + aiMoveCount);
+        scheduleAITurn();
+    }
+
+    
+    //The AI moves AI_MOVE_DELAY ms later, as an event: the game thread never sleeps. Only one AI move
+    //waits at a time, also when a game is loaded while the previous one's AI move is still waiting.
+     
+    private void scheduleAITurn() {
+        if (aiTurnScheduled) return;
+        aiTurnScheduled = true;
+        System.out.println("AI's turn...");
+        getEventLoop().schedule(this::playAITurn, AI_MOVE_DELAY);
+    }
+
+    
+    private void playAITurn() {
+        aiTurnScheduled = false;
+        if (!isGameRunning || isHumanTurn) return;
+        int cost = makeAIMove();
+        if (!isGameRunning) return;
+        speculateRegeneration(); // from the AI's new position, while the human thinks
+        aiMoveCount += cost;
+        isHumanTurn = true;
+        System.out.println("Moves - You: " + humanMoveCount + ", AI: " + aiMoveCount);
+        requestRedraw();
+
+        if (!deferredMoves.isEmpty()) {
+            playHumanTurn(deferredMoves.poll());
+        } else {
+            printPrompt();
+        }
+    }
+
+    
+    private void handleSwarmInput(String input) {
+        if (input.equals("q")) {
+            quitGame();
+            return;
+        }
+        if ("wasd".indexOf(input.charAt(0)) == -1) return;
+
+        int[] movement = getMovementDeltas(input.charAt(0));
+        if (canMove(player.x, player.y, movement[0], movement[1])) {
+            updatePlayerPosition(movement[0], movement[1]);
+            humanMoveCount++;
+        }
+        if (player.x == exit.x && player.y == exit.y) {
+            int racers = swarm.getCount();
+            redrawMazeAndPlayers();
+            stopGame();
+            System.out.println("You win in " + humanMoveCount + " moves, ahead of " + racers + " AI racers!");
+            recordResult(Leaderboard.Mode.SWARM, true);
+            return;
+        }
+
+        long start = System.nanoTime();
+        swarm.tick();
+        double tickMillis = (System.nanoTime() - start) / 1e6;
+        aiMoveCount = swarm.getTick();
+
+        if (swarm.getWinner() >= 0) {
+            int winner = swarm.getWinner();
             redrawMazeAndPlayers();
+            stopGame();
+            System.out.println("Game Over! AI racer #" + winner + " wins in " + aiMoveCount + " moves.");
+            System.out.println("Your moves: " + humanMoveCount);
+            recordResult(Leaderboard.Mode.SWARM, false);
+            return;
+        }
+        requestRedraw();
+        System.out.printf("Tick %d: %d racers, %.3f ms%n", aiMoveCount, swarm.getCount(), tickMillis);
+    }
+
+    
+    private void handleEndlessInput(String input) {
+        switch (input) {
+            case "q" -> {
+                System.out.println("You walked " + humanMoveCount + " moves in " + formatTime(elapsedTime) + ".");
+                quitGame();
+            }
+            case "stats" -> System.out.println(endlessMaze.getStatistics());
+            default -> {
+                if ("wasd".indexOf(input.charAt(0)) != -1) {
+                    moveEndlessPlayer(input.charAt(0));
+                }
+            }
+        }
+    }
+
+    
+    private void quitGame() {
+        System.out.println(mazePool.getStatistics());
+        if (eventLoop != null) {
+            System.out.println(eventLoop.getStatistics());
+        }
+        if (spectators != null) {
+            System.out.println(spectators.getStatistics());
+        }
+        stopGame();
+        if (spectators != null) {
+            spectators.close(); // after the final state, stops its thread
+            spectators = null;
+        }
+    }
+
+    
+    //Moves the player in endless mode and requests the chunks around the new position.
+    
+    private void moveEndlessPlayer(char direction) {
+        int[] movement = getMovementDeltas(direction);
+        int dx = movement[0], dy = movement[1];
+
+        if (!endlessMaze.isReady(player.x, player.y)) {
+            System.out.println("Generating the maze ahead, try again...");
+            endlessMaze.prefetchAround(player.x, player.y, 1);
+            return;
+        }
+        if (endlessMaze.canMove(player.x, player.y, dx, dy)) {
+            updatePlayerPosition(dx, dy);
+            humanMoveCount++;
+            endlessMaze.prefetchAround(player.x, player.y, 1);
+            requestRedraw();
         }
     }
 
     
-      //Makes a single AI move from its planned path.
+    //Draws the part of the endless maze around the player (width x height cells).
+    
+    private void redrawEndlessView() {
+        if (turtle == null || endlessMaze == null) return;
+        setupTurtle();
+
+        int originX = player.x - width / 2;
+        int originY = player.y - height / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double startX = x * cellSize;
+                double startY = y * cellSize;
+                if (y == 0 && endlessMaze.hasWall(originX + x, originY + y, 0)) {
+                    drawWall(startX, startY, startX + cellSize, startY);
+                }
+                if (x == 0 && endlessMaze.hasWall(originX + x, originY + y, 3)) {
+                    drawWall(startX, startY, startX, startY + cellSize);
+                }
+                if (endlessMaze.hasWall(originX + x, originY + y, 1)) {
+                    drawWall(startX + cellSize, startY, startX + cellSize, startY + cellSize);
+                }
+                if (endlessMaze.hasWall(originX + x, originY + y, 2)) {
+                    drawWall(startX, startY + cellSize, startX + cellSize, startY + cellSize);
+                }
+            }
+        }
+
+        turtle.color(PLAYER_COLOR);
+        drawPlayer(new Player(player.x - originX, player.y - originY), cellSize / 3);
+        drawTimer();
+    }
+
+    
+    //Handles "save <slot>" and "load <slot>". Returns false for any other input.
      
-    private void makeAIMove() {
-        if (!aiPlannedMoves.isEmpty()) {
-            char move = aiPlannedMoves.remove(0);
-            moveAIPlayer(move);
+    private boolean handleSlotCommand(String input) {
+        if (input.startsWith("save ")) {
+            saveGame(input.substring(5));
+            return true;
+        }
+        if (input.startsWith("load ")) {
+            loadGame(input.substring(5));
+            return true;
         }
+        return false;
+    }
+
+    
+    //Lists all save slots (headers only) and lets the player pick one. Returns null if none was chosen.
+     
+    private String chooseSlot() {
+        List<SaveSlots.Slot> slots;
+        try {
+            if (saveSlots.importLegacy(Paths.get(LEGACY_SAVE_FILE), LEGACY_SLOT)) {
+                System.out.println("Moved " + LEGACY_SAVE_FILE + " to the slot '" + LEGACY_SLOT + "'.");
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            System.out.println("Could not import " + LEGACY_SAVE_FILE + ": " + e.getMessage());
+        }
+        try {
+            slots = saveSlots.list();
+        } catch (IOException e) {
+            System.out.println("Error listing saves: " + e.getMessage());
+            return null;
+        }
+        if (slots.isEmpty()) {
+            System.out.println("No saved games.");
+            return null;
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        for (int i = 0; i < slots.size(); i++) {
+            SaveSlots.Slot slot = slots.get(i);
+            String moves = slot.isCompetitiveMode
+                    ? slot.humanMoveCount + "/" + slot.aiMoveCount
+                    : String.valueOf(slot.humanMoveCount);
+            System.out.printf("%d) %-20s %dx%d %-11s %s  moves %s  %s%n", i + 1, slot.name, slot.width, slot.height,
+                    slot.isCompetitiveMode ? "competitive" : "single", formatTime(slot.elapsedTime), moves,
+                    dateFormat.format(new Date(slot.timestamp)));
+        }
+        System.out.print("Choose a save (1-" + slots.size() + ", 0 to cancel): ");
+        int choice = scanner.nextInt();
+        scanner.nextLine();
+        return choice >= 1 && choice <= slots.size() ? slots.get(choice - 1).name : null;
+    }
+
+    
+      //Makes a single AI move from its planned path. Returns the moves it cost: 1, or more on ice and mud.
+     
+    private int makeAIMove() {
+        if (aiPlanPending) {
+            aiPlanPending = false;
+            followPlan(aiPlanner.takeCurrent(gridVersion, aiPlayer.x, aiPlayer.y));
+        }
+        int dir = aiPlannedMoves.poll();
+        if (dir < 0) return 1;
+        moveAIPlayer(MovePath.toMove(dir));
+        return moveCost(aiPlayer.x, aiPlayer.y);
     }
 
     
@@ -474,6 +1080,7 @@ public class Maze implements Serializable {
     private void updateAIPosition(int dx, int dy) {
         aiPlayer.x += dx;
         aiPlayer.y += dy;
+        if (heatmap != null) heatmap.visitAI(aiPlayer.x, aiPlayer.y);
     }
 
     
@@ -487,6 +1094,45 @@ public class Maze implements Serializable {
             System.out.println("Game Over! AI wins in " + aiMoveCount + " moves!");
             System.out.println("Time elapsed: " + finalTime + " seconds");
             System.out.println("Your moves: " + humanMoveCount);
+            recordResult(Leaderboard.Mode.COMPETITIVE, false);
+        }
+    }
+
+    
+     //Draws one frame of the current mode.
+    
+    private void renderFrame() {
+        syncGeneration();
+        if (endlessMaze != null) {
+            redrawEndlessView();
+        } else if (terminal != null) {
+            renderTerminal();
+        } else {
+            redrawMazeAndPlayers();
+        }
+    }
+
+    
+    //Draws the last published state in the terminal, only changed characters are written. The event
+    //loop publishes after every batch, so a frame adds no snapshot of its own.
+    
+    private void renderTerminal() {
+        GameSnapshot snapshot = state.get();
+        if (snapshot == null) return; // nothing published yet
+        if (generation != null) terminal.invalidateWalls(); // the walls are still opening
+        terminal.setAgents(swarm != null ? swarm.getOccupiedCells(swarmCells) : null);
+        terminal.render(snapshot);
+    }
+
+    
+    //Asks the event loop for a frame, or draws right away when no game loop is running.
+    
+    private void requestRedraw() {
+        if (eventLoop != null) {
+            eventLoop.requestFrame();
+        } else {
+            publishState(); // what the event loop does before each frame
+            renderFrame();
         }
     }
 
@@ -502,6 +1148,29 @@ public class Maze implements Serializable {
             } else {
                 drawPlayerPosition();
             }
+            drawSwarm();
+        }
+    }
+
+    
+    //Draws every occupied cell of the swarm once, however many agents share it.
+     
+    private void drawSwarm() {
+        if (turtle == null || swarm == null) return;
+        swarm.getOccupiedCells(swarmCells);
+        double half = Math.max(2, cellSize / 6.0);
+
+        turtle.color(SWARM_COLOR);
+        for (int cell = swarmCells.nextSetBit(0); cell >= 0; cell = swarmCells.nextSetBit(cell + 1)) {
+            double centerX = (cell % width) * cellSize + cellSize / 2.0;
+            double centerY = (cell / width) * cellSize + cellSize / 2.0;
+            turtle.moveTo(centerX - half, centerY - half);
+            turtle.penDown();
+            turtle.lineTo(centerX + half, centerY - half);
+            turtle.lineTo(centerX + half, centerY + half);
+            turtle.lineTo(centerX - half, centerY + half);
+            turtle.lineTo(centerX - half, centerY - half);
+            turtle.penUp();
         }
     }
 
@@ -546,346 +1215,491 @@ public class Maze implements Serializable {
         if (gameTimer != null) return;
 
         isGameRunning = true;
-
-        gameTimer = new Timer();
-        gameTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                elapsedTime++;
-            }
-        }, 1000, 1000);
+        gameTimer = getEventLoop().scheduleAtFixedRate(() -> elapsedTime++, 1000, 1000);
     }
 
     
-    //Starts the regeneration timer (auto-regenerates the maze every REGENERATION_TIME seconds).
+    //Starts the regeneration timer (auto-regenerates the maze every regenerationInterval seconds).
      
     private void startRegenerationTimer() {
-        startRegenerationTimer(REGENERATION_TIME);
-    }
-private void startRegenerationTimer(int initialDelaySeconds) {
-    regenerationTimer = new Timer();
-    regenerationTimer.scheduleAtFixedRate(
-        new TimerTask() {
-            @Override
-            public void run() {
-                regenerateMaze();
-            }
-        },
-        initialDelaySeconds * 1000L,  
-        REGENERATION_TIME * 1000L     
-    );
-}
+        startRegenerationTimer(regenerationInterval);
+    }
+
+    private void startRegenerationTimer(int initialDelaySeconds) {
+        if (regenerationTimer != null) {
+            regenerationTimer.cancel(false);
+        }
+        if (planAheadTimer != null) {
+            planAheadTimer.cancel(false);
+        }
+        if (difficultyTarget != null) prepareNextMaze();
+        regenerationTimer = getEventLoop().scheduleAtFixedRate(this::regenerateMaze,
+                initialDelaySeconds * 1000L, regenerationInterval * 1000L);
+        planAheadTimer = getEventLoop().scheduleAtFixedRate(this::planAhead,
+                Math.max(0, initialDelaySeconds - PLAN_AHEAD_TIME) * 1000L, regenerationInterval * 1000L);
+    }
+
+    
+    //Plans the AI's path on the next maze PLAN_AHEAD_TIME before the regeneration, in case the AI
+    //does not move before it.
+     
+    private void planAhead() {
+        if (isGameRunning && isCompetitiveMode && aiPlayer != null) aiPlanner.planNext(aiPlayer.x, aiPlayer.y);
+    }
+
+    
+    //Checks if the maze is regenerated within PLAN_AHEAD_TIME.
+     
+    private boolean isRegenerationNear() {
+        return regenerationInterval - elapsedTime % regenerationInterval <= PLAN_AHEAD_TIME;
+    }
+
+    
+    //Starts the autosave timer if an autosave interval is set.
+     
+    private void startAutosaveTimer() {
+        if (autosaveInterval <= 0 || autosaveTimer != null) return;
+        autosaveTimer = getEventLoop().scheduleAtFixedRate(() -> {
+            if (isGameRunning && generation == null) saveToSlot(AUTOSAVE_SLOT);
+        }, autosaveInterval * 1000L, autosaveInterval * 1000L);
+    }
+
+    
+    //The event loop of the current game, created with the first timer.
+     
+    private GameEventLoop getEventLoop() {
+        if (eventLoop == null) {
+            eventLoop = new GameEventLoop();
+        }
+        return eventLoop;
+    }
 
     
     //Stops all timers and ends the game.
     
     private void stopGame() {
         isGameRunning = false;
-        if (gameTimer != null) {
-            gameTimer.cancel();
-            gameTimer.purge();
-            gameTimer = null;
+        generation = null; // an unfinished maze is left to its generator thread
+        if (eventLoop != null) {
+            eventLoop.stop(); // cancels all timers
+            eventLoop = null;
         }
-        if (displayTimer != null) {
-            displayTimer.cancel();
-            displayTimer.purge();
-            displayTimer = null;
-        }
-        if (regenerationTimer != null) {
-            regenerationTimer.cancel();
-            regenerationTimer.purge();
-            regenerationTimer = null;
+        gameTimer = null;
+        regenerationTimer = null;
+        planAheadTimer = null;
+        autosaveTimer = null;
+        aiTurnScheduled = false; // cancelled with the timers
+        deferredMoves.clear();
+        if (grid != null && entrance != null) {
+            publishState();
         }
         aiSolution.clear();
         aiPlannedMoves.clear();
-        
+        aiPlanner.close(); // and its thread
+        aiPlanner = new AIPlanner();
+        aiPlanPending = false;
+        if (endlessMaze != null) {
+            endlessMaze.close();
+            endlessMaze = null;
+        }
+        if (swarm != null) {
+            swarm.close();
+            swarm = null;
+        }
     }
 
     
-     //Regenerates the maze while preserving player positions
+     //Regenerates the maze while preserving player positions.
+     //The new maze is built in a new grid and swapped in at the end, so a
+     //published grid (and any snapshot reading it) is never modified.
      
-    private synchronized void regenerateMaze() {
-        if (isRegenerating || !isGameRunning) return;
+    private void regenerateMaze() {
+        if (isRegenerating || !isGameRunning || generation != null) return;
         isRegenerating = true;
 
         // Store current positions
-        Point currentPlayerPos = new Point(player.x, player.y);
         Point currentAIPos = (isCompetitiveMode && aiPlayer != null)
                              ? new Point(aiPlayer.x, aiPlayer.y)
                              : null;
 
-        // Store old walls
-        boolean[][][] oldWalls = new boolean[height][width][4];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                oldWalls[y][x] = Arrays.copyOf(grid[y][x].walls, 4);
+        // Take the maze prepared while the human was thinking, else a pre-generated one, else generate one
+        AIPlanner.Layout prepared = aiPlanner.takeNextMaze(gridVersion + 1);
+        MazeGrid next;
+        Point[] openings;
+        Terrain nextTerrain;
+        long nextSeed;
+        if (prepared != null) {
+            next = prepared.grid;
+            openings = new Point[]{prepared.entrance, prepared.exit};
+            nextTerrain = swarm != null ? null : prepared.terrain;
+            nextSeed = prepared.seed;
+        } else {
+            MazePool.Entry taken;
+            try {
+                taken = takeOrGenerateMaze();
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage() + ", keeping this maze.");
+                isRegenerating = false;
+                return;
             }
+            next = taken.grid;
+            openings = new Point[]{taken.entrance, taken.exit};
+            nextTerrain = swarm != null ? null : terrainFor(taken.seed);
+            nextSeed = taken.seed;
+        }
+        fillPool();
+        // A valid maze is connected; one accepted with only a warning must still let every player out
+        if (!strictValidation && !canReachExit(next, openings[1], currentAIPos)) {
+            System.out.println("The new maze cuts a player off from the exit, keeping this maze.");
+            if (next instanceof PackedGrid packed) packed.close(); // never published
+            isRegenerating = false;
+            return;
         }
 
-        // Generate new maze
-        generate();
-
-        // Ensure path exists for both players
-        if (!ensurePathExists(currentPlayerPos)
-                || (isCompetitiveMode && !ensurePathExists(currentAIPos))) {
-            // If no valid path, restore old maze
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    System.arraycopy(oldWalls[y][x], 0, grid[y][x].walls, 0, 4);
-                }
-            }
-            generate(); 
+        // Swap in the new maze, with a heatmap of its own
+        boolean countingVisits = heatmap != null;
+        recordHeatmap();
+        grid = next;
+        gridVersion++;
+        mazeSeed = nextSeed;
+        entrance = openings[0];
+        exit = openings[1];
+        terrain = nextTerrain;
+        if (countingVisits) startHeatmap();
+        if (prepared != null && prepared.junctions != null) {
+            junctions = prepared.junctions;
+        }
+        if (swarm != null) {
+            swarm.setField(new DistanceField(next, exit.x, exit.y));
         }
         
-        // Recalculate AI solution if competitive
+        // Take the AI's plan on the new maze, or recalculate it, if competitive
         if (isCompetitiveMode && currentAIPos != null) {
-            aiSolution.clear();
-            aiPlannedMoves.clear();
-            findSolution(grid[currentAIPos.y][currentAIPos.x], new HashSet<>(), new ArrayList<>());
-            aiPlannedMoves = new ArrayList<>(aiSolution);
-        }
-
-        // Update player positions
-        player.x = currentPlayerPos.x;
-        player.y = currentPlayerPos.y;
-        if (isCompetitiveMode && aiPlayer != null && currentAIPos != null) {
-            aiPlayer.x = currentAIPos.x;
-            aiPlayer.y = currentAIPos.y;
+            aiPlanPending = false; // a plan for the old maze is of no use any more
+            followPlan(aiPlanner.takeNextPlan(gridVersion, aiPlayer.x, aiPlayer.y));
+            speculateRegeneration();
+        } else if (difficultyTarget != null) {
+            prepareNextMaze();
         }
 
         // Redraw
-        redrawMazeAndPlayers();
+        requestRedraw();
         isRegenerating = false;
         System.out.println("Maze regenerated! Keep going!");
     }
 
     
-    //Ensures a path exists from the given start point to the exit.
+    //Checks if the human, and the AI at 'aiPos' (null without one), can reach 'exit' in 'next', with
+    //one fill from the exit.
      
-    private boolean ensurePathExists(Point start) {
-        if (start == null) return true;
-
-        Set<Cell> visited = new HashSet<>();
-        Stack<Cell> stack = new Stack<>();
-        Cell startCell = grid[start.y][start.x];
-
-        stack.push(startCell);
-        visited.add(startCell);
+    private boolean canReachExit(MazeGrid next, Point exit, Point aiPos) {
+        if (reachability == null) reachability = new Reachability();
+        reachability.load(next);
+        reachability.fill(exit.x, exit.y);
+        return reachability.isReached(player.x, player.y) && (aiPos == null || reachability.isReached(aiPos.x, aiPos.y));
+    }
 
-        while (!stack.isEmpty()) {
-            Cell current = stack.pop();
-            if (current == exit) return true;
+    
+    //A pre-generated maze of the current size, or a newly generated one. Also runs on the AI planner's
+    //thread, which only reads the settings and a grid it creates itself.
+     
+    private MazePool.Entry takeOrGenerateMaze() {
+        MazePool.Entry pooled = difficultyTarget == null ? mazePool.take(width, height) : null;
+        if (pooled != null) return pooled;
+        return generateMaze(newMazeSeed());
+    }
 
-            for (int i = 0; i < 4; i++) {
-                if (!current.walls[i]) {
-                    int[] delta = getDeltaFromDirection(i);
-                    int newX = current.x + delta[0];
-                    int newY = current.y + delta[1];
+    
+    //Keeps pre-generated mazes of the current size ready. Not with a challenge chosen: pooled mazes
+    //are random, so they would never be taken.
+     
+    private void fillPool() {
+        if (difficultyTarget == null) mazePool.fill(width, height, POOL_MAZES_PER_SIZE);
+    }
 
-                    if (isValidCell(newX, newY)) {
-                        Cell next = grid[newY][newX];
-                        if (!visited.contains(next)) {
-                            visited.add(next);
-                            stack.push(next);
-                        }
-                    }
-                }
-            }
+    
+    //Seed of a new maze: a random one, or with a challenge chosen, the one of DIFFICULTY_CANDIDATES
+    //candidates that comes closest to it (a random one if the search found none). Also runs on the
+    //AI planner's thread, which searches ahead for the next regeneration (prepareNextMaze()).
+     
+    private long newMazeSeed() {
+        if (difficultyTarget == null) return random.nextLong();
+        DifficultySearch search = difficultySearch;
+        if (search == null || !search.isFor(width, height, algorithm, braidFraction)) {
+            search = new DifficultySearch(width, height, algorithm, braidFraction,
+                    Runtime.getRuntime().availableProcessors());
+            difficultySearch = search;
         }
-        return false;
+        DifficultySearch.Score best = search.search(difficultyTarget, DIFFICULTY_CANDIDATES, random).best;
+        return best != null ? best.seed : random.nextLong(); // none if the search was interrupted
     }
 
-    //AI Solver Methods
-
     
-     //Solves the maze (full AI solution from player's current position).
-    private void solveMaze() {
-        aiSolution.clear();
-        Cell currentPos = getCell(player.x, player.y);
-        findSolution(currentPos, new HashSet<>(), new ArrayList<>());
-
-        if (aiSolution.isEmpty()) {
-            System.out.println("No solution found!");
-            return;
+    //Generates a new maze with a generator seeded with 'seed'. A maze that strict validation rejects
+    //is generated again with random seeds; after GENERATION_ATTEMPTS mazes an IllegalStateException
+    //is thrown, which callers on the game thread catch.
+     
+    private MazePool.Entry generateMaze(long seed) {
+        for (int attempt = 1; ; attempt++) {
+            MazeGrid target = initializeGrid();
+            Point[] openings = new MazeGenerator(new Random(seed)).generateMaze(target, algorithm, braidFraction, null);
+            MazeValidator.Result result = validate(target, openings[0], openings[1]);
+            if (acceptGenerated(result)) return new MazePool.Entry(target, openings[0], openings[1], seed);
+            if (target instanceof PackedGrid packed) packed.close(); // never published
+            if (attempt == GENERATION_ATTEMPTS) {
+                throw new IllegalStateException("No valid maze in " + attempt + " attempts");
+            }
+            seed = random.nextLong();
         }
-        System.out.println("Showing full path in green...");
-
-        // Draw the path in green, from the player's current position
-        drawPathInGreen(currentPos, aiSolution);
     }
 
     
-     //Finds a solution path from 'current' to the exit (using DFS ).
+    //Checks if a generated maze may be played: a valid one always, an invalid one only with a
+    //warning when validation is not strict.
      
-    private boolean findSolution(Cell current, Set<Cell> visited, List<Character> currentPath) {
-        if (current == exit) {
-            aiSolution.addAll(currentPath);
-            return true;
+    private boolean acceptGenerated(MazeValidator.Result result) {
+        if (result.isValid()) return true;
+        if (strictValidation) {
+            System.out.println("Rejected generated maze: " + result);
+            return false;
         }
-        visited.add(current);
+        System.out.println("Warning: generated maze is " + result);
+        return true;
+    }
 
-        for (int i = 0; i < 4; i++) {
-            if (!current.walls[i]) {
-                int[] delta = getDeltaFromDirection(i);
-                int newX = current.x + delta[0];
-                int newY = current.y + delta[1];
+    
+    //Makes the batches of a progressive generation published so far visible to the game thread,
+    //which must call it before it reads the grid.
+    
+    private void syncGeneration() {
+        if (generation != null) generation.sync();
+    }
 
-                if (isValidCell(newX, newY) && !visited.contains(grid[newY][newX])) {
-                    currentPath.add(getCharFromDirection(i));
-                    if (findSolution(grid[newY][newX], visited, currentPath)) {
-                        return true;
-                    }
-                    currentPath.remove(currentPath.size() - 1);
-                }
-            }
+    
+    //Ends a progressive generation on the game thread: the maze is checked like a generated one and
+    //drawn complete, or replaced like in a regeneration if it is rejected. Ignored if the game has
+    //moved on to another maze since.
+     
+    private void finishGeneration(ProgressiveGeneration done, MazeValidator.Result result) {
+        if (generation != done) return;
+        generation = null;
+        if (!acceptGenerated(result)) {
+            if (terminal != null) terminal.invalidateWalls();
+            regenerateMaze();
+            return;
         }
-        visited.remove(current);
-        return false;
+        System.out.printf("Maze complete after %.0f ms (first move possible after %.0f ms).%n",
+                done.getDoneMillis(), done.getEntranceReadyMillis());
+        if (terminal != null) terminal.invalidateWalls();
+        requestRedraw();
     }
 
     
-    //Shows the next 10 moves of the AI solution from the player's position.
+    //Ice and mud for the maze generated with 'seed', null without terrain.
+     
+    private Terrain terrainFor(long seed) {
+        return terrainShare > 0 ? Terrain.generate(width, height, terrainShare, seed) : null;
+    }
+
     
-    private void provideNext10Steps() {
-        aiSolution.clear();
-        Cell currentPos = getCell(player.x, player.y);
-        findSolution(currentPos, new HashSet<>(), new ArrayList<>());
+    //Validates a maze of the current braid level.
+     
+    private MazeValidator.Result validate(MazeGrid target, Point mazeEntrance, Point mazeExit) {
+        return MazeValidator.validateBraided(target, mazeEntrance, mazeExit, braidFraction);
+    }
 
-        if (aiSolution.isEmpty()) {
-            System.out.println("No solution available.");
-            return;
+    
+    //Checks a loaded save. Returns what is wrong, or null if it can be played. Broken sizes and
+    //positions are always rejected; a maze that fails validation only in strict mode.
+     
+    private String checkSave(GameSnapshot snapshot) {
+        MazeGrid saved = snapshot.grid;
+        if (saved == null || snapshot.entrance == null || snapshot.exit == null || snapshot.player == null) {
+            return "missing maze or positions";
+        }
+        if (saved.getWidth() != snapshot.width || saved.getHeight() != snapshot.height) {
+            return "maze is " + saved.getWidth() + "x" + saved.getHeight() + ", save says "
+                    + snapshot.width + "x" + snapshot.height;
+        }
+        if (snapshot.terrain != null && (snapshot.terrain.getWidth() != snapshot.width
+                || snapshot.terrain.getHeight() != snapshot.height)) {
+            return "terrain does not fit the maze";
+        }
+        if (snapshot.heatmap != null && (snapshot.heatmap.getWidth() != snapshot.width
+                || snapshot.heatmap.getHeight() != snapshot.height)) {
+            return "heatmap does not fit the maze";
+        }
+        if (!saved.isValidCell(snapshot.player.x, snapshot.player.y)
+                || (snapshot.isCompetitiveMode && (snapshot.aiPlayer == null
+                        || !saved.isValidCell(snapshot.aiPlayer.x, snapshot.aiPlayer.y)))) {
+            return "player outside the maze";
         }
-        int stepsToProvide = Math.min(10, aiSolution.size());
-        List<Character> nextSteps = new ArrayList<>(aiSolution.subList(0, stepsToProvide));
 
-        System.out.println("Showing next " + stepsToProvide + " steps in green...");
-        drawPathInGreen(currentPos, nextSteps);
+        // Saves from before the braid level was recorded may have any number of loops
+        MazeValidator.Result result = snapshot.braidFraction < 0
+                ? MazeValidator.validate(saved, snapshot.entrance, snapshot.exit, Long.MAX_VALUE)
+                : MazeValidator.validateBraided(saved, snapshot.entrance, snapshot.exit, snapshot.braidFraction);
+        if (result.isValid()) return null;
+        if (strictValidation) return "maze is " + result;
+        System.out.println("Warning: saved maze is " + result);
+        return null;
     }
 
     
-    //delay for visualization.
+    //Takes a snapshot and writes it to the slot on the save writer thread.
     
-    private void delay(int milliseconds) {
+    private void saveToSlot(String slot) {
+        long start = System.nanoTime();
+        GameSnapshot snapshot = publishState(heatmap == null ? null : heatmap.copy());
+        double pauseMillis = (System.nanoTime() - start) / 1e6;
+
+        CompletableFuture<Path> saved;
         try {
-            Thread.sleep(milliseconds);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            saved = saveWriter.save(snapshot, saveSlots.pathOf(slot));
+        } catch (IOException e) {
+            System.out.println("Error saving game: " + e.getMessage());
+            return;
         }
+        saved.whenComplete((path, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.println("Error saving game: " + cause.getMessage());
+            } else {
+                System.out.printf("Game saved to slot '%s' (paused %.3f ms).%n", slot, pauseMillis);
+            }
+        });
     }
 
-    private int[] getDeltaFromDirection(int dir) {
-        return switch (dir) {
-            case 0 -> new int[]{0, -1};  // Up
-            case 1 -> new int[]{1, 0};   // Right
-            case 2 -> new int[]{0, 1};   // Down
-            case 3 -> new int[]{-1, 0};  // Left
-            default -> new int[]{0, 0};
-        };
+    
+    //Publishes the current state as a new immutable snapshot and returns it. Cheap at any maze
+    //size: the grid is shared, not copied. Only the game thread calls this.
+     
+    private GameSnapshot publishState() {
+        return publishState(null);
     }
 
-   
-    private char getCharFromDirection(int dir) {
-        return switch (dir) {
-            case 0 -> 'w';
-            case 1 -> 'd';
-            case 2 -> 's';
-            case 3 -> 'a';
-            default -> ' ';
-        };
+    
+    //Like publishState(), with a copy of the heatmap for a save.
+     
+    private GameSnapshot publishState(VisitHeatmap heatmapCopy) {
+        syncGeneration(); // readers of the snapshot see at least the batches carved by now
+        int timePassedSinceLastRegen = elapsedTime % regenerationInterval;
+        int timeUntilNextRegen = regenerationInterval - timePassedSinceLastRegen;
+        GameSnapshot snapshot = new GameSnapshot(++stateVersion, isGameRunning, width, height, cellSize, grid,
+                player, aiPlayer, entrance, exit, humanMoveCount, aiMoveCount, elapsedTime, isCompetitiveMode,
+                isHumanTurn, timeUntilNextRegen, braidFraction, mazeSeed, terrain, terrainShare, heatmapCopy);
+        state.set(snapshot);
+        if (spectators != null && generation == null) { // spectators only see complete mazes
+            spectators.publish(snapshot);
+        }
+        return snapshot;
     }
 
-    //Maze Generation mothods
+
+    //AI Solver Methods
 
     
-     //Resets the entire grid, marking all cells unvisited and walls intact.
-    
-    private void resetGrid() {
-        for (Cell[] row : grid) {
-            for (Cell cell : row) {
-                cell.visited = false;
-                Arrays.fill(cell.walls, true);
-            }
+     //Solves the maze (full AI solution from player's current position).
+    private void solveMaze() {
+        findSolution(player.x, player.y);
+
+        if (aiSolution.isEmpty()) {
+            System.out.println("No solution found!");
+            return;
         }
+        System.out.println("Showing full path in green...");
+
+        // Draw the path in green, from the player's current position
+        drawPathInGreen(player.x, player.y, aiSolution);
     }
 
     
-     //Finds an unvisited neighbor of the given cell.
-    
-    private Cell getUnvisitedNeighbor(Cell cell) {
-        List<Cell> neighbors = new ArrayList<>();
-        int[][] directions = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
-        
-        for (int[] dir : directions) {
-            int newX = cell.x + dir[0];
-            int newY = cell.y + dir[1];
-            if (isValidCell(newX, newY) && !grid[newY][newX].visited) {
-                neighbors.add(grid[newY][newX]);
-            }
+     //Finds a solution path from (x, y) to the exit and stores it in aiSolution.
+     //With terrain it is the cheapest path; otherwise the shortest, found on the junction graph of
+     //the current maze, built on the first search after it changed.
+     
+    private void findSolution(int x, int y) {
+        if (terrain != null) {
+            if (weightedSolver == null) weightedSolver = new WeightedSolver();
+            aiSolution = weightedSolver.solve(grid, terrain, x, y, exit.x, exit.y);
+            return;
         }
-        return neighbors.isEmpty() ? null : neighbors.get(random.nextInt(neighbors.size()));
+        if (junctions == null || !junctions.isFor(grid, entrance, exit)) {
+            junctions = new JunctionGraph(grid, entrance, exit);
+        }
+        aiSolution = junctions.solve(x, y, exit.x, exit.y);
     }
 
     
-    //Removes walls between two adjacent cells.
-    
-    private void removeWalls(Cell current, Cell next) {
-        int dx = next.x - current.x;
-        int dy = next.y - current.y;
-
-        if (dx == 1) { // right
-            current.walls[1] = false;
-            next.walls[3] = false;
-        } else if (dx == -1) { // left
-            current.walls[3] = false;
-            next.walls[1] = false;
-        } else if (dy == 1) { // down
-            current.walls[2] = false;
-            next.walls[0] = false;
-        } else if (dy == -1) { // up
-            current.walls[0] = false;
-            next.walls[2] = false;
-        }
+    //Starts planning the AI's path on the current maze on the AI planner's thread, so a new or loaded
+    //game does not wait for it; the AI's next turn takes the plan. Also prepares the next regeneration.
+     
+    private void planAIInBackground() {
+        long version = gridVersion;
+        MazeGrid current = grid;
+        Point mazeEntrance = entrance, mazeExit = exit;
+        Terrain costs = terrain;
+        JunctionGraph known = junctions;
+        aiPlanner.planCurrent(() -> new AIPlanner.Layout(version, current, mazeEntrance, mazeExit, costs, known),
+                aiPlayer.x, aiPlayer.y);
+        aiPlannedMoves = new MovePath();
+        aiPlanPending = true;
+        speculateRegeneration();
     }
 
     
-    //Creates an entrance and an exit on random sides of the maze.
+    //Prepares the maze of the next regeneration on the AI planner's thread, and once the regeneration
+    //is near, the AI's plan on it from where the AI stands now. Called whenever the AI moves or the
+    //grid changes; planning earlier would solve the next maze again after every AI move.
      
-    private void createEntranceAndExit() {
-        int entranceSide = random.nextInt(4);
-        int exitSide;
-        do {
-            exitSide = random.nextInt(4);
-        } while (exitSide == entranceSide);
+    private void speculateRegeneration() {
+        prepareNextMaze();
+        if (isRegenerationNear()) aiPlanner.planNext(aiPlayer.x, aiPlayer.y);
+    }
 
-        entrance = createOpeningOnSide(entranceSide);
-        exit = createOpeningOnSide(exitSide);
+    
+    //Prepares the maze of the next regeneration on the AI planner's thread, unless it already is.
+    //Competitive games always do; other games only with a challenge chosen, so its candidate search
+    //does not hold up the game thread when the maze is regenerated.
+     
+    private void prepareNextMaze() {
+        long version = gridVersion + 1;
+        if (aiPlanner.isPreparing(version)) return;
+        aiPlanner.prepareNext(version, () -> {
+            MazePool.Entry next = takeOrGenerateMaze();
+            return new AIPlanner.Layout(version, next.seed, next.grid, next.entrance, next.exit,
+                    terrainFor(next.seed), null);
+        });
     }
 
     
-    //Creates an opening on one of the four outer edges of the maze.
+    //Follows a plan taken from the AI planner, or plans now if there was none for this grid and position.
      
-    private Cell createOpeningOnSide(int side) {
-        Cell cell;
-        switch (side) {
-            case 0 -> { // Top
-                cell = grid[0][random.nextInt(width)];
-                cell.walls[0] = false;
-            }
-            case 1 -> { // Right
-                cell = grid[random.nextInt(height)][width - 1];
-                cell.walls[1] = false;
-            }
-            case 2 -> { // Bottom
-                cell = grid[height - 1][random.nextInt(width)];
-                cell.walls[2] = false;
-            }
-            case 3 -> { // Left
-                cell = grid[random.nextInt(height)][0];
-                cell.walls[3] = false;
-            }
-            default -> throw new IllegalArgumentException("Invalid side");
+    private void followPlan(AIPlanner.Plan plan) {
+        if (plan == null) {
+            findSolution(aiPlayer.x, aiPlayer.y);
+        } else {
+            aiSolution = plan.moves;
+            if (plan.layout.junctions != null) junctions = plan.layout.junctions;
+        }
+        aiPlannedMoves = aiSolution.slice(0, aiSolution.size());
+    }
+
+    
+    //Shows the next 10 moves of the AI solution from the player's position.
+    
+    private void provideNext10Steps() {
+        findSolution(player.x, player.y);
+
+        if (aiSolution.isEmpty()) {
+            System.out.println("No solution available.");
+            return;
         }
-        return cell;
+        int stepsToProvide = Math.min(10, aiSolution.size());
+        MovePath nextSteps = aiSolution.slice(0, stepsToProvide);
+
+        System.out.println("Showing next " + stepsToProvide + " steps in green...");
+        drawPathInGreen(player.x, player.y, nextSteps);
     }
 
     //Movement Handling
@@ -899,12 +1713,18 @@ private void startRegenerationTimer(int initialDelaySeconds) {
 
         if (canMove(player.x, player.y, dx, dy)) {
             updatePlayerPosition(dx, dy);
+            humanMoveCount += moveCost(player.x, player.y); // before the win is recorded
             checkWinCondition();
-            redrawMazeAndPlayer();
-            humanMoveCount++;
+            requestRedraw();
         }
     }
 
+    //Moves it costs to enter (x, y): 1, or more on ice and mud.
+    
+    private int moveCost(int x, int y) {
+        return terrain == null ? 1 : terrain.getCost(x, y);
+    }
+
     private int[] getMovementDeltas(char direction) {
         return switch (direction) {
             case 'w' -> new int[]{0, -1};   // Up
@@ -922,14 +1742,9 @@ private void startRegenerationTimer(int initialDelaySeconds) {
         if (!isValidCell(currentX + dx, currentY + dy)) {
             return false;
         }
-        Cell currentCell = grid[currentY][currentX];
-        return switch (getDirectionIndex(dx, dy)) {
-            case 0 -> !currentCell.walls[0]; // Top
-            case 1 -> !currentCell.walls[1]; // Right
-            case 2 -> !currentCell.walls[2]; // Bottom
-            case 3 -> !currentCell.walls[3]; // Left
-            default -> false;
-        };
+        int dir = getDirectionIndex(dx, dy);
+        syncGeneration();
+        return dir >= 0 && !grid.hasWall(currentX, currentY, dir);
     }
 
     private int getDirectionIndex(int dx, int dy) {
@@ -944,6 +1759,126 @@ private void startRegenerationTimer(int initialDelaySeconds) {
     private void updatePlayerPosition(int dx, int dy) {
         player.x += dx;
         player.y += dy;
+        if (heatmap != null) heatmap.visitHuman(player.x, player.y);
+    }
+
+    
+    //Appends the human's result of the game that just ended to the leaderboard, and shows the
+    //board after a win. The log write is a single positional write; it does not wait for the disk.
+     
+    private void recordResult(Leaderboard.Mode mode, boolean won) {
+        recordHeatmap();
+        try {
+            getLeaderboard().append(width, height, mode, terrainPercent(), mazeSeed, won, elapsedTime, humanMoveCount);
+        } catch (IOException e) {
+            System.out.println("Error recording the result: " + e.getMessage());
+            return;
+        }
+        if (won) printLeaderboard(mode);
+    }
+
+    
+    //A new heatmap for this game or maze, with the players' starting cells counted.
+     
+    private void startHeatmap() {
+        heatmap = new VisitHeatmap(width, height);
+        heatmap.visitHuman(player.x, player.y);
+        if (isCompetitiveMode) heatmap.visitAI(aiPlayer.x, aiPlayer.y);
+    }
+
+    
+    //Adds the heatmap of the current maze to the combined heatmap of all games on it, on the save
+    //writer's thread. Mazes are hardly ever played twice, so old files are deleted beyond HEATMAP_DISK_BUDGET.
+     
+    private void recordHeatmap() {
+        if (heatmap == null) return;
+        saveWriter.addHeatmap(heatmap, heatmapFile(), HEATMAP_DISK_BUDGET).whenComplete((path, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.println("Error recording the heatmap: " + cause.getMessage());
+            }
+        });
+        heatmap = null; // handed over
+    }
+
+    
+    //Shows where players went on this maze, earlier games on its seed and this one, until the next frame.
+     
+    private void showHeatmap() {
+        if (heatmap == null) return;
+        VisitHeatmap.Total total = null;
+        try {
+            total = VisitHeatmap.Total.load(heatmapFile());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Error reading the heatmap: " + e.getMessage());
+        }
+        if (total == null || total.getWidth() != width || total.getHeight() != height) {
+            total = new VisitHeatmap.Total(width, height);
+        }
+        total.add(heatmap);
+        byte[] levels = total.getLevels(HEAT_COLORS.length);
+        System.out.println("Showing where players went in " + total.getGames() + " game(s) on this maze...");
+
+        if (terminal != null) {
+            terminal.setHeatmap(levels);
+            renderTerminal();
+            terminal.clearHeatmap(); // gone with the next frame
+            return;
+        }
+        turtle.reset();
+        draw();
+        drawHeatmap(levels);
+        drawPlayerPosition();
+    }
+
+    
+    //The file of the current maze, which its size, generator and seed determine.
+    
+    private Path heatmapFile() {
+        return Paths.get(SAVE_DIRECTORY, HEATMAP_DIRECTORY, width + "x" + height + "-" + algorithm + "-"
+                + Math.round(braidFraction * 100) + "-" + mazeSeed + SaveWriter.HEATMAP_EXTENSION);
+    }
+
+    
+    //Prints the best times on this maze size, mode and terrain share.
+     
+    private void printLeaderboard(Leaderboard.Mode mode) {
+        List<Leaderboard.Entry> best;
+        int terrainPercent = terrainPercent();
+        try {
+            best = getLeaderboard().top(width, height, mode, terrainPercent, Leaderboard.Order.TIME, LEADERBOARD_SHOWN);
+        } catch (IOException e) {
+            System.out.println("Error reading the leaderboard: " + e.getMessage());
+            return;
+        }
+        System.out.println("Best times, " + width + "x" + height + " " + mode.name().toLowerCase()
+                + (terrainPercent > 0 ? ", " + terrainPercent + "% terrain" : "") + ":");
+        if (best.isEmpty()) {
+            System.out.println("  no wins yet");
+        }
+        SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd");
+        for (int i = 0; i < best.size(); i++) {
+            Leaderboard.Entry entry = best.get(i);
+            System.out.printf("  %d. %4d s %6d moves  %s  seed %d%n", i + 1, entry.seconds, entry.moves,
+                    date.format(new Date(entry.timestamp * 1000)), entry.seed);
+        }
+    }
+
+    
+    //The terrain share the moves of this maze were counted with, in percent. The swarm has no terrain.
+     
+    private int terrainPercent() {
+        return terrain == null ? 0 : (int) Math.round(terrainShare * 100);
+    }
+
+    
+    //The leaderboard in the save directory, opened (and indexed) on first use.
+     
+    private Leaderboard getLeaderboard() throws IOException {
+        if (leaderboard == null) {
+            leaderboard = new Leaderboard(Paths.get(SAVE_DIRECTORY, LEADERBOARD_FILE));
+        }
+        return leaderboard;
     }
 
     
@@ -958,6 +1893,7 @@ private void startRegenerationTimer(int initialDelaySeconds) {
                 System.out.println("Game Over! You win in " + humanMoveCount + " moves!");
                 System.out.println("Time elapsed: " + finalTime + " seconds");
                 System.out.println("AI moves: " + aiMoveCount);
+                recordResult(Leaderboard.Mode.COMPETITIVE, true);
             }
         } else {
             if (player.x == exit.x && player.y == exit.y) {
@@ -965,6 +1901,7 @@ private void startRegenerationTimer(int initialDelaySeconds) {
                 redrawMazeAndPlayer();
                 stopGame();
                 System.out.println("Congratulations! You completed the maze in " + finalTime + " seconds.");
+                recordResult(Leaderboard.Mode.SINGLE, true);
             }
         }
     }
@@ -996,9 +1933,44 @@ private void startRegenerationTimer(int initialDelaySeconds) {
         drawOuterBorder();
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                drawCellWalls(grid[y][x]);
+                drawCellWalls(x, y);
+            }
+        }
+    }
+
+    
+    //Marks ice and mud cells with a short line across the middle.
+    
+    private void drawTerrain() {
+        if (terrain == null) return;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cost = terrain.getCost(x, y);
+                if (cost == Terrain.GROUND) continue;
+                turtle.color(cost == Terrain.ICE ? ICE_COLOR : MUD_COLOR);
+                double middle = y * cellSize + cellSize / 2.0;
+                drawWall(x * cellSize + cellSize / 4.0, middle, x * cellSize + 3 * cellSize / 4.0, middle);
+            }
+        }
+        turtle.color(WALL_COLOR);
+    }
+
+    
+    //Marks visited cells with a bar across the middle, thicker and redder the more they were visited.
+    
+    private void drawHeatmap(byte[] levels) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int level = levels[y * width + x];
+                if (level == 0) continue;
+                turtle.color(HEAT_COLORS[level - 1]);
+                turtle.lineWidth(Math.max(1, level * cellSize / HEAT_COLORS.length));
+                double middle = y * cellSize + cellSize / 2.0;
+                drawWall(x * cellSize + 1, middle, (x + 1) * cellSize - 1, middle);
             }
         }
+        turtle.lineWidth(2);
+        turtle.color(WALL_COLOR);
     }
 
     
@@ -1015,24 +1987,26 @@ private void startRegenerationTimer(int initialDelaySeconds) {
     
     //Draws walls for a single cell, if they exist.
      
-    private void drawCellWalls(Cell cell) {
-        double startX = cell.x * cellSize;
-        double startY = cell.y * cellSize;
+    private void drawCellWalls(int x, int y) {
+        double startX = x * cellSize;
+        double startY = y * cellSize;
+        boolean isEntrance = x == entrance.x && y == entrance.y;
+        boolean isExit = x == exit.x && y == exit.y;
 
         // top wall
-        if (cell.walls[0] && cell != entrance) {
+        if (grid.hasWall(x, y, 0) && !isEntrance) {
             drawWall(startX, startY, startX + cellSize, startY);
         }
         // right wall
-        if (cell.walls[1] && cell != exit) {
+        if (grid.hasWall(x, y, 1) && !isExit) {
             drawWall(startX + cellSize, startY, startX + cellSize, startY + cellSize);
         }
         // bottom wall
-        if (cell.walls[2] && cell != entrance && cell != exit) {
+        if (grid.hasWall(x, y, 2) && !isEntrance && !isExit) {
             drawWall(startX, startY + cellSize, startX + cellSize, startY + cellSize);
         }
         // left wall
-        if (cell.walls[3] && cell != exit) {
+        if (grid.hasWall(x, y, 3) && !isExit) {
             drawWall(startX, startY, startX, startY + cellSize);
         }
     }
@@ -1080,17 +2054,17 @@ private void startRegenerationTimer(int initialDelaySeconds) {
     
     //Draws an opening on one side of the specified cell if there's no wall.
      
-    private void drawCellOpening(Cell cell) {
+    private void drawCellOpening(Point cell) {
         double startX = cell.x * cellSize;
         double startY = cell.y * cellSize;
 
-        if (!cell.walls[0]) { // top open
+        if (!grid.hasWall(cell.x, cell.y, 0)) { // top open
             drawWall(startX, startY, startX + cellSize, startY);
-        } else if (!cell.walls[1]) { // right open
+        } else if (!grid.hasWall(cell.x, cell.y, 1)) { // right open
             drawWall(startX + cellSize, startY, startX + cellSize, startY + cellSize);
-        } else if (!cell.walls[2]) { // bottom open
+        } else if (!grid.hasWall(cell.x, cell.y, 2)) { // bottom open
             drawWall(startX, startY + cellSize, startX + cellSize, startY + cellSize);
-        } else if (!cell.walls[3]) { // left open
+        } else if (!grid.hasWall(cell.x, cell.y, 3)) { // left open
             drawWall(startX, startY, startX, startY + cellSize);
         }
     }
@@ -1149,18 +2123,17 @@ private void startRegenerationTimer(int initialDelaySeconds) {
         return x >= 0 && x < width && y >= 0 && y < height;
     }
 
-    private Cell getCell(int x, int y) {
-        return grid[y][x];
-    }
-
     
     //Draws a given path in green from the given start cell.
     
-    private void drawPathInGreen(Cell startCell, List<Character> moves) {
-        int sx = startCell.x;
-        int sy = startCell.y;
+    private void drawPathInGreen(int sx, int sy, MovePath moves) {
+        if (terminal != null) {
+            terminal.setPath(sx, sy, moves);
+            renderTerminal();
+            terminal.clearPath(); // gone with the next frame
+            return;
+        }
 
-        
         turtle.reset();
         draw();  
 
@@ -1177,8 +2150,8 @@ private void startRegenerationTimer(int initialDelaySeconds) {
         double yPos = sy * cellSize + cellSize / 2.0;
         turtle.moveTo(xPos, yPos);
 
-        for (char move : moves) {
-            int[] delta = getMovementDeltas(move);
+        for (int i = 0; i < moves.size(); i++) {
+            int[] delta = getMovementDeltas(moves.getMove(i));
             sx += delta[0];
             sy += delta[1];
 
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Linear-time maze metrics. One instance reuses its buffers for every maze it analyzes,
+//so analyzing a batch allocates nothing per cell. Not thread-safe, use one instance per thread.
+//
+//  java MazeAnalytics mazes.bin [more.bin ...] [--threads N]
+public class MazeAnalytics {
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    private byte[] openMask = new byte[0];   // bit d set = can move in direction d
+    private int[] distance = new int[0];
+    private int[] queue = new int[0];
+    private long[] inCorridor = new long[0];
+    private int farthestCell;
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+                continue;
+            }
+            try (MazeBatchFile file = new MazeBatchFile(Paths.get(args[i]))) {
+                System.out.printf("%s: %d mazes of %dx%d (%s)%n", args[i], file.getCount(),
+                        file.getWidth(), file.getHeight(), file.getAlgorithm());
+                long start = System.nanoTime();
+                MazeStats.Summary summary = analyze(file, threads);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                summary.print();
+                System.out.printf("Analyzed in %.2f s (%.0f mazes/s)%n", seconds, summary.getMazeCount() / seconds);
+            } catch (IOException e) {
+                System.out.println("Error reading " + args[i] + ": " + e.getMessage());
+            }
+        }
+    }
+
+    //Analyzes every maze of a batch file on 'threads' threads and merges the results.
+    public static MazeStats.Summary analyze(MazeBatchFile file, int threads) throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        MazeStats.Summary[] summaries = new MazeStats.Summary[Math.max(1, threads)];
+        IOException[] failure = new IOException[1];
+        Thread[] workers = new Thread[summaries.length];
+
+        for (int t = 0; t < workers.length; t++) {
+            MazeStats.Summary summary = summaries[t] = new MazeStats.Summary();
+            workers[t] = new Thread(() -> {
+                MazeAnalytics analytics = new MazeAnalytics();
+                PackedGrid grid = new PackedGrid(file.getWidth(), file.getHeight(), PackedGrid.Storage.OFF_HEAP);
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < file.getCount()) {
+                        Point[] openings = file.readMaze(index, grid);
+                        summary.add(analytics.analyze(grid, openings[0], openings[1]));
+                    }
+                } catch (IOException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                    next.set(file.getCount());
+                } finally {
+                    grid.close();
+                }
+            }, "maze-analytics-" + t);
+            workers[t].start();
+        }
+
+        MazeStats.Summary total = new MazeStats.Summary();
+        for (int t = 0; t < workers.length; t++) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+            total.merge(summaries[t]);
+        }
+        synchronized (failure) {
+            if (failure[0] != null) throw failure[0];
+        }
+        return total;
+    }
+
+    //Computes all metrics of one maze in a constant number of linear passes.
+    public MazeStats analyze(MazeGrid grid, Point entrance, Point exit) {
+        int width = grid.getWidth();
+        int cells = (int) grid.getCellCount();
+        ensureCapacity(cells);
+
+        // One pass over the grid, every later pass only reads the masks
+        for (int cell = 0; cell < cells; cell++) {
+            openMask[cell] = (byte) grid.getOpenings(cell % width, cell / width);
+        }
+
+        // Solution length and one end of the diameter from the entrance, then the diameter itself
+        bfs(width, cells, entrance.y * width + entrance.x);
+        int solutionLength = distance[exit.y * width + exit.x];
+        int diameter = bfs(width, cells, farthestCell);
+
+        int deadEnds = 0, junctions = 0, corridors = 0;
+        long corridorCells = 0, choices = 0, choiceCells = 0;
+        int[] corridorLengths = new int[MazeStats.MAX_CORRIDOR_BUCKET];
+        Arrays.fill(inCorridor, 0, (cells + 63) >>> 6, 0L);
+
+        for (int cell = 0; cell < cells; cell++) {
+            int openings = Integer.bitCount(openMask[cell]);
+            if (openings == 1) deadEnds++;
+            if (openings >= 3) junctions++;
+            if (openings >= 2) {
+                choices += openings - 1;
+                choiceCells++;
+            }
+            if (openings == 2 && !isMarked(cell)) {
+                int length = walkCorridor(width, cell);
+                corridors++;
+                corridorCells += length;
+                corridorLengths[Math.min(length, MazeStats.MAX_CORRIDOR_BUCKET - 1)]++;
+            }
+        }
+
+        double branchingFactor = choiceCells == 0 ? 0 : (double) choices / choiceCells;
+        return new MazeStats(solutionLength, diameter, deadEnds, junctions, corridors,
+                corridorCells, branchingFactor, corridorLengths);
+    }
+
+    //Breadth-first search from 'start'. Fills distance[], sets farthestCell and returns its distance.
+    private int bfs(int width, int cells, int start) {
+        Arrays.fill(distance, 0, cells, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        distance[start] = 0;
+        farthestCell = start;
+
+        while (head < tail) {
+            int current = queue[head++];
+            if (distance[current] > distance[farthestCell]) farthestCell = current;
+
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openMask[current] & (1 << dir)) != 0) {
+                    int next = current + DY[dir] * width + DX[dir];
+                    if (distance[next] < 0) {
+                        distance[next] = distance[current] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return distance[farthestCell];
+    }
+
+    //Marks the maximal run of two-opening cells through 'cell' and returns its length.
+    private int walkCorridor(int width, int cell) {
+        mark(cell);
+        int length = 1;
+
+        for (int dir = 0; dir < 4; dir++) {
+            if ((openMask[cell] & (1 << dir)) == 0) continue;
+            int heading = dir;
+            int current = cell + DY[dir] * width + DX[dir];
+            while (Integer.bitCount(openMask[current]) == 2 && !isMarked(current)) {
+                mark(current);
+                length++;
+                // leave through the opening we did not come in by
+                heading = Integer.numberOfTrailingZeros(openMask[current] & ~(1 << ((heading + 2) % 4)));
+                current += DY[heading] * width + DX[heading];
+            }
+        }
+        return length;
+    }
+
+    private boolean isMarked(int cell) {
+        return (inCorridor[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private void mark(int cell) {
+        inCorridor[cell >>> 6] |= 1L << cell;
+    }
+
+    private void ensureCapacity(int cells) {
+        if (distance.length < cells) {
+            openMask = new byte[cells];
+            distance = new int[cells];
+            queue = new int[cells];
+            inCorridor = new long[(cells + 63) >>> 6];
+        }
+    }
+}
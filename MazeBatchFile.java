@@ -0,0 +1,158 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//File with many mazes of the same size, as written by BatchGenerator.
+//
+//Layout (little endian):
+//  header (64 bytes): magic, version, width, height, count, algorithm, first seed, record size
+//  records: count fixed-size records, record i at HEADER_SIZE + i * recordSize
+//    long seed, int entranceX, entranceY, exitX, exitY, byte entranceOpenings, exitOpenings,
+//    then the PackedGrid words (2 bits per cell)
+//Because every record has the same size, the header is the whole index: maze i is found in O(1).
+public class MazeBatchFile implements AutoCloseable {
+
+    public static final int MAGIC = 0x4D5A4231; // "MZB1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    private static final int RECORD_HEADER_SIZE = 8 + 4 * 4 + 2;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int count;
+    private final MazeGenerator.Algorithm algorithm;
+    private final long firstSeed;
+    private final int recordSize;
+
+    //Opens an existing batch file for reading.
+    public MazeBatchFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            throw new IOException("Not a maze batch file: " + path);
+        }
+        this.width = header.getInt();
+        this.height = header.getInt();
+        this.count = header.getInt();
+        this.algorithm = MazeGenerator.Algorithm.values()[header.get()];
+        this.firstSeed = header.getLong();
+        this.recordSize = header.getInt();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public MazeGenerator.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getSeed(int index) {
+        return firstSeed + index;
+    }
+
+    //Reads maze 'index' into the given grid (which must have the file's size). Returns {entrance, exit}.
+    //Safe to call from several threads, each with its own grid.
+    public Point[] readMaze(int index, PackedGrid grid) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Maze " + index + " of " + count);
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(record, HEADER_SIZE + (long) index * recordSize);
+        record.flip();
+        return decode(record, grid);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //Size of one record for mazes of the given size.
+    public static int recordSize(int width, int height) {
+        long words = ((long) width * height + 31) >>> 5;
+        long size = RECORD_HEADER_SIZE + words * Long.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maze too large for a batch file record");
+        }
+        return (int) size;
+    }
+
+    public static ByteBuffer encodeHeader(int width, int height, int count, MazeGenerator.Algorithm algorithm, long firstSeed) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(count);
+        header.put((byte) algorithm.ordinal()).putLong(firstSeed).putInt(recordSize(width, height));
+        header.position(HEADER_SIZE);
+        header.flip();
+        return header;
+    }
+
+    //Writes one maze into 'record' (cleared first, flipped for writing afterwards).
+    public static void encodeMaze(ByteBuffer record, long seed, PackedGrid grid, Point entrance, Point exit) {
+        record.clear();
+        record.putLong(seed);
+        record.putInt(entrance.x).putInt(entrance.y).putInt(exit.x).putInt(exit.y);
+        record.put(borderOpenings(grid, entrance)).put(borderOpenings(grid, exit));
+        for (long i = 0; i < grid.getWordCount(); i++) {
+            record.putLong(grid.getWord(i));
+        }
+        record.flip();
+    }
+
+    private static Point[] decode(ByteBuffer record, PackedGrid grid) {
+        record.getLong(); // seed
+        Point entrance = new Point(record.getInt(), record.getInt());
+        Point exit = new Point(record.getInt(), record.getInt());
+        byte entranceOpenings = record.get();
+        byte exitOpenings = record.get();
+
+        grid.reset();
+        for (long i = 0; i < grid.getWordCount(); i++) {
+            grid.setWord(i, record.getLong());
+        }
+        openBorder(grid, entrance, entranceOpenings);
+        openBorder(grid, exit, exitOpenings);
+        return new Point[]{entrance, exit};
+    }
+
+    //Bit mask of the outer walls of 'cell' that are open.
+    private static byte borderOpenings(MazeGrid grid, Point cell) {
+        byte mask = 0;
+        if (cell.y == 0 && !grid.hasWall(cell.x, cell.y, MazeGrid.TOP)) mask |= 1;
+        if (cell.x == grid.getWidth() - 1 && !grid.hasWall(cell.x, cell.y, MazeGrid.RIGHT)) mask |= 2;
+        if (cell.y == grid.getHeight() - 1 && !grid.hasWall(cell.x, cell.y, MazeGrid.BOTTOM)) mask |= 4;
+        if (cell.x == 0 && !grid.hasWall(cell.x, cell.y, MazeGrid.LEFT)) mask |= 8;
+        return mask;
+    }
+
+    private static void openBorder(MazeGrid grid, Point cell, byte mask) {
+        for (int dir = 0; dir < 4; dir++) {
+            if ((mask & (1 << dir)) != 0) {
+                grid.removeWall(cell.x, cell.y, dir);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Unexpected end of maze batch file");
+        }
+    }
+}
@@ -0,0 +1,1421 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+
+//Small command line benchmarks, run with: java MazeBenchmark <name> [size]
+//Benchmarks that check their results exit with status 1 when a check fails.
+public class MazeBenchmark {
+
+    private static int failures; // failed checks of the benchmark that is running
+
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0] : "grid";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        switch (name) {
+            case "grid" -> benchmarkGrids(size);
+            case "swarm" -> benchmarkSwarm(args.length > 1 ? size : 100);
+            case "eventloop" -> benchmarkEventLoop(args.length > 1 ? size : 5);
+            case "snapshots" -> benchmarkSnapshots(args.length > 1 ? size : 2);
+            case "braid" -> benchmarkBraid(size);
+            case "terminal" -> benchmarkTerminal(args.length > 1 ? size : 200);
+            case "validate" -> benchmarkValidate(args.length > 1 ? size : 5000);
+            case "spectators" -> benchmarkSpectators(args.length > 1 ? size : 1000);
+            case "leaderboard" -> benchmarkLeaderboard(args.length > 1 ? size : 10);
+            case "junctions" -> benchmarkJunctions(args.length > 1 ? size : 1000);
+            case "progressive" -> benchmarkProgressive(args.length > 1 ? size : 1000);
+            case "paths" -> benchmarkPaths(args.length > 1 ? size : 1);
+            case "terrain" -> benchmarkTerrain(size);
+            case "aiplanner" -> benchmarkAIPlanner(size);
+            case "heatmap" -> benchmarkHeatmap(args.length > 1 ? size : 100_000);
+            case "reachability" -> benchmarkReachability(args.length > 1 ? size : 4096);
+            case "difficulty" -> benchmarkDifficulty(args.length > 1 ? new int[]{size} : new int[]{30, 100, 300, 1000});
+            case "legacy" -> benchmarkLegacyImport(args.length > 1 ? size : 100);
+            default -> System.out.println("Unknown benchmark: " + name);
+        }
+        if (failures > 0) {
+            System.out.println(failures + " check(s) FAILED");
+            System.exit(1);
+        }
+    }
+
+    //Counts a failed check and says which one. Returns 'ok'.
+    private static boolean check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("CHECK FAILED: " + what);
+        }
+        return ok;
+    }
+
+    //Compares bytes per cell and solve speed of the object grid and the packed grids.
+    private static void benchmarkGrids(int size) {
+        System.out.printf("%-18s %12s %12s %12s %10s%n", "grid", "bytes/cell", "generate ms", "solve ms", "path");
+        benchmarkGrid("Cell[][]", new CellGrid(size, size));
+        benchmarkGrid("packed off-heap", new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP));
+        benchmarkGrid("packed mapped", new PackedGrid(size, size, PackedGrid.Storage.MAPPED));
+    }
+
+    //Measures the time of one swarm tick as the number of agents grows.
+    private static void benchmarkSwarm(int size) {
+        MazeGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+        MazeGenerator generator = new MazeGenerator(new Random(42));
+        generator.generate(grid, MazeGenerator.Algorithm.DFS);
+        Point[] openings = generator.createEntranceAndExit(grid);
+        DistanceField field = new DistanceField(grid, openings[1].x, openings[1].y);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ticks = 200;
+
+        System.out.printf("%dx%d maze, %d threads%n", size, size, threads);
+        System.out.printf("%10s %12s %14s %10s%n", "agents", "tick us", "ns/agent", "finished");
+        for (int agents : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            AgentSwarm swarm = new AgentSwarm(agents, 42, threads);
+            swarm.start(field, openings[0].x, openings[0].y);
+            for (int i = 0; i < 20; i++) swarm.tick(); // warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) swarm.tick();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%10d %12.1f %14.2f %10d%n", agents, elapsed / 1e3 / ticks,
+                    (double) elapsed / ticks / agents, swarm.getFinishedCount());
+            swarm.close();
+        }
+        ((PackedGrid) grid).close();
+    }
+
+    //Sends one input line per millisecond through a GameEventLoop whose frames take 'renderMillis' ms,
+    //while an AI turn fires every 500 ms. Shows how many frames were coalesced and the input latency.
+    private static void benchmarkEventLoop(int renderMillis) {
+        GameEventLoop loop = new GameEventLoop();
+        int lines = 2000;
+        int[] handled = new int[1];
+        loop.scheduleAtFixedRate(loop::requestFrame, 500, 500);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < lines; i++) {
+                loop.postInput("d", line -> {
+                    loop.requestFrame();
+                    if (++handled[0] == lines) loop.stop();
+                });
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+        producer.start();
+        loop.run(() -> { }, () -> LockSupport.parkNanos(renderMillis * 1_000_000L));
+        System.out.println("render " + renderMillis + " ms per frame");
+        System.out.println(loop.getStatistics());
+    }
+
+    //Times every maze search (solve, reachability, distance field) at 0%, 50% and 100% braiding.
+    private static void benchmarkBraid(int size) {
+        System.out.printf("%dx%d packed grid%n", size, size);
+        System.out.printf("%-6s %10s %10s %10s %12s %12s %12s%n", "braid", "walls", "dead ends", "path",
+                "solve ms", "reach ms", "field ms");
+        for (double fraction : new double[]{0, 0.5, 1}) {
+            PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            MazeGenerator generator = new MazeGenerator(new Random(42));
+            generator.generate(grid, MazeGenerator.Algorithm.DFS);
+            int removed = generator.braid(grid, fraction);
+            Point[] openings = generator.createEntranceAndExit(grid);
+            Point entrance = openings[0], exit = openings[1];
+
+            int deadEnds = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (Integer.bitCount(grid.getOpenings(x, y)) == 1) deadEnds++;
+                }
+            }
+
+            long start = System.nanoTime();
+            MovePath path = MazeSolver.solve(grid, entrance.x, entrance.y, exit.x, exit.y);
+            long solved = System.nanoTime();
+            MazeSolver.isReachable(grid, entrance.x, entrance.y, exit.x, exit.y);
+            long reached = System.nanoTime();
+            new DistanceField(grid, exit.x, exit.y);
+            long field = System.nanoTime();
+
+            System.out.printf("%5.0f%% %10d %10d %10d %12.1f %12.1f %12.1f%n", fraction * 100, removed, deadEnds,
+                    path.size(), (solved - start) / 1e6, (reached - solved) / 1e6, (field - reached) / 1e6);
+            grid.close();
+        }
+    }
+
+    //Times MazeValidator on size x size packed mazes, perfect and braided, then checks that it
+    //catches each kind of damage in a small object grid.
+    private static void benchmarkValidate(int size) {
+        System.out.printf("%dx%d packed grid%n", size, size);
+        for (double fraction : new double[]{0, 0.1, 0.3, 0.6}) {
+            PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            MazeGenerator generator = new MazeGenerator(new Random(42));
+            generator.generate(grid, MazeGenerator.Algorithm.DFS);
+            generator.braid(grid, fraction);
+            Point[] openings = generator.createEntranceAndExit(grid);
+
+            MazeValidator.Result result = null;
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                result = MazeValidator.validateBraided(grid, openings[0], openings[1], fraction);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            check(result.isValid(), "generated maze, braid " + Math.round(fraction * 100) + "%: " + result);
+            System.out.printf("  braid %3.0f%%: %8.1f ms (%.2f ns/cell), %s, at most %d loops allowed%n",
+                    fraction * 100, best / 1e6, (double) best / grid.getCellCount(), result,
+                    MazeValidator.allowedLoops(grid.getCellCount(), result.deadEnds, fraction));
+            grid.close();
+        }
+
+        System.out.println("damaged 100x100 object grids:");
+        String[] damages = {"none", "one-sided wall", "extra loop", "walled-in cell", "border opening"};
+        for (int damage = 0; damage < damages.length; damage++) {
+            CellGrid grid = new CellGrid(100, 100);
+            MazeGenerator generator = new MazeGenerator(new Random(7));
+            generator.generate(grid, MazeGenerator.Algorithm.DFS);
+            Point[] openings = generator.createEntranceAndExit(grid);
+            switch (damage) {
+                case 1 -> grid.getCell(50, 50).walls[MazeGrid.RIGHT] = !grid.getCell(50, 50).walls[MazeGrid.RIGHT];
+                case 2 -> {
+                    int x = 50;
+                    while (!grid.hasWall(x, 50, MazeGrid.RIGHT)) x++;
+                    grid.removeWall(x, 50, MazeGrid.RIGHT);
+                }
+                case 3 -> {
+                    for (int dir = 0; dir < 4; dir++) {
+                        grid.getCell(50, 50).walls[dir] = true;
+                    }
+                    grid.getCell(50, 49).walls[MazeGrid.BOTTOM] = true;
+                    grid.getCell(51, 50).walls[MazeGrid.LEFT] = true;
+                    grid.getCell(50, 51).walls[MazeGrid.TOP] = true;
+                    grid.getCell(49, 50).walls[MazeGrid.RIGHT] = true;
+                }
+                case 4 -> grid.getCell(0, 50).walls[MazeGrid.LEFT] = false;
+                default -> { }
+            }
+            MazeValidator.Result result = MazeValidator.validate(grid, openings[0], openings[1], 0);
+            System.out.printf("  %-15s %s%n", damages[damage], result);
+            check(result.isValid() == (damage == 0), damages[damage] + " grid " + (damage == 0 ? "rejected" : "accepted"));
+        }
+    }
+
+    //Solves a size x size maze (10% braided) with ice and mud on 30% of the cells, from the entrance to
+    //the exit, with WeightedSolver's bucket queue, a binary heap of primitive longs and a PriorityQueue
+    //of boxed nodes. All three must find the same cost. Generation is timed too, since the game
+    //solves again after every regeneration.
+    private static void benchmarkTerrain(int size) {
+        PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+        long start = System.nanoTime();
+        Point[] openings = new MazeGenerator(new Random(42)).generateMaze(grid, MazeGenerator.Algorithm.DFS, 0.1, null);
+        long generated = System.nanoTime();
+        Terrain terrain = Terrain.generate(size, size, 0.3, 42);
+        long terrained = System.nanoTime();
+        Point from = openings[0], to = openings[1];
+        System.out.printf("%dx%d maze, 10%% braided, 30%% ice and mud: generated in %.0f ms, terrain in %.1f ms%n",
+                size, size, (generated - start) / 1e6, (terrained - generated) / 1e6);
+        System.out.printf("%-16s %10s %10s %10s%n", "queue", "solve ms", "cost", "moves");
+
+        WeightedSolver solver = new WeightedSolver();
+        for (int round = 0; round < 3; round++) {
+            start = System.nanoTime();
+            MovePath path = solver.solve(grid, terrain, from.x, from.y, to.x, to.y);
+            double bucket = (System.nanoTime() - start) / 1e6;
+            int cost = 0, x = from.x, y = from.y;
+            for (int i = 0; i < path.size(); i++) {
+                int dir = path.get(i);
+                x += dir == MazeGrid.RIGHT ? 1 : dir == MazeGrid.LEFT ? -1 : 0;
+                y += dir == MazeGrid.BOTTOM ? 1 : dir == MazeGrid.TOP ? -1 : 0;
+                cost += terrain.getCost(x, y);
+            }
+            start = System.nanoTime();
+            int heapCost = dijkstraBinaryHeap(grid, terrain, from, to);
+            double heap = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            int queueCost = dijkstraPriorityQueue(grid, terrain, from, to);
+            double queue = (System.nanoTime() - start) / 1e6;
+            if (round < 2) continue;
+            System.out.printf("%-16s %10.1f %10d %10d%n", "bucket queue", bucket, cost, path.size());
+            System.out.printf("%-16s %10.1f %10d %10s%n", "binary heap", heap, heapCost, "-");
+            System.out.printf("%-16s %10.1f %10d %10s%n", "PriorityQueue", queue, queueCost, "-");
+            System.out.println(check(cost == heapCost && cost == queueCost && x == to.x && y == to.y,
+                    "bucket queue, heap and PriorityQueue costs") ? "same cost" : "COSTS DIFFER");
+        }
+        grid.close();
+    }
+
+    //Records the heatmaps of 'games' games on one 30x30 maze (a random walker against the planner, up to
+    //2000 turns each), then adds them up: into plain long counters on one thread, with Total on one
+    //thread, and with VisitHeatmap.aggregate() on every core. All three must give the same totals.
+    private static void benchmarkHeatmap(int games) {
+        int size = 30, turns = 2000;
+        PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+        Point[] openings = new MazeGenerator(new Random(42)).generateMaze(grid, MazeGenerator.Algorithm.DFS, 0, null);
+        Point exit = openings[1];
+        List<VisitHeatmap> maps = new ArrayList<>(games);
+        long visits = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            MovePolicy[] policies = {new RandomWalkPolicy(new Random(game)), new PlannerPolicy()};
+            VisitHeatmap map = new VisitHeatmap(size, size);
+            int[] x = {openings[0].x, openings[0].x}, y = {openings[0].y, openings[0].y};
+            for (int p = 0; p < 2; p++) policies[p].reset(grid, exit.x, exit.y, x[p], y[p]);
+            for (int turn = 0; turn < turns; turn++) {
+                int p = turn & 1;
+                int dir = policies[p].nextMove(grid, x[p], y[p]);
+                if (dir < 0 || !grid.canMove(x[p], y[p], dir)) continue;
+                x[p] += dir == MazeGrid.RIGHT ? 1 : dir == MazeGrid.LEFT ? -1 : 0;
+                y[p] += dir == MazeGrid.BOTTOM ? 1 : dir == MazeGrid.TOP ? -1 : 0;
+                if (p == 0) map.visitHuman(x[p], y[p]); else map.visitAI(x[p], y[p]);
+                visits++;
+                if (x[p] == exit.x && y[p] == exit.y) break;
+            }
+            maps.add(map);
+        }
+        double played = (System.nanoTime() - start) / 1e6;
+        grid.close();
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d games on a %dx%d maze, %d visits recorded in %.0f ms, heatmaps %d KB%n", games, size,
+                size, visits, played, (long) games * maps.get(0).getMemoryFootprint() / 1024);
+        System.out.printf("%-22s %10s %14s %10s%n", "aggregation", "ms", "heatmaps/s", "same");
+
+        for (int round = 0; round < 6; round++) {
+            start = System.nanoTime();
+            long[] plain = new long[size * size];
+            for (VisitHeatmap map : maps) {
+                for (int cell = 0; cell < plain.length; cell++) {
+                    plain[cell] += map.getHumanVisits(cell % size, cell / size) + map.getAIVisits(cell % size, cell / size);
+                }
+            }
+            double plainMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            VisitHeatmap.Total single = new VisitHeatmap.Total(size, size);
+            for (VisitHeatmap map : maps) single.add(map);
+            single.getGames();
+            long[] singleCounts = new long[size * size];
+            for (int cell = 0; cell < singleCounts.length; cell++) {
+                singleCounts[cell] = single.getHumanVisits(cell % size, cell / size)
+                        + single.getAIVisits(cell % size, cell / size);
+            }
+            double singleMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            VisitHeatmap.Total parallel = VisitHeatmap.aggregate(maps, threads);
+            long[] parallelCounts = new long[size * size];
+            for (int cell = 0; cell < parallelCounts.length; cell++) {
+                parallelCounts[cell] = parallel.getHumanVisits(cell % size, cell / size)
+                        + parallel.getAIVisits(cell % size, cell / size);
+            }
+            double parallelMillis = (System.nanoTime() - start) / 1e6;
+            if (round < 5) continue; // warm-up
+
+            boolean same = check(Arrays.equals(plain, singleCounts) && Arrays.equals(plain, parallelCounts)
+                    && parallel.getGames() == games, "heatmap totals");
+            System.out.printf("%-22s %10.1f %14.0f %10s%n", "long counters", plainMillis, games / plainMillis * 1e3, "-");
+            System.out.printf("%-22s %10.1f %14.0f %10s%n", "Total, 1 thread", singleMillis,
+                    games / singleMillis * 1e3, same ? "yes" : "NO");
+            System.out.printf("%-22s %10.1f %14.0f %10s%n", "aggregate, " + threads + " threads", parallelMillis,
+                    games / parallelMillis * 1e3, same ? "yes" : "NO");
+        }
+    }
+
+    //Times picking a maze for each challenge: calibration (once per settings) and a search of up to 32
+    //candidates, against generating one random maze. The chosen seed must give the same maze again
+    //on the object grid the game uses by default.
+    private static void benchmarkDifficulty(int[] sizes) {
+        int candidates = 32, searches = 20;
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("DFS, up to %d candidates on %d threads, average of %d searches%n", candidates, threads,
+                searches);
+        System.out.printf("%-10s %-7s %12s %11s %9s %9s %10s %6s%n", "size", "target", "calibrate ms", "search ms",
+                "scored", "distance", "1 maze ms", "same");
+        for (int size : sizes) {
+            PackedGrid one = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            long start = System.nanoTime();
+            new MazeGenerator(new Random(1)).generateMaze(one, MazeGenerator.Algorithm.DFS, 0, null);
+            double oneMillis = (System.nanoTime() - start) / 1e6;
+
+            DifficultySearch search = new DifficultySearch(size, size, MazeGenerator.Algorithm.DFS, 0, threads);
+            start = System.nanoTime();
+            search.calibrate();
+            double calibrateMillis = (System.nanoTime() - start) / 1e6;
+
+            for (DifficultySearch.Target target : DifficultySearch.Target.values()) {
+                Random random = new Random(7);
+                long scored = 0;
+                double distance = 0;
+                DifficultySearch.Result result = null;
+                start = System.nanoTime();
+                for (int i = 0; i < searches; i++) {
+                    result = search.search(target, candidates, random);
+                    scored += result.scored;
+                    distance += result.distance;
+                }
+                double searchMillis = (System.nanoTime() - start) / 1e6 / searches;
+
+                // The game regenerates the chosen seed into its own grid
+                boolean same = true;
+                if (size <= 300) {
+                    MazeGrid cells = new CellGrid(size, size);
+                    new MazeGenerator(new Random(result.best.seed)).generateMaze(cells, MazeGenerator.Algorithm.DFS, 0, null);
+                    new MazeGenerator(new Random(result.best.seed)).generateMaze(one, MazeGenerator.Algorithm.DFS, 0, null);
+                    for (int y = 0; y < size && same; y++) {
+                        for (int x = 0; x < size; x++) {
+                            if (cells.getOpenings(x, y) != one.getOpenings(x, y)) same = false;
+                        }
+                    }
+                }
+                System.out.printf("%-10s %-7s %12.1f %11.2f %9.1f %9.3f %10.2f %6s%n", size + "x" + size, target,
+                        calibrateMillis, searchMillis, (double) scored / searches, distance / searches, oneMillis,
+                        size > 300 ? "-" : check(same, size + "x" + size + " " + target + " seed regenerated") ? "yes" : "NO");
+            }
+            one.close();
+        }
+    }
+
+    //Times the bit-parallel Reachability against the cell-at-a-time DFS of MazeSolver.isReachable(), on a
+    //perfect and a braided maze: loading the walls, entrance to exit (stops at the exit) and a fill of
+    //the whole maze. Then walls are added across the middle row and down the lower half, which cuts
+    //the maze into many parts: a query with no path makes both search the whole part of the start,
+    //and the reached cells of fills from random cells must be exactly those a DistanceField (BFS) reaches.
+    private static void benchmarkReachability(int size) {
+        int rounds = 3;
+        System.out.printf("%dx%d packed grid, best of %d%n", size, size, rounds);
+        System.out.printf("%-6s %10s %10s %12s %10s %12s %14s %14s %14s %6s%n", "braid", "DFS ms", "load ms",
+                "reachable ms", "fill ms", "reached", "no path cells", "no path DFS ms", "no path bit ms", "same");
+        Reachability reachability = new Reachability();
+        for (double fraction : new double[]{0, 0.5}) {
+            PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            MazeGenerator generator = new MazeGenerator(new Random(42));
+            generator.generate(grid, MazeGenerator.Algorithm.DFS);
+            generator.braid(grid, fraction);
+            Point[] openings = generator.createEntranceAndExit(grid);
+            Point entrance = openings[0], exit = openings[1];
+
+            double dfs = Double.MAX_VALUE, load = Double.MAX_VALUE, reachable = Double.MAX_VALUE, fill = Double.MAX_VALUE;
+            boolean same = true;
+            long reached = 0;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                same &= MazeSolver.isReachable(grid, entrance.x, entrance.y, exit.x, exit.y);
+                long searched = System.nanoTime();
+                reachability.load(grid);
+                long loaded = System.nanoTime();
+                same &= reachability.isReachable(entrance.x, entrance.y, exit.x, exit.y);
+                long found = System.nanoTime();
+                reached = reachability.fill(entrance.x, entrance.y);
+                long filled = System.nanoTime();
+                dfs = Math.min(dfs, (searched - start) / 1e6);
+                load = Math.min(load, (loaded - searched) / 1e6);
+                reachable = Math.min(reachable, (found - loaded) / 1e6);
+                fill = Math.min(fill, (filled - found) / 1e6);
+            }
+            same &= reached == grid.getCellCount();
+
+            // A wall across the middle row, and one down the lower half
+            for (int x = 0; x < size; x++) {
+                addWall(grid, x, size / 2, 2);
+            }
+            for (int y = size / 2 + 1; y < size; y++) {
+                addWall(grid, size / 3, y, 1);
+            }
+            // From the top left corner into the lower right part: both have to search the whole part
+            double noPathDfs = Double.MAX_VALUE, noPathBits = Double.MAX_VALUE;
+            reachability.load(grid);
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                same &= !MazeSolver.isReachable(grid, 0, 0, size - 1, size - 1);
+                long searched = System.nanoTime();
+                same &= !reachability.isReachable(0, 0, size - 1, size - 1);
+                long found = System.nanoTime();
+                noPathDfs = Math.min(noPathDfs, (searched - start) / 1e6);
+                noPathBits = Math.min(noPathBits, (found - searched) / 1e6);
+            }
+            long part = reachability.getReachedCount();
+            Random random = new Random(7);
+            for (int sample = 0; sample < 3 && same; sample++) {
+                int sx = random.nextInt(size), sy = random.nextInt(size);
+                reachability.fill(sx, sy);
+                DistanceField field = new DistanceField(grid, sx, sy);
+                for (int y = 0; y < size && same; y++) {
+                    for (int x = 0; x < size; x++) {
+                        if (reachability.isReached(x, y) != field.getDistance(x, y) >= 0) same = false;
+                    }
+                }
+                int tx = random.nextInt(size), ty = random.nextInt(size);
+                same &= reachability.isReachable(sx, sy, tx, ty) == MazeSolver.isReachable(grid, sx, sy, tx, ty);
+            }
+            System.out.printf("%5.0f%% %10.1f %10.1f %12.1f %10.1f %12d %14d %14.1f %14.1f %6s%n", fraction * 100, dfs,
+                    load, reachable, fill, reached, part, noPathDfs, noPathBits,
+                    check(same, "reachability, braid " + Math.round(fraction * 100) + "%") ? "yes" : "NO");
+            grid.close();
+        }
+        System.out.printf("Reachability uses %d KB%n", reachability.getMemoryFootprint() / 1024);
+    }
+
+    //Puts the right (dir 1) or bottom (dir 2) wall of (x, y) back up, which MazeGrid has no method for.
+    private static void addWall(PackedGrid grid, int x, int y, int dir) {
+        long cell = (long) y * grid.getWidth() + x;
+        long bit = (dir == MazeGrid.RIGHT ? 1L : 2L) << ((cell & 31) << 1);
+        grid.setWord(cell >>> 5, grid.getWord(cell >>> 5) | bit);
+    }
+
+    //Times the AI's part of a regeneration on the game thread: blocking (generate the next maze, build
+    //its junction graph and plan, as on a pool miss), blocking with a pooled maze (graph and plan only),
+    //and speculative, where AIPlanner did both while the human was thinking and the game only takes
+    //the result. A plan for another start position must be rejected as stale.
+    private static void benchmarkAIPlanner(int size) {
+        int rounds = 5;
+        System.out.printf("%dx%d packed grid, AI's regeneration work on the game thread, average of %d%n",
+                size, size, rounds);
+        System.out.printf("%-10s %14s %14s %16s %8s %8s%n", "terrain", "blocking ms", "pooled ms",
+                "speculative ms", "same", "stale");
+        AIPlanner planner = new AIPlanner();
+        for (double share : new double[]{0, 0.3}) {
+            double blocking = 0, pooled = 0, speculative = 0;
+            boolean same = true, stale = true;
+            for (int round = 0; round <= rounds; round++) {
+                long seed = 42 + round;
+                Random random = new Random(seed);
+                int x = random.nextInt(size), y = random.nextInt(size);
+
+                long start = System.nanoTime();
+                PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+                Point[] openings = new MazeGenerator(new Random(seed)).generateMaze(grid, MazeGenerator.Algorithm.DFS,
+                        0.1, null);
+                MazeValidator.validateBraided(grid, openings[0], openings[1], 0.1);
+                Terrain terrain = share > 0 ? Terrain.generate(size, size, share, seed) : null;
+                long generated = System.nanoTime();
+                AIPlanner.Layout layout = new AIPlanner.Layout(round, grid, openings[0], openings[1], terrain, null);
+                MovePath blockingPlan = terrain != null
+                        ? new WeightedSolver().solve(grid, terrain, x, y, openings[1].x, openings[1].y)
+                        : layout.junctions.solve(x, y, openings[1].x, openings[1].y);
+                long planned = System.nanoTime();
+                grid.close();
+
+                long version = round;
+                PackedGrid[] next = new PackedGrid[1];
+                planner.prepareNext(version, () -> {
+                    next[0] = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+                    Point[] o = new MazeGenerator(new Random(seed)).generateMaze(next[0], MazeGenerator.Algorithm.DFS,
+                            0.1, null);
+                    MazeValidator.validateBraided(next[0], o[0], o[1], 0.1);
+                    return new AIPlanner.Layout(version, next[0], o[0], o[1],
+                            share > 0 ? Terrain.generate(size, size, share, seed) : null, null);
+                });
+                planner.planNext(x, y + 1 < size ? y + 1 : y - 1); // the AI moves once more...
+                planner.planNext(x, y);
+                LockSupport.parkNanos(2 * (planned - start) + 50_000_000L); // ...then the human thinks
+                long taking = System.nanoTime();
+                AIPlanner.Layout taken = planner.takeNextMaze(version);
+                AIPlanner.Plan plan = planner.takeNextPlan(version, x, y);
+                long taken2 = System.nanoTime();
+                same &= taken != null && plan != null && plan.moves.size() == blockingPlan.size();
+
+                // Stale: the AI stands elsewhere, or the grid was replaced (by a load) since
+                planner.prepareNext(version + 1, () -> new AIPlanner.Layout(version + 1, taken.grid, taken.entrance,
+                        taken.exit, taken.terrain, taken.junctions));
+                planner.planNext(x, y);
+                stale &= planner.takeNextMaze(version + 1) != null && planner.takeNextPlan(version + 1, x + 1, y) == null;
+                planner.prepareNext(version + 2, () -> taken);
+                planner.planNext(x, y);
+                stale &= planner.takeNextMaze(version + 2) == null && planner.takeNextPlan(version + 2, x, y) == null;
+                next[0].close();
+
+                if (round == 0) continue; // warm-up
+                blocking += (planned - start) / 1e6 / rounds;
+                pooled += (planned - generated) / 1e6 / rounds;
+                speculative += (taken2 - taking) / 1e6 / rounds;
+            }
+            System.out.printf("%-10s %14.1f %14.1f %16.3f %8s %8s%n", share > 0 ? (int) (share * 100) + "%" : "none",
+                    blocking, pooled, speculative, check(same, "prepared plan, terrain " + share) ? "yes" : "NO",
+                    check(stale, "stale plan rejected, terrain " + share) ? "rejected" : "USED");
+        }
+        planner.clear();
+    }
+
+    //Baseline: Dijkstra with a binary heap of (distance << 32 | cell), stale entries skipped. Returns the cost.
+    private static int dijkstraBinaryHeap(MazeGrid grid, Terrain terrain, Point from, Point to) {
+        int width = grid.getWidth();
+        int[] distance = new int[(int) grid.getCellCount()];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        long[] heap = new long[1024];
+        int size = 0;
+        int target = to.y * width + to.x;
+        distance[from.y * width + from.x] = 0;
+        heap[size++] = from.y * width + from.x;
+        while (size > 0) {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (2 * i + 1 < size) { // sift 'last' down from the root
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (heap[child] >= last) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            int cell = (int) top, d = (int) (top >>> 32);
+            if (d > distance[cell]) continue;
+            if (cell == target) break;
+            int openings = grid.getOpenings(cell % width, cell / width);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings & (1 << dir)) == 0) continue;
+                int next = cell + (dir == 0 ? -width : dir == 1 ? 1 : dir == 2 ? width : -1);
+                int nd = d + terrain.getCost(next);
+                if (nd >= distance[next]) continue;
+                distance[next] = nd;
+                if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+                long value = (long) nd << 32 | next;
+                int j = size++;
+                while (j > 0 && heap[(j - 1) >>> 1] > value) { // sift up
+                    heap[j] = heap[(j - 1) >>> 1];
+                    j = (j - 1) >>> 1;
+                }
+                heap[j] = value;
+            }
+        }
+        return distance[target];
+    }
+
+    //Baseline: Dijkstra with PriorityQueue of boxed {distance, cell} nodes. Returns the cost.
+    private static int dijkstraPriorityQueue(MazeGrid grid, Terrain terrain, Point from, Point to) {
+        int width = grid.getWidth();
+        int[] distance = new int[(int) grid.getCellCount()];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+        int target = to.y * width + to.x;
+        distance[from.y * width + from.x] = 0;
+        queue.add(new int[]{0, from.y * width + from.x});
+        while (!queue.isEmpty()) {
+            int[] node = queue.poll();
+            int d = node[0], cell = node[1];
+            if (d > distance[cell]) continue;
+            if (cell == target) break;
+            int openings = grid.getOpenings(cell % width, cell / width);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings & (1 << dir)) == 0) continue;
+                int next = cell + (dir == 0 ? -width : dir == 1 ? 1 : dir == 2 ? width : -1);
+                int nd = d + terrain.getCost(next);
+                if (nd < distance[next]) {
+                    distance[next] = nd;
+                    queue.add(new int[]{nd, next});
+                }
+            }
+        }
+        return distance[target];
+    }
+
+    //Compares List<Character>, the old path type, with MovePath on paths of 'millions' million moves:
+    //heap per path, building, iterating (drawing), taking the next 10 moves (hints) and consuming
+    //moves from the front (the AI). remove(0) is O(n), so the list consumes only 1000 moves.
+    private static void benchmarkPaths(int millions) {
+        int moves = millions * 1_000_000;
+        Random random = new Random(42);
+        byte[] dirs = new byte[moves];
+        for (int i = 0; i < moves; i++) dirs[i] = (byte) random.nextInt(4);
+        char[] chars = {'w', 'd', 's', 'a'};
+        System.out.printf("%d moves%n", moves);
+        System.out.printf("%-16s %12s %12s %12s %14s %14s%n", "path", "bytes/move", "build ns", "iterate ns",
+                "next 10 ns", "consume ns");
+
+        for (int round = 0; round < 5; round++) {
+            long sum = 0;
+            // List<Character>
+            long before = usedHeap();
+            List<Character> list = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < moves; i++) list.add(chars[dirs[i]]);
+            long build = System.nanoTime() - start;
+            double listBytes = (double) (usedHeap() - before) / moves;
+            start = System.nanoTime();
+            for (char move : list) sum += move;
+            long iterate = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 100_000; i++) sum += new ArrayList<>(list.subList(0, 10)).size();
+            long next = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) sum += list.remove(0);
+            long consume = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.printf("%-16s %12.2f %12.2f %12.2f %14.2f %14.1f%n", "List<Character>", listBytes,
+                        (double) build / moves, (double) iterate / moves, next / 1e5, consume / 1e3);
+            }
+            list = null;
+
+            // MovePath
+            before = usedHeap();
+            MovePath path = new MovePath();
+            start = System.nanoTime();
+            for (int i = 0; i < moves; i++) path.add(dirs[i]);
+            build = System.nanoTime() - start;
+            double pathBytes = (double) (usedHeap() - before) / moves;
+            start = System.nanoTime();
+            for (int i = 0; i < path.size(); i++) sum += path.get(i);
+            iterate = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 100_000; i++) sum += path.slice(0, 10).size();
+            next = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < moves; i++) sum += path.poll();
+            consume = System.nanoTime() - start;
+            if (round == 4) {
+                System.out.printf("%-16s %12.2f %12.2f %12.2f %14.2f %14.1f%n", "MovePath", pathBytes,
+                        (double) build / moves, (double) iterate / moves, next / 1e5, (double) consume / moves);
+                System.out.println("(checksum " + sum + ")");
+            }
+        }
+    }
+
+    //Heap in use after a full collection.
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //Time until a new size x size game can draw its first frame and take its first move, when the maze
+    //is generated and validated first (as before) and when it is generated progressively. Drawing is
+    //left out: a frame costs the same in both cases (see the terminal benchmark).
+    //Averages over 5 seeds after one warm-up round.
+    private static void benchmarkProgressive(int size) {
+        int seeds = 5;
+        System.out.printf("%dx%d packed grid, 64 batches, average of %d mazes%n", size, size, seeds);
+        System.out.printf("%-6s %-12s %14s %14s %14s %14s%n", "maze", "generation", "first frame ms",
+                "first batch ms", "first move ms", "complete ms");
+        for (MazeGenerator.Algorithm algorithm : MazeGenerator.Algorithm.values()) {
+            double blocking = 0;
+            double[] progressive = new double[4];
+            for (int seed = 0; seed <= seeds; seed++) {
+                PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+                long start = System.nanoTime();
+                Point[] openings = new MazeGenerator(new Random(seed)).generateMaze(grid, algorithm, 0, null);
+                check(MazeValidator.validate(grid, openings[0], openings[1], 0).isValid(), algorithm + " maze");
+                if (seed > 0) blocking += (System.nanoTime() - start) / 1e6 / seeds;
+                grid.close();
+
+                PackedGrid target = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+                CountDownLatch complete = new CountDownLatch(1);
+                AtomicBoolean valid = new AtomicBoolean();
+                AtomicLong frames = new AtomicLong();
+                start = System.nanoTime();
+                ProgressiveGeneration generation = new ProgressiveGeneration(target, target.getCellCount() / 64,
+                        frames::incrementAndGet);
+                generation.start(new MazeGenerator(new Random(seed)), algorithm, 0, done -> {
+                    valid.set(MazeValidator.validate(target, done[0], done[1], 0).isValid());
+                    complete.countDown();
+                });
+                double firstFrame = (System.nanoTime() - start) / 1e6;
+                try {
+                    complete.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                check(valid.get(), algorithm + " maze generated progressively");
+                double[] run = {firstFrame, generation.getFirstBatchMillis(), generation.getEntranceReadyMillis(),
+                        (System.nanoTime() - start) / 1e6};
+                for (int i = 0; seed > 0 && i < run.length; i++) progressive[i] += run[i] / seeds;
+                target.close();
+            }
+            System.out.printf("%-6s %-12s %14.1f %14s %14.1f %14.1f%n", algorithm, "blocking", blocking, "-",
+                    blocking, blocking);
+            System.out.printf("%-6s %-12s %14.2f %14.1f %14.1f %14.1f%n", algorithm, "progressive", progressive[0],
+                    progressive[1], progressive[2], progressive[3]);
+        }
+    }
+
+    //Compares MazeSolver (BFS over cells) with JunctionGraph (Dijkstra over junctions) on
+    //size x size mazes: 20 solves from random cells to the exit, which must give paths of equal length.
+    private static void benchmarkJunctions(int size) {
+        int queries = 20;
+        System.out.printf("%dx%d packed grid, %d solves from random cells to the exit%n", size, size, queries);
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s %8s%n", "maze", "nodes", "cells/n", "build ms",
+                "bfs ms", "graph ms", "speedup", "same");
+        String[] names = {"dfs", "eller", "dfs 50%"};
+        MazeGenerator.Algorithm[] algorithms = {MazeGenerator.Algorithm.DFS, MazeGenerator.Algorithm.ELLER,
+                MazeGenerator.Algorithm.DFS};
+        double[] braids = {0, 0, 0.5};
+        for (int m = 0; m < names.length; m++) {
+            PackedGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            MazeGenerator generator = new MazeGenerator(new Random(42));
+            generator.generate(grid, algorithms[m]);
+            generator.braid(grid, braids[m]);
+            Point[] openings = generator.createEntranceAndExit(grid);
+            Point exit = openings[1];
+
+            long start = System.nanoTime();
+            JunctionGraph graph = new JunctionGraph(grid, openings[0], exit);
+            long build = System.nanoTime() - start;
+
+            Random random = new Random(7);
+            long bfsNanos = 0, graphNanos = 0;
+            boolean same = true;
+            for (int q = 0; q < queries; q++) {
+                int x = q == 0 ? openings[0].x : random.nextInt(size);
+                int y = q == 0 ? openings[0].y : random.nextInt(size);
+                long t0 = System.nanoTime();
+                MovePath bfs = MazeSolver.solve(grid, x, y, exit.x, exit.y);
+                long t1 = System.nanoTime();
+                MovePath path = graph.solve(x, y, exit.x, exit.y);
+                long t2 = System.nanoTime();
+                bfsNanos += t1 - t0;
+                graphNanos += t2 - t1;
+                same &= bfs.size() == path.size();
+            }
+            System.out.printf("%-10s %10d %8.1f %10.1f %10.2f %10.2f %9.1fx %8s%n", names[m], graph.getNodeCount(),
+                    (double) grid.getCellCount() / graph.getNodeCount(), build / 1e6, bfsNanos / 1e6 / queries,
+                    graphNanos / 1e6 / queries, (double) bfsNanos / graphNanos,
+                    check(same, names[m] + " junction paths") ? "yes" : "NO");
+            grid.close();
+        }
+    }
+
+    //Appends 'millions' million results from several threads to a fresh leaderboard log, then reopens
+    //it and times the index rebuild. The rebuilt top lists must equal the ones built by the appends.
+    private static void benchmarkLeaderboard(int millions) {
+        long count = millions * 1_000_000L;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int[] sizes = {10, 20, 30};
+        Path file = null;
+        try {
+            file = Files.createTempFile("leaderboard", ".log");
+            List<List<Leaderboard.Entry>> before = new ArrayList<>();
+            long start = System.nanoTime();
+            try (Leaderboard board = new Leaderboard(file)) {
+                AtomicLong next = new AtomicLong();
+                Thread[] writers = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    long seed = t;
+                    writers[t] = new Thread(() -> {
+                        Random random = new Random(seed);
+                        try {
+                            while (next.getAndIncrement() < count) {
+                                int size = sizes[random.nextInt(sizes.length)];
+                                Leaderboard.Mode mode = Leaderboard.Mode.values()[random.nextInt(3)];
+                                int terrain = random.nextBoolean() ? 0 : 20;
+                                board.append(size, size, mode, terrain, random.nextLong(), random.nextInt(4) != 0,
+                                        size + random.nextInt(100 * size), size * 2 + random.nextInt(20 * size));
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    writers[t].start();
+                }
+                for (Thread writer : writers) writer.join();
+                for (int size : sizes) {
+                    before.add(board.top(size, size, Leaderboard.Mode.SINGLE, 0, Leaderboard.Order.TIME, 10));
+                    before.add(board.top(size, size, Leaderboard.Mode.SWARM, 0, Leaderboard.Order.MOVES, 10));
+                    before.add(board.top(size, size, Leaderboard.Mode.SINGLE, 20, Leaderboard.Order.MOVES, 10));
+                }
+            }
+            double appendSeconds = (System.nanoTime() - start) / 1e9;
+
+            try (Leaderboard board = new Leaderboard(file)) {
+                List<List<Leaderboard.Entry>> after = new ArrayList<>();
+                long queryStart = System.nanoTime();
+                for (int size : sizes) {
+                    after.add(board.top(size, size, Leaderboard.Mode.SINGLE, 0, Leaderboard.Order.TIME, 10));
+                    after.add(board.top(size, size, Leaderboard.Mode.SWARM, 0, Leaderboard.Order.MOVES, 10));
+                    after.add(board.top(size, size, Leaderboard.Mode.SINGLE, 20, Leaderboard.Order.MOVES, 10));
+                }
+                long queryNanos = System.nanoTime() - queryStart;
+                boolean same = before.size() == after.size();
+                for (int i = 0; same && i < before.size(); i++) {
+                    int terrain = i % 3 == 2 ? 20 : 0; // the third list of each size is the terrain board
+                    same = before.get(i).stream().map(e -> e.position).toList()
+                            .equals(after.get(i).stream().map(e -> e.position).toList())
+                            && after.get(i).stream().allMatch(e -> e.terrainPercent == terrain);
+                }
+
+                System.out.printf("%d results, %d threads, %d MB log%n", count, threads, Files.size(file) >> 20);
+                System.out.printf("append: %.2f s, %.0f results/s%n", appendSeconds, count / appendSeconds);
+                System.out.printf("rebuild: %.0f ms (%.0f ns per record), %d records, %d skipped%n",
+                        board.getRebuildMillis(), board.getRebuildMillis() * 1e6 / count, board.getEntryCount(),
+                        board.getSkippedCount());
+                System.out.printf("%d top-10 queries: %.1f us; rebuilt top lists %s the appended ones%n", after.size(),
+                        queryNanos / 1e3, check(same, "rebuilt top lists") ? "equal" : "DIFFER from");
+                check(board.getEntryCount() == count && board.getSkippedCount() == 0, "all results read back");
+                Leaderboard.Entry best = after.get(0).get(0);
+                System.out.printf("best 10x10 single: %d s, %d moves, seed %d%n", best.seconds, best.moves, best.seed);
+            }
+
+            // Two logs opened on one file, like two game processes: no append may overwrite another
+            Files.delete(file);
+            long shared = Math.min(count, 100_000);
+            start = System.nanoTime();
+            try (Leaderboard first = new Leaderboard(file); Leaderboard second = new Leaderboard(file)) {
+                Thread[] writers = new Thread[2];
+                for (int t = 0; t < 2; t++) {
+                    Leaderboard board = t == 0 ? first : second;
+                    writers[t] = new Thread(() -> {
+                        try {
+                            for (long i = 0; i < shared; i++) {
+                                board.append(10, 10, Leaderboard.Mode.SINGLE, 0, i, true, 10 + (int) (i % 100), 20);
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    writers[t].start();
+                }
+                for (Thread writer : writers) writer.join();
+            }
+            double sharedSeconds = (System.nanoTime() - start) / 1e9;
+            try (Leaderboard board = new Leaderboard(file)) {
+                System.out.printf("2 logs on one file: %d results in %.2f s, %d read back, %d skipped%n",
+                        2 * shared, sharedSeconds, board.getEntryCount(), board.getSkippedCount());
+                check(board.getEntryCount() == 2 * shared && board.getSkippedCount() == 0,
+                        "results of 2 logs on one file read back");
+            }
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            failures++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (file != null) file.toFile().delete();
+        }
+    }
+
+    //Streams a game to 'clients' local spectators: a player walks a 200x200 maze at 500 moves per
+    //second, with a timer tick every 100 moves and a regeneration every 400. One in ten spectators
+    //reads only every 250 ms and gets coalesced deltas. Afterwards every spectator must be on the
+    //last version, and spectator 0, which decodes every frame, must match the final maze.
+    private static void benchmarkSpectators(int clients) {
+        int size = 200, moves = 2000;
+        try (SpectatorServer server = new SpectatorServer(0); Selector selector = Selector.open()) {
+            MazeGenerator generator = new MazeGenerator(new Random(42));
+            MazeGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+            generator.generate(grid, MazeGenerator.Algorithm.DFS);
+            Point[] openings = generator.createEntranceAndExit(grid);
+            Player player = new Player(openings[0].x, openings[0].y);
+            GameSnapshot first = new GameSnapshot(1, true, size, size, 20, grid, player, null, openings[0],
+                    openings[1], 0, 0, 0, false, true, 0, 0, 0, null, 0, null);
+            server.publish(first);
+
+            SocketChannel[] channels = new SocketChannel[clients];
+            ByteBuffer[] inputs = new ByteBuffer[clients];
+            long[] versions = new long[clients];
+            long[] frames = new long[clients];
+            SpectatorServer.View view = new SpectatorServer.View();
+            for (int i = 0; i < clients; i++) {
+                channels[i] = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+                channels[i].configureBlocking(false);
+                inputs[i] = ByteBuffer.allocate(64 * 1024);
+                if (i % 10 != 9) channels[i].register(selector, SelectionKey.OP_READ, i);
+            }
+
+            // Spectators, on their own thread
+            AtomicBoolean reading = new AtomicBoolean(true);
+            Thread readers = new Thread(() -> {
+                long nextSlowRead = 0;
+                try {
+                    while (reading.get()) {
+                        selector.select(10);
+                        for (SelectionKey key : selector.selectedKeys()) {
+                            int i = (Integer) key.attachment();
+                            readFrames(channels[i], inputs[i], versions, frames, i, i == 0 ? view : null);
+                        }
+                        selector.selectedKeys().clear();
+                        if (System.currentTimeMillis() >= nextSlowRead) {
+                            for (int i = 9; i < clients; i += 10) {
+                                readFrames(channels[i], inputs[i], versions, frames, i, null);
+                            }
+                            nextSlowRead = System.currentTimeMillis() + 250;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, "spectator-clients");
+            readers.start();
+            while (server.getSpectatorCount() < clients) Thread.sleep(10);
+
+            // The game
+            long cpuBefore = threadCpuNanos("maze-spectators");
+            MovePath path = MazeSolver.solve(grid, player.x, player.y, openings[1].x, openings[1].y);
+            long start = System.nanoTime();
+            for (int step = 1; step <= moves; step++) {
+                if (step % 400 == 0) {
+                    grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+                    generator.generate(grid, MazeGenerator.Algorithm.DFS);
+                    openings = generator.createEntranceAndExit(grid);
+                    path = MazeSolver.solve(grid, player.x, player.y, openings[1].x, openings[1].y);
+                } else if (!path.isEmpty()) {
+                    char move = MovePath.toMove(path.poll());
+                    player.x += move == 'd' ? 1 : move == 'a' ? -1 : 0;
+                    player.y += move == 's' ? 1 : move == 'w' ? -1 : 0;
+                }
+                server.publish(new GameSnapshot(step + 1, true, size, size, 20, grid, player, null, openings[0],
+                        openings[1], step, 0, step / 100, false, true, 0, 0, 0, null, 0, null));
+                LockSupport.parkNanos(Math.max(0, start + step * 2_000_000L - System.nanoTime()));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long lastVersion = moves + 1;
+
+            // Wait until every spectator has the last version
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (System.currentTimeMillis() < deadline && LongStream.of(versions).anyMatch(v -> v != lastVersion)) {
+                Thread.sleep(10);
+            }
+            long cpu = threadCpuNanos("maze-spectators") - cpuBefore;
+            reading.set(false);
+            readers.join();
+
+            long behind = LongStream.of(versions).filter(v -> v != lastVersion).count();
+            boolean matches = view.version == lastVersion && view.playerX == player.x && view.playerY == player.y;
+            for (int y = 0; y < size && matches; y++) {
+                for (int x = 0; x < size; x++) {
+                    for (int dir = 0; dir < 4; dir++) {
+                        if (view.hasWall(x, y, dir) != grid.hasWall(x, y, dir)) matches = false;
+                    }
+                }
+            }
+            long fastFrames = 0, slowFrames = 0;
+            for (int i = 0; i < clients; i++) {
+                if (i % 10 == 9) slowFrames += frames[i];
+                else fastFrames += frames[i];
+            }
+            int slowClients = clients / 10;
+
+            System.out.printf("%d spectators, %dx%d maze, %d updates in %.2f s%n", clients, size, size, moves, seconds);
+            System.out.println(server.getStatistics());
+            System.out.printf("frames per spectator: fast %.0f, slow %.0f (of %d updates)%n",
+                    (double) fastFrames / (clients - slowClients), (double) slowFrames / Math.max(1, slowClients), moves);
+            System.out.printf("server thread CPU %.0f ms (%.1f%% of the run), %.2f us per frame%n", cpu / 1e6,
+                    100.0 * cpu / 1e9 / seconds, cpu / 1e3 / Math.max(1, server.getFramesSent()));
+            System.out.printf("%d spectators behind the last version, spectator 0 %s the final state%n",
+                    behind, matches ? "matches" : "does NOT match");
+            check(behind == 0, "spectators on the last version");
+            check(matches, "spectator 0 matches the final state");
+            for (SocketChannel channel : channels) channel.close();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            failures++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Reads what is available and counts the complete frames; 'view' (if set) applies them.
+    private static void readFrames(SocketChannel channel, ByteBuffer input, long[] versions, long[] frames,
+                                   int client, SpectatorServer.View view) throws IOException {
+        while (channel.read(input) > 0) {
+            input.flip();
+            while (input.remaining() >= 4 && input.remaining() >= 4 + input.getInt(input.position())) {
+                int length = input.getInt();
+                ByteBuffer frame = input.slice(input.position(), length);
+                versions[client] = frame.getLong(1);
+                frames[client]++;
+                if (view != null) view.apply(frame);
+                input.position(input.position() + length);
+            }
+            input.compact();
+        }
+    }
+
+    private static long threadCpuNanos(String name) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (long id : threads.getAllThreadIds()) {
+            ThreadInfo info = threads.getThreadInfo(id);
+            if (info != null && info.getThreadName().equals(name)) return threads.getThreadCpuTime(id);
+        }
+        return 0;
+    }
+
+    //Renders a player walking the solution of a size x size maze with the terminal renderer
+    //(output discarded) and reports bytes and time of the first and the following frames.
+    private static void benchmarkTerminal(int size) {
+        MazeGrid grid = new PackedGrid(size, size, PackedGrid.Storage.OFF_HEAP);
+        MazeGenerator generator = new MazeGenerator(new Random(42));
+        generator.generate(grid, MazeGenerator.Algorithm.DFS);
+        Point[] openings = generator.createEntranceAndExit(grid);
+        MovePath path = MazeSolver.solve(grid, openings[0].x, openings[0].y, openings[1].x, openings[1].y);
+        TerminalRenderer renderer = new TerminalRenderer(new PrintStream(OutputStream.nullOutputStream()));
+        Player player = new Player(openings[0].x, openings[0].y);
+
+        long start = System.nanoTime();
+        renderer.render(new GameSnapshot(0, true, size, size, 20, grid, player, null, openings[0], openings[1],
+                0, 0, 0, false, true, 0, 0, 0, null, 0, null));
+        long first = System.nanoTime() - start;
+        long firstBytes = renderer.getBytesWritten();
+
+        int frames = Math.min(path.size(), 2000);
+        start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            char move = path.getMove(i);
+            player.x += move == 'd' ? 1 : move == 'a' ? -1 : 0;
+            player.y += move == 's' ? 1 : move == 'w' ? -1 : 0;
+            renderer.render(new GameSnapshot(i + 1, true, size, size, 20, grid, player, null, openings[0],
+                    openings[1], i + 1, 0, 0, false, true, 0, 0, 0, null, 0, null));
+        }
+        long rest = System.nanoTime() - start;
+
+        System.out.printf("%dx%d maze, %d x %d characters%n", size, size, 2 * size + 1, 2 * size + 1);
+        System.out.printf("first frame: %10d bytes %10.2f ms%n", firstBytes, first / 1e6);
+        System.out.printf("per move:    %10.1f bytes %10.3f ms (%d moves)%n",
+                (double) (renderer.getBytesWritten() - firstBytes) / frames, rest / 1e6 / frames, frames);
+        ((PackedGrid) grid).close();
+    }
+
+    //Mutable game state as it was before snapshots, for comparison.
+    private static class LiveState {
+
+        final Player player = new Player(0, 0);
+        int moves;
+    }
+
+    //Concurrency stress test. One writer changes the game state as fast as it can while readers check
+    //that position, move count, time and version always belong to the same step. Readers of the live
+    //mutable state see torn reads; readers of published snapshots must see none.
+    private static void benchmarkSnapshots(int seconds) {
+        int width = 64, height = 64;
+        MazeGrid grid = new CellGrid(width, height);
+        Point corner = new Point(0, 0);
+        int readers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        LiveState live = new LiveState();
+        AtomicReference<GameSnapshot> published = new AtomicReference<>(
+                new GameSnapshot(0, true, width, height, 20, grid, live.player, null, corner, corner, 0, 0, 0,
+                        false, true, 0, 0, 0, null, 0, null));
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] liveReads = new long[readers], liveTorn = new long[readers];
+        long[] snapshotReads = new long[readers], snapshotTorn = new long[readers];
+
+        Thread writer = new Thread(() -> {
+            Player player = new Player(0, 0);
+            for (int step = 1; running.get(); step++) {
+                live.player.x = step % width;
+                live.moves = step;
+                live.player.y = (step / width) % height;
+
+                player.x = step % width;
+                player.y = (step / width) % height;
+                published.set(new GameSnapshot(step, true, width, height, 20, grid, player, null, corner, corner,
+                        step, 0, step / 1000, false, true, 0, 0, 0, null, 0, null));
+            }
+        }, "snapshot-writer");
+
+        Thread[] workers = new Thread[readers];
+        for (int r = 0; r < readers; r++) {
+            int id = r;
+            workers[r] = new Thread(() -> {
+                long lastVersion = 0;
+                while (running.get()) {
+                    int x = live.player.x, moves = live.moves, y = live.player.y;
+                    liveReads[id]++;
+                    if (x != moves % width || y != (moves / width) % height) liveTorn[id]++;
+
+                    GameSnapshot s = published.get();
+                    snapshotReads[id]++;
+                    if (s.version != s.humanMoveCount || s.player.x != s.humanMoveCount % width
+                            || s.player.y != (s.humanMoveCount / width) % height
+                            || s.elapsedTime != s.humanMoveCount / 1000 || s.version < lastVersion) {
+                        snapshotTorn[id]++;
+                    }
+                    lastVersion = s.version;
+                }
+            }, "snapshot-reader-" + r);
+        }
+
+        writer.start();
+        for (Thread worker : workers) worker.start();
+        LockSupport.parkNanos(seconds * 1_000_000_000L);
+        running.set(false);
+        try {
+            writer.join();
+            for (Thread worker : workers) worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        long lastVersion = published.get().version;
+        System.out.printf("%d s, 1 writer, %d readers, %d versions published (%.1f M/s)%n", seconds, readers,
+                lastVersion, lastVersion / 1e6 / seconds);
+        System.out.printf("live fields: %12d reads, %10d torn%n", LongStream.of(liveReads).sum(),
+                LongStream.of(liveTorn).sum());
+        System.out.printf("snapshots:   %12d reads, %10d torn%n", LongStream.of(snapshotReads).sum(),
+                LongStream.of(snapshotTorn).sum());
+        check(LongStream.of(snapshotTorn).sum() == 0, "no torn snapshots"); // live fields are expected to tear
+
+        benchmarkGameSnapshots(seconds, readers);
+    }
+
+    //Plays a real game on mapped packed grids: random moves through the input thread and a new maze
+    //every second, while readers take snapshots with getState(). Every move costs 1 and moves the
+    //player one cell, and regenerations keep the player where it is, so x + y + moves keeps the
+    //parity of the entrance in a consistent snapshot. Each reader also keeps the last snapshot of the
+    //previous maze and reads its whole grid again after the game has replaced it: a snapshot must stay
+    //readable for as long as it is kept. No mapped grid may leave a file behind.
+    private static void benchmarkGameSnapshots(int seconds, int readers) {
+        PrintStream out = System.out;
+        InputStream in = System.in;
+        PipedOutputStream keys = new PipedOutputStream();
+        long filesBefore = countGridFiles();
+        Maze maze;
+        try {
+            System.setIn(new PipedInputStream(keys, 1 << 16));
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            maze = new Maze(null, 200, 200, 4);
+        } catch (IOException e) {
+            System.setOut(out);
+            System.out.println("Could not pipe the input: " + e.getMessage());
+            failures++;
+            return;
+        } finally {
+            System.setIn(in);
+        }
+        maze.setPackedStorage(PackedGrid.Storage.MAPPED);
+        maze.setRegenerationInterval(1);
+        Thread game = new Thread(maze::startGame, "snapshot-game");
+        game.start();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] reads = new long[readers], torn = new long[readers], failed = new long[readers];
+        long[] oldReads = new long[readers], grids = new long[readers];
+        Thread[] workers = new Thread[readers];
+        for (int r = 0; r < readers; r++) {
+            int id = r;
+            workers[r] = new Thread(() -> {
+                long lastVersion = -1;
+                int parity = -1; // of the entrance, where the player starts with no moves
+                GameSnapshot previous = null; // last snapshot of the maze before the current one
+                GameSnapshot last = null;
+                while (running.get()) {
+                    GameSnapshot s = maze.getState();
+                    if (s == null || s.player == null) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    reads[id]++;
+                    if (parity < 0) parity = (s.entrance.x + s.entrance.y) & 1;
+                    if (s.version < lastVersion || ((s.player.x + s.player.y + s.humanMoveCount) & 1) != parity
+                            || s.grid.getWidth() != s.width || s.grid.getHeight() != s.height
+                            || s.player.x < 0 || s.player.x >= s.width || s.player.y < 0 || s.player.y >= s.height) {
+                        torn[id]++;
+                    }
+                    lastVersion = s.version;
+                    if (last != null && s.grid != last.grid) {
+                        grids[id]++;
+                        previous = last;
+                    }
+                    last = s;
+                    try {
+                        for (int dir = 0; dir < 4; dir++) s.grid.hasWall(s.player.x, s.player.y, dir);
+                        if (previous != null && (reads[id] & 1023) == 0) {
+                            for (int x = 0; x < previous.width; x++) previous.grid.getOpenings(x, previous.player.y);
+                            oldReads[id]++;
+                        }
+                    } catch (RuntimeException e) {
+                        failed[id]++;
+                    }
+                }
+            }, "game-snapshot-reader-" + r);
+        }
+
+        for (Thread worker : workers) worker.start();
+        Random random = new Random(7);
+        String moves = "wasd";
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try {
+            while (System.nanoTime() < deadline) {
+                keys.write(moves.charAt(random.nextInt(4)));
+                keys.write('\n');
+                keys.flush();
+                LockSupport.parkNanos(200_000);
+            }
+            keys.write("q\n".getBytes());
+            keys.flush();
+            game.join(10_000);
+            running.set(false);
+            for (Thread worker : workers) worker.join();
+        } catch (IOException | InterruptedException e) {
+            running.set(false);
+            System.setOut(out);
+            System.out.println("Game benchmark stopped: " + e);
+            failures++;
+            return;
+        } finally {
+            System.setOut(out);
+        }
+
+        GameSnapshot last = maze.getState();
+        System.out.printf("game: %d s, %d readers, %d versions, %d moves, %d grid changes seen%n", seconds, readers,
+                last.version, last.humanMoveCount, LongStream.of(grids).max().orElse(0));
+        System.out.printf("game snapshots: %10d reads, %6d torn, %6d failed, %d rows of replaced grids read%n",
+                LongStream.of(reads).sum(), LongStream.of(torn).sum(), LongStream.of(failed).sum(),
+                LongStream.of(oldReads).sum());
+        long filesAfter = countGridFiles();
+        System.out.printf("mapped grid files: %d before, %d after the game%n", filesBefore, filesAfter);
+        check(LongStream.of(torn).sum() == 0, "no torn game snapshots");
+        check(LongStream.of(failed).sum() == 0, "kept snapshots readable");
+        check(filesAfter <= filesBefore, "no mapped grid files left behind");
+    }
+
+    //Writes a size x size game in the savegame.dat format of the game before save slots, imports it into
+    //a slot and loads the slot. Walls, players, entrance, exit and counters must come back unchanged.
+    private static void benchmarkLegacyImport(int size) {
+        CellGrid grid = new CellGrid(size, size);
+        MazeGenerator generator = new MazeGenerator(new Random(42));
+        generator.generate(grid, MazeGenerator.Algorithm.DFS);
+        Point[] openings = generator.createEntranceAndExit(grid);
+        Cell[][] cells = new Cell[size][size]; // the old game's grid, rows first
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                cells[y][x] = grid.getCell(x, y);
+            }
+        }
+        Cell entrance = cells[openings[0].y][openings[0].x], exit = cells[openings[1].y][openings[1].x];
+        Player player = new Player(size / 2, size / 3);
+        Player aiPlayer = new Player(entrance.x, entrance.y);
+
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("legacy-save");
+            Path legacy = directory.resolve("savegame.dat");
+            try (ObjectOutputStream out = new BaselineOutputStream(new FileOutputStream(legacy.toFile()))) {
+                out.writeInt(size);
+                out.writeInt(size);
+                out.writeInt(20);
+                out.writeObject(cells);
+                out.writeObject(player);
+                out.writeObject(aiPlayer);
+                out.writeObject(entrance);
+                out.writeObject(exit);
+                out.writeInt(123);
+                out.writeInt(45);
+                out.writeInt(67);
+                out.writeBoolean(true);
+                out.writeBoolean(false);
+                out.writeInt(23);
+            }
+            long legacyBytes = Files.size(legacy);
+
+            SaveSlots slots = new SaveSlots(directory.resolve("saves"));
+            long start = System.nanoTime();
+            boolean imported = slots.importLegacy(legacy, "savegame");
+            double importMillis = (System.nanoTime() - start) / 1e6;
+            GameSnapshot loaded = slots.load("savegame");
+
+            boolean same = imported && loaded.width == size && loaded.height == size && loaded.cellSize == 20
+                    && loaded.player.x == player.x && loaded.player.y == player.y
+                    && loaded.aiPlayer.x == aiPlayer.x && loaded.aiPlayer.y == aiPlayer.y
+                    && loaded.entrance.x == entrance.x && loaded.entrance.y == entrance.y
+                    && loaded.exit.x == exit.x && loaded.exit.y == exit.y
+                    && loaded.humanMoveCount == 123 && loaded.aiMoveCount == 45 && loaded.elapsedTime == 67
+                    && loaded.isCompetitiveMode && !loaded.isHumanTurn && loaded.timeUntilNextRegen == 23;
+            for (int y = 0; y < size && same; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (loaded.grid.getOpenings(x, y) != grid.getOpenings(x, y)) same = false;
+                }
+            }
+            MazeValidator.Result result = MazeValidator.validate(loaded.grid, loaded.entrance, loaded.exit, 0);
+            System.out.printf("%dx%d game, savegame.dat %d KB, imported in %.1f ms, slot %d KB%n", size, size,
+                    legacyBytes >> 10, importMillis, Files.size(slots.pathOf("savegame")) >> 10);
+            System.out.printf("loaded slot: %s, %s%n", result, check(same && result.isValid(),
+                    "imported game equals the old save") ? "same game" : "DIFFERENT game");
+            check(!slots.importLegacy(legacy, "savegame") && Files.exists(legacy.resolveSibling("savegame.dat.imported")),
+                    "old save imported once");
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error: " + e.getMessage());
+            failures++;
+        } finally {
+            deleteTree(directory);
+        }
+    }
+
+    //Writes Player with the serialVersionUID it had before save slots, as savegame.dat files hold it.
+    //Cell has not changed; Player has gained a constructor since, which changed the computed one.
+    private static class BaselineOutputStream extends ObjectOutputStream {
+
+        private static final long BASELINE_PLAYER_UID = 5662660328775011678L;
+
+        BaselineOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass descriptor) throws IOException {
+            if (!descriptor.getName().equals("Player")) {
+                super.writeClassDescriptor(descriptor);
+                return;
+            }
+            writeUTF("Player");
+            writeLong(BASELINE_PLAYER_UID);
+            writeByte(ObjectStreamConstants.SC_SERIALIZABLE);
+            writeShort(2); // int x, int y
+            writeByte('I');
+            writeUTF("x");
+            writeByte('I');
+            writeUTF("y");
+        }
+    }
+
+    //Deletes a temporary directory and everything in it.
+    private static void deleteTree(Path directory) {
+        if (directory == null) return;
+        try (var paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.out.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+
+    //Temporary files of mapped packed grids.
+    private static long countGridFiles() {
+        try (var files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(f -> f.getFileName().toString().startsWith("maze-grid")).count();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void benchmarkGrid(String label, MazeGrid grid) {
+        MazeGenerator generator = new MazeGenerator(new Random(42));
+        long start = System.nanoTime();
+        generator.generate(grid, MazeGenerator.Algorithm.DFS);
+        Point[] openings = generator.createEntranceAndExit(grid);
+        long generated = System.nanoTime();
+
+        MovePath path = new MovePath();
+        for (int i = 0; i < 5; i++) {
+            path = MazeSolver.solve(grid, openings[0].x, openings[0].y, openings[1].x, openings[1].y);
+        }
+        long solved = System.nanoTime();
+
+        System.out.printf("%-18s %12.2f %12d %12d %10d%n", label,
+                (double) grid.getMemoryFootprint() / grid.getCellCount(),
+                (generated - start) / 1_000_000, (solved - generated) / 5_000_000, path.size());
+        if (grid instanceof PackedGrid packed) {
+            packed.close();
+        }
+    }
+}
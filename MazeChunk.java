@@ -0,0 +1,59 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class MazeChunk implements Serializable {
+
+    // Wall bits per cell, same order as Cell.walls: top, right, bottom, left
+    public static final byte TOP = 1;
+    public static final byte RIGHT = 2;
+    public static final byte BOTTOM = 4;
+    public static final byte LEFT = 8;
+    public static final byte ALL_WALLS = TOP | RIGHT | BOTTOM | LEFT;
+
+    public final int chunkX, chunkY;
+    public final int size;
+    private final byte[] walls;
+
+    public MazeChunk(int chunkX, int chunkY, int size) {
+        this(chunkX, chunkY, size, new byte[size * size]);
+        Arrays.fill(walls, ALL_WALLS);
+    }
+
+    private MazeChunk(int chunkX, int chunkY, int size, byte[] walls) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.size = size;
+        this.walls = walls;
+    }
+
+    //Rebuilds a chunk from the raw wall bytes written by toBytes().
+    public static MazeChunk fromBytes(int chunkX, int chunkY, int size, byte[] data) {
+        if (data.length != size * size) {
+            throw new IllegalArgumentException("Chunk data has wrong length: " + data.length);
+        }
+        return new MazeChunk(chunkX, chunkY, size, data);
+    }
+
+    public byte[] toBytes() {
+        return walls.clone();
+    }
+
+    //Checks whether the local cell (x, y) has a wall in the given direction (0..3).
+    public boolean hasWall(int x, int y, int dir) {
+        return (walls[y * size + x] & (1 << dir)) != 0;
+    }
+
+    public void removeWall(int x, int y, int dir) {
+        walls[y * size + x] &= (byte) ~(1 << dir);
+    }
+
+    //Approximate heap footprint, used by the chunk cache to stay within its budget.
+    public long sizeInBytes() {
+        return 64L + walls.length;
+    }
+
+    //Packs chunk coordinates into a single key.
+    public static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.Arrays;
+import java.util.Random;
+
+public class MazeGenerator {
+
+    public enum Algorithm {
+        DFS,   // randomized depth-first search (recursive backtracker), 1 bit + stack per cell
+        ELLER  // Eller's algorithm, row by row with memory proportional to the width only
+    }
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    //Hears about a maze while generateMaze() carves it. Walls only ever open while a maze is carved,
+    //braided and opened, so whatever was seen of the grid so far stays true.
+    public interface Progress {
+
+        //The cells the entrance and exit will open, before any carving.
+        void started(Point entrance, Point exit);
+
+        //Cell (index y * width + x) is carved: its walls to carved cells will not change any more,
+        //apart from the few that braiding opens at the end.
+        void carved(long cell);
+    }
+
+    private final Random random;
+
+    public MazeGenerator(Random random) {
+        this.random = random;
+    }
+
+    //Resets the grid and carves a perfect maze into it.
+    public void generate(MazeGrid grid, Algorithm algorithm) {
+        grid.reset();
+        switch (algorithm) {
+            case DFS -> generateDfs(grid, 0, null);
+            case ELLER -> generateEller(grid, null);
+        }
+    }
+
+    //Generates a complete game maze into the grid: chooses the entrance and exit first, carves a
+    //perfect maze (DFS starts at the entrance, so the cells around it are carved first), braids it
+    //and opens the entrance and exit. 'progress' may be null. Returns {entrance, exit}.
+    public Point[] generateMaze(MazeGrid grid, Algorithm algorithm, double braidFraction, Progress progress) {
+        int[] sides = chooseSides();
+        Point entrance = chooseCellOnSide(grid, sides[0]);
+        Point exit = chooseCellOnSide(grid, sides[1]);
+        if (progress != null) progress.started(entrance, exit);
+
+        grid.reset();
+        switch (algorithm) {
+            case DFS -> generateDfs(grid, entrance.y * grid.getWidth() + entrance.x, progress);
+            case ELLER -> generateEller(grid, progress);
+        }
+        braid(grid, braidFraction);
+        grid.removeWall(entrance.x, entrance.y, sides[0]);
+        grid.removeWall(exit.x, exit.y, sides[1]);
+        return new Point[]{entrance, exit};
+    }
+
+    //Removes a fraction (0..1) of the dead ends by opening one more wall in each, which adds loops
+    //(a "braided" maze). A wall to a neighbouring dead end is preferred, so one opening can remove
+    //two dead ends. Returns the number of walls removed.
+    public int braid(MazeGrid grid, double fraction) {
+        if (fraction <= 0) return 0;
+        int width = grid.getWidth();
+        int cells = (int) grid.getCellCount();
+        int[] deadEnds = new int[cells];
+        int count = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (Integer.bitCount(grid.getOpenings(cell % width, cell / width)) == 1) {
+                deadEnds[count++] = cell;
+            }
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = deadEnds[i];
+            deadEnds[i] = deadEnds[j];
+            deadEnds[j] = swap;
+        }
+
+        int target = (int) Math.round(Math.min(1, fraction) * count);
+        int[] walls = new int[4];
+        int[] deadEndWalls = new int[4];
+        int removed = 0;
+        for (int i = 0; i < target; i++) {
+            int x = deadEnds[i] % width;
+            int y = deadEnds[i] / width;
+            if (Integer.bitCount(grid.getOpenings(x, y)) != 1) continue; // a neighbour already opened it
+
+            int wallCount = 0, deadEndCount = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                int nx = x + DX[dir], ny = y + DY[dir];
+                if (!grid.isValidCell(nx, ny) || !grid.hasWall(x, y, dir)) continue;
+                walls[wallCount++] = dir;
+                if (Integer.bitCount(grid.getOpenings(nx, ny)) == 1) deadEndWalls[deadEndCount++] = dir;
+            }
+            if (wallCount == 0) continue;
+            int dir = deadEndCount > 0 ? deadEndWalls[random.nextInt(deadEndCount)] : walls[random.nextInt(wallCount)];
+            grid.removeWall(x, y, dir);
+            removed++;
+        }
+        return removed;
+    }
+
+    //Opens an entrance and an exit on two different random sides. Returns {entrance, exit}.
+    public Point[] createEntranceAndExit(MazeGrid grid) {
+        int[] sides = chooseSides();
+        Point entrance = chooseCellOnSide(grid, sides[0]);
+        grid.removeWall(entrance.x, entrance.y, sides[0]);
+        Point exit = chooseCellOnSide(grid, sides[1]);
+        grid.removeWall(exit.x, exit.y, sides[1]);
+        return new Point[]{entrance, exit};
+    }
+
+    //Two different random sides, {entrance, exit}.
+    private int[] chooseSides() {
+        int entranceSide = random.nextInt(4);
+        int exitSide;
+        do {
+            exitSide = random.nextInt(4);
+        } while (exitSide == entranceSide);
+        return new int[]{entranceSide, exitSide};
+    }
+
+    //Chooses a random cell on one of the four outer edges of the maze.
+    private Point chooseCellOnSide(MazeGrid grid, int side) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        return switch (side) {
+            case 0 -> new Point(random.nextInt(width), 0);           // Top
+            case 1 -> new Point(width - 1, random.nextInt(height));  // Right
+            case 2 -> new Point(random.nextInt(width), height - 1);  // Bottom
+            case 3 -> new Point(0, random.nextInt(height));          // Left
+            default -> throw new IllegalArgumentException("Invalid side");
+        };
+    }
+
+    //Randomized DFS from cell 'start', same neighbour order as the original generator.
+    private void generateDfs(MazeGrid grid, int start, Progress progress) {
+        int width = grid.getWidth();
+        long cells = grid.getCellCount();
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze too large for DFS generation, use ELLER");
+        }
+
+        long[] visited = new long[(int) ((cells + 63) >>> 6)];
+        int[] stack = new int[Math.min((int) cells, 1024)];
+        int[] candidates = new int[4];
+        int top = 0;
+        stack[top++] = start;
+        visited[start >>> 6] |= 1L << start;
+        if (progress != null) progress.carved(start);
+
+        while (top > 0) {
+            int current = stack[top - 1];
+            int cx = current % width;
+            int cy = current / width;
+
+            int count = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                int nx = cx + DX[dir];
+                int ny = cy + DY[dir];
+                if (grid.isValidCell(nx, ny)) {
+                    int next = ny * width + nx;
+                    if ((visited[next >>> 6] & (1L << next)) == 0) {
+                        candidates[count++] = dir;
+                    }
+                }
+            }
+
+            if (count > 0) {
+                int dir = candidates[random.nextInt(count)];
+                int next = (cy + DY[dir]) * width + cx + DX[dir];
+                grid.removeWall(cx, cy, dir);
+                visited[next >>> 6] |= 1L << next;
+                if (progress != null) progress.carved(next);
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, (int) Math.min(cells, stack.length * 2L));
+                }
+                stack[top++] = next;
+            } else {
+                top--;
+            }
+        }
+    }
+
+    //Eller's algorithm: each row keeps a set label per cell, tracked with a small union-find.
+    //A row is carved once its passages down are: the next row only opens walls below itself.
+    private void generateEller(MazeGrid grid, Progress progress) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        int[] row = new int[width];         // set label of each cell in the current row
+        int[] parent = new int[width];      // union-find over labels (labels are always < width)
+        int[] candidate = new int[width];   // chosen downward passage per set
+        int[] seen = new int[width];        // cells of the set seen so far (for reservoir sampling)
+        boolean[] carveDown = new boolean[width];
+        boolean[] used = new boolean[width];
+        for (int x = 0; x < width; x++) {
+            row[x] = x;
+        }
+
+        for (int y = 0; y < height; y++) {
+            boolean lastRow = y == height - 1;
+            for (int l = 0; l < width; l++) {
+                parent[l] = l;
+            }
+
+            // Join horizontally adjacent cells of different sets
+            for (int x = 0; x < width - 1; x++) {
+                int a = find(parent, row[x]);
+                int b = find(parent, row[x + 1]);
+                if (a != b && (lastRow || random.nextBoolean())) {
+                    grid.removeWall(x, y, MazeGrid.RIGHT);
+                    parent[b] = a;
+                }
+            }
+            if (lastRow) {
+                reportRow(y, width, progress);
+                break;
+            }
+
+            // Every set needs at least one passage down
+            Arrays.fill(seen, 0);
+            Arrays.fill(candidate, -1);
+            for (int x = 0; x < width; x++) {
+                row[x] = find(parent, row[x]);
+                carveDown[x] = random.nextBoolean();
+                int set = row[x];
+                if (carveDown[x]) {
+                    candidate[set] = Integer.MAX_VALUE;
+                } else if (candidate[set] != Integer.MAX_VALUE && random.nextInt(++seen[set]) == 0) {
+                    candidate[set] = x;
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                int set = row[x];
+                if (candidate[set] == x) {
+                    carveDown[x] = true;
+                }
+            }
+
+            // Carve and build the labels of the next row
+            Arrays.fill(used, false);
+            for (int x = 0; x < width; x++) {
+                if (carveDown[x]) {
+                    grid.removeWall(x, y, MazeGrid.BOTTOM);
+                    used[row[x]] = true;
+                }
+            }
+            reportRow(y, width, progress);
+            int fresh = 0;
+            for (int x = 0; x < width; x++) {
+                if (!carveDown[x]) {
+                    while (used[fresh]) fresh++;
+                    row[x] = fresh;
+                    used[fresh] = true;
+                }
+            }
+        }
+    }
+
+    private static void reportRow(int y, int width, Progress progress) {
+        if (progress == null) return;
+        for (long cell = (long) y * width, end = cell + width; cell < end; cell++) {
+            progress.carved(cell);
+        }
+    }
+
+    private static int find(int[] parent, int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+}
@@ -0,0 +1,49 @@
+public interface MazeGrid {
+
+    // Directions, same order as Cell.walls
+    int TOP = 0;
+    int RIGHT = 1;
+    int BOTTOM = 2;
+    int LEFT = 3;
+
+    int getWidth();
+
+    int getHeight();
+
+    //Checks if the cell (x, y) has a wall in the given direction.
+    //Walls on the outer border are present unless they were opened (entrance/exit).
+    boolean hasWall(int x, int y, int dir);
+
+    //Removes the wall of (x, y) in the given direction, and the matching wall of the neighbour.
+    void removeWall(int x, int y, int dir);
+
+    //Puts up every wall again and closes all openings.
+    void reset();
+
+    //Approximate memory used by the wall data, in bytes.
+    long getMemoryFootprint();
+
+    default long getCellCount() {
+        return (long) getWidth() * getHeight();
+    }
+
+    default boolean isValidCell(int x, int y) {
+        return x >= 0 && x < getWidth() && y >= 0 && y < getHeight();
+    }
+
+    //Bit mask of the directions a player can move from (x, y), bit d = direction d.
+    default int getOpenings(int x, int y) {
+        int mask = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            if (canMove(x, y, dir)) mask |= 1 << dir;
+        }
+        return mask;
+    }
+
+    //Checks if a move from (x, y) in the given direction stays inside the grid and crosses no wall.
+    default boolean canMove(int x, int y, int dir) {
+        int nx = x + (dir == RIGHT ? 1 : dir == LEFT ? -1 : 0);
+        int ny = y + (dir == BOTTOM ? 1 : dir == TOP ? -1 : 0);
+        return isValidCell(nx, ny) && !hasWall(x, y, dir);
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Mazes generated ahead of time on a background thread, per size.
+//take() never generates: it returns a ready maze or null (a miss), and the caller generates itself.
+public class MazePool {
+
+    //A generated maze waiting to be used.
+    public static class Entry {
+
+        public final MazeGrid grid;
+        public final Point entrance;
+        public final Point exit;
+        public final long seed; // of the generator that carved it
+
+        public Entry(MazeGrid grid, Point entrance, Point exit, long seed) {
+            this.grid = grid;
+            this.entrance = entrance;
+            this.exit = exit;
+            this.seed = seed;
+        }
+    }
+
+    private final MazeGenerator.Algorithm algorithm;
+    private final PackedGrid.Storage storage; // null = CellGrid
+    private final double braidFraction;
+    private final long memoryBudget;
+
+    private final Map<Long, Queue<Entry>> ready = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> scheduled = new ConcurrentHashMap<>();
+    private final AtomicLong bytesUsed = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong(); // generated mazes that failed validation
+    private final Random random = new Random();
+    private volatile boolean closed;
+
+    private final ExecutorService filler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "maze-pool-filler");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public MazePool(MazeGenerator.Algorithm algorithm, PackedGrid.Storage storage, double braidFraction,
+                    long memoryBudget) {
+        this.algorithm = algorithm;
+        this.storage = storage;
+        this.braidFraction = braidFraction;
+        this.memoryBudget = memoryBudget;
+    }
+
+    //Makes sure up to 'count' mazes of this size are ready or being generated.
+    public void fill(int width, int height, int count) {
+        long key = key(width, height);
+        Queue<Entry> queue = ready.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+        AtomicInteger pending = scheduled.computeIfAbsent(key, k -> new AtomicInteger());
+
+        while (queue.size() + pending.get() < count) {
+            pending.incrementAndGet();
+            filler.execute(() -> {
+                try {
+                    if (closed) return;
+                    Entry entry = generate(width, height);
+                    MazeValidator.Result result = MazeValidator.validateBraided(entry.grid, entry.entrance, entry.exit,
+                            braidFraction);
+                    if (!result.isValid()) {
+                        rejected.incrementAndGet(); // the caller generates on the miss instead
+                        release(entry.grid);
+                        return;
+                    }
+                    long bytes = entry.grid.getMemoryFootprint();
+                    if (bytesUsed.addAndGet(bytes) > memoryBudget) {
+                        bytesUsed.addAndGet(-bytes); // over budget, drop it
+                        release(entry.grid);
+                    } else {
+                        queue.add(entry);
+                        if (closed) drain(); // closed while generating
+                    }
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    //Returns a ready maze of this size, or null if none is ready.
+    public Entry take(int width, int height) {
+        Queue<Entry> queue = ready.get(key(width, height));
+        Entry entry = queue == null ? null : queue.poll();
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        bytesUsed.addAndGet(-entry.grid.getMemoryFootprint());
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    //Stops the filler thread and frees the mazes nobody took (packed grids release their buffers and
+    //mapped files). Call before replacing the pool; take() returns null afterwards.
+    public void close() {
+        closed = true;
+        filler.shutdownNow();
+        drain();
+    }
+
+    public String getStatistics() {
+        long h = hits.get(), m = misses.get();
+        double rate = h + m == 0 ? 0 : 100.0 * h / (h + m);
+        return String.format("maze pool: %d hits, %d misses (%.1f%% hit rate), %d rejected, %d KB of %d KB used",
+                h, m, rate, rejected.get(), bytesUsed.get() / 1024, memoryBudget / 1024);
+    }
+
+    private Entry generate(int width, int height) {
+        MazeGrid grid = storage == null ? new CellGrid(width, height) : new PackedGrid(width, height, storage);
+        long seed = random.nextLong();
+        Point[] openings = new MazeGenerator(new Random(seed)).generateMaze(grid, algorithm, braidFraction, null);
+        return new Entry(grid, openings[0], openings[1], seed);
+    }
+
+    private void drain() {
+        for (Queue<Entry> queue : ready.values()) {
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                bytesUsed.addAndGet(-entry.grid.getMemoryFootprint());
+                release(entry.grid);
+            }
+        }
+    }
+
+    private static void release(MazeGrid grid) {
+        if (grid instanceof PackedGrid packed) packed.close();
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
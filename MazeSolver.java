@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+public class MazeSolver {
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    // Right-hand rule: try right, straight, left, then back (relative to the heading)
+    private static final int[] TURNS = {1, 0, 3, 2};
+
+    private MazeSolver() {
+    }
+
+    //Finds a shortest path from (startX, startY) to (exitX, exitY) with a breadth-first search.
+    //Every cell is queued at most once, so this stays linear on braided mazes with loops too.
+    //The search keeps 3 bits per cell (a visited bit and the direction it came from) and a queue
+    //as long as the widest frontier. If even that would take more than a quarter of the heap, as on
+    //mapped grids larger than memory, it follows the right-hand wall instead, which keeps only the
+    //path: the path of a perfect maze, and on a braided one a path that may not be the shortest,
+    //or none if the start is on an island. Returns an empty path if the exit cannot be reached.
+    public static MovePath solve(MazeGrid grid, int startX, int startY, int exitX, int exitY) {
+        long searchBytes = grid.getCellCount() * 3 / 8;
+        if (searchBytes > Runtime.getRuntime().maxMemory() / 4) {
+            return followWall(grid, startX, startY, exitX, exitY);
+        }
+        return breadthFirst(grid, startX, startY, exitX, exitY);
+    }
+
+    private static MovePath breadthFirst(MazeGrid grid, int startX, int startY, int exitX, int exitY) {
+        int width = grid.getWidth();
+        long cells = grid.getCellCount();
+        long[] visited = new long[(int) ((cells + 63) >>> 6)];
+        long[] cameFrom = new long[(int) ((cells + 31) >>> 5)]; // direction taken into the cell, 2 bits each
+        long[] queue = new long[1024];                           // ring buffer, grows with the frontier
+        long start = (long) startY * width + startX;
+        long exit = (long) exitY * width + exitX;
+        int head = 0, size = 1;
+        queue[0] = start;
+        visited[(int) (start >>> 6)] |= 1L << start;
+
+        while (size > 0 && (visited[(int) (exit >>> 6)] & (1L << exit)) == 0) {
+            long current = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            size--;
+            int cx = (int) (current % width);
+            int cy = (int) (current / width);
+            int openings = grid.getOpenings(cx, cy);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings & (1 << dir)) == 0) continue;
+                long next = current + (long) DY[dir] * width + DX[dir];
+                int word = (int) (next >>> 6);
+                if ((visited[word] & (1L << next)) != 0) continue;
+                visited[word] |= 1L << next;
+                cameFrom[(int) (next >>> 5)] |= (long) dir << ((next & 31) << 1);
+                if (size == queue.length) {
+                    queue = grow(queue, head);
+                    head = 0;
+                }
+                queue[(head + size) & (queue.length - 1)] = next;
+                size++;
+            }
+        }
+        if ((visited[(int) (exit >>> 6)] & (1L << exit)) == 0) return new MovePath();
+
+        // Walk back from the exit, then reverse
+        MovePath moves = new MovePath(64);
+        for (long cell = exit; cell != start; ) {
+            int dir = (int) (cameFrom[(int) (cell >>> 5)] >>> ((cell & 31) << 1)) & 3;
+            moves.add(dir);
+            cell -= (long) DY[dir] * width + DX[dir];
+        }
+        moves.reverse();
+        return moves;
+    }
+
+    //The queue ring buffer twice as long, its entries moved to the front in order.
+    private static long[] grow(long[] queue, int head) {
+        long[] grown = new long[queue.length * 2];
+        System.arraycopy(queue, head, grown, 0, queue.length - head);
+        System.arraycopy(queue, 0, grown, queue.length - head, head);
+        return grown;
+    }
+
+    //Follows the right-hand wall and cancels every step that is immediately walked back, so only
+    //the path itself is kept in memory. Gives up after walking every wall of every cell.
+    private static MovePath followWall(MazeGrid grid, int startX, int startY, int exitX, int exitY) {
+        byte[] path = new byte[64];
+        int length = 0;
+        int x = startX, y = startY;
+        int heading = 0;
+        long maxSteps = 4 * grid.getCellCount() + 4;
+
+        for (long step = 0; step < maxSteps && (x != exitX || y != exitY); step++) {
+            int dir = -1;
+            for (int turn : TURNS) {
+                int candidate = (heading + turn) % 4;
+                if (grid.canMove(x, y, candidate)) {
+                    dir = candidate;
+                    break;
+                }
+            }
+            if (dir < 0) break; // closed cell
+
+            if (length > 0 && path[length - 1] == (dir + 2) % 4) {
+                length--;
+            } else {
+                if (length == path.length) path = Arrays.copyOf(path, length * 2);
+                path[length++] = (byte) dir;
+            }
+            x += DX[dir];
+            y += DY[dir];
+            heading = dir;
+        }
+
+        MovePath moves = new MovePath(length);
+        if (x == exitX && y == exitY) {
+            for (int i = 0; i < length; i++) {
+                moves.add(path[i]);
+            }
+        }
+        return moves;
+    }
+
+    //Checks if (exitX, exitY) can be reached from (startX, startY), iterative DFS over a visited bitset.
+    public static boolean isReachable(MazeGrid grid, int startX, int startY, int exitX, int exitY) {
+        int width = grid.getWidth();
+        long[] visited = new long[(int) ((grid.getCellCount() + 63) >>> 6)];
+        int[] stack = new int[64];
+        int top = 0;
+        int start = startY * width + startX;
+        stack[top++] = start;
+        visited[start >>> 6] |= 1L << start;
+
+        while (top > 0) {
+            int current = stack[--top];
+            int cx = current % width;
+            int cy = current / width;
+            if (cx == exitX && cy == exitY) return true;
+
+            for (int dir = 0; dir < 4; dir++) {
+                if (grid.canMove(cx, cy, dir)) {
+                    int next = (cy + DY[dir]) * width + cx + DX[dir];
+                    if ((visited[next >>> 6] & (1L << next)) == 0) {
+                        visited[next >>> 6] |= 1L << next;
+                        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                        stack[top++] = next;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+//Metrics of a single maze, computed by MazeAnalytics.
+public class MazeStats {
+
+    // Corridor lengths 1..MAX_CORRIDOR_BUCKET-1 are counted exactly, longer ones in the last bucket
+    public static final int MAX_CORRIDOR_BUCKET = 32;
+
+    public final int solutionLength;   // moves from entrance to exit, -1 if unreachable
+    public final int diameter;         // longest shortest path (exact for perfect mazes)
+    public final int deadEnds;         // cells with one opening
+    public final int junctions;        // cells with three or four openings
+    public final int corridors;        // maximal runs of cells with exactly two openings
+    public final long corridorCells;
+    public final double branchingFactor; // average onward choices when entering a non-dead-end cell
+    public final int[] corridorLengths;  // histogram, index = length
+
+    public MazeStats(int solutionLength, int diameter, int deadEnds, int junctions, int corridors,
+                     long corridorCells, double branchingFactor, int[] corridorLengths) {
+        this.solutionLength = solutionLength;
+        this.diameter = diameter;
+        this.deadEnds = deadEnds;
+        this.junctions = junctions;
+        this.corridors = corridors;
+        this.corridorCells = corridorCells;
+        this.branchingFactor = branchingFactor;
+        this.corridorLengths = corridorLengths;
+    }
+
+    public double getAverageCorridorLength() {
+        return corridors == 0 ? 0 : (double) corridorCells / corridors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("solution %d, diameter %d, dead ends %d, junctions %d, corridors %d (avg %.2f), branching %.3f",
+                solutionLength, diameter, deadEnds, junctions, corridors, getAverageCorridorLength(), branchingFactor);
+    }
+
+    //Aggregates the metrics of many mazes (not thread-safe, merge per-thread summaries instead).
+    public static class Summary {
+
+        private long mazes;
+        private long solutionSum, diameterSum, deadEndSum, junctionSum, corridorSum, corridorCellSum;
+        private double branchingSum;
+        private int minSolution = Integer.MAX_VALUE, maxSolution = Integer.MIN_VALUE;
+        private int minDiameter = Integer.MAX_VALUE, maxDiameter = Integer.MIN_VALUE;
+        private final long[] corridorLengths = new long[MAX_CORRIDOR_BUCKET];
+
+        public void add(MazeStats stats) {
+            mazes++;
+            solutionSum += stats.solutionLength;
+            diameterSum += stats.diameter;
+            deadEndSum += stats.deadEnds;
+            junctionSum += stats.junctions;
+            corridorSum += stats.corridors;
+            corridorCellSum += stats.corridorCells;
+            branchingSum += stats.branchingFactor;
+            minSolution = Math.min(minSolution, stats.solutionLength);
+            maxSolution = Math.max(maxSolution, stats.solutionLength);
+            minDiameter = Math.min(minDiameter, stats.diameter);
+            maxDiameter = Math.max(maxDiameter, stats.diameter);
+            for (int i = 0; i < MAX_CORRIDOR_BUCKET; i++) {
+                corridorLengths[i] += stats.corridorLengths[i];
+            }
+        }
+
+        public void merge(Summary other) {
+            mazes += other.mazes;
+            solutionSum += other.solutionSum;
+            diameterSum += other.diameterSum;
+            deadEndSum += other.deadEndSum;
+            junctionSum += other.junctionSum;
+            corridorSum += other.corridorSum;
+            corridorCellSum += other.corridorCellSum;
+            branchingSum += other.branchingSum;
+            minSolution = Math.min(minSolution, other.minSolution);
+            maxSolution = Math.max(maxSolution, other.maxSolution);
+            minDiameter = Math.min(minDiameter, other.minDiameter);
+            maxDiameter = Math.max(maxDiameter, other.maxDiameter);
+            for (int i = 0; i < MAX_CORRIDOR_BUCKET; i++) {
+                corridorLengths[i] += other.corridorLengths[i];
+            }
+        }
+
+        public long getMazeCount() {
+            return mazes;
+        }
+
+        public void print() {
+            if (mazes == 0) {
+                System.out.println("No mazes analyzed.");
+                return;
+            }
+            System.out.printf("Mazes: %d%n", mazes);
+            System.out.printf("Solution length: avg %.1f, min %d, max %d%n", (double) solutionSum / mazes, minSolution, maxSolution);
+            System.out.printf("Diameter:        avg %.1f, min %d, max %d%n", (double) diameterSum / mazes, minDiameter, maxDiameter);
+            System.out.printf("Dead ends:       avg %.1f%n", (double) deadEndSum / mazes);
+            System.out.printf("Junctions:       avg %.1f%n", (double) junctionSum / mazes);
+            System.out.printf("Corridors:       avg %.1f, avg length %.2f%n", (double) corridorSum / mazes,
+                    corridorSum == 0 ? 0 : (double) corridorCellSum / corridorSum);
+            System.out.printf("Branching:       avg %.3f%n", branchingSum / mazes);
+            System.out.println("Corridor length distribution:");
+            for (int i = 1; i < MAX_CORRIDOR_BUCKET; i++) {
+                if (corridorLengths[i] == 0) continue;
+                String label = i == MAX_CORRIDOR_BUCKET - 1 ? ">=" + i : String.valueOf(i);
+                System.out.printf("  %4s: %.2f%%%n", label, 100.0 * corridorLengths[i] / corridorSum);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+//Checks that a grid is a proper maze, in one pass over the rows with memory proportional to the width:
+//  - every wall is seen the same from both sides,
+//  - all cells are connected,
+//  - there are no loops, or at most 'maxLoops' or as many as braiding can have made (braided mazes),
+//  - the border is closed except for the entrance and the exit, which sit on the border.
+//Loops come from a union-find over two rows at a time, the way Eller's algorithm builds a maze:
+//a passage that joins two cells already in the same set closes a loop. The number of unconnected
+//parts then follows from cells - passages + loops.
+public class MazeValidator {
+
+    private static final byte RIGHT_WALL = 1;
+    private static final byte BOTTOM_WALL = 2;
+
+    private MazeValidator() {
+    }
+
+    //Outcome of a validation. 'problem' describes the first thing that was wrong, null if valid.
+    public static class Result {
+
+        public final String problem;
+        public final long asymmetricWalls;
+        public final long components;
+        public final long loops;
+        public final long deadEnds; // cells with one passage, not counting the border
+        public final int borderOpenings;
+
+        Result(String problem, long asymmetricWalls, long components, long loops, long deadEnds,
+               int borderOpenings) {
+            this.problem = problem;
+            this.asymmetricWalls = asymmetricWalls;
+            this.components = components;
+            this.loops = loops;
+            this.deadEnds = deadEnds;
+            this.borderOpenings = borderOpenings;
+        }
+
+        public boolean isValid() {
+            return problem == null;
+        }
+
+        @Override
+        public String toString() {
+            return (problem == null ? "valid" : "invalid: " + problem) + String.format(
+                    " (%d asymmetric walls, %d components, %d loops, %d dead ends, %d border openings)",
+                    asymmetricWalls, components, loops, deadEnds, borderOpenings);
+        }
+    }
+
+    //Validates 'grid' with the given entrance and exit. A perfect maze has maxLoops = 0.
+    public static Result validate(MazeGrid grid, Point entrance, Point exit, long maxLoops) {
+        return validate(grid, entrance, exit, maxLoops, -1);
+    }
+
+    //Validates a maze braided with MazeGenerator.braid(braidFraction): it may have the loops
+    //allowedLoops() gives for the dead ends left in it.
+    public static Result validateBraided(MazeGrid grid, Point entrance, Point exit, double braidFraction) {
+        return validate(grid, entrance, exit, Long.MAX_VALUE, Math.max(0, braidFraction));
+    }
+
+    //Loops a maze of 'cells' cells, braided with 'braidFraction' and left with 'deadEnds' dead ends,
+    //can have. Braiding opens one wall, which makes one loop, in at most a braidFraction share
+    //(rounded) of the D dead ends of the perfect maze, and every opening removes one or two dead ends,
+    //so D <= deadEnds + 2 * loops. Below a fraction of 1/2 that bounds the loops by the dead ends
+    //left. At any fraction, a spanning tree of the grid has at most (2 * cells + 2) / 3 leaves.
+    public static long allowedLoops(long cells, long deadEnds, double braidFraction) {
+        double fraction = Math.min(1, braidFraction);
+        if (fraction <= 0) return 0;
+        long limit = Math.round(fraction * ((2 * cells + 2) / 3));
+        if (fraction < 0.5) {
+            limit = Math.min(limit, (long) Math.floor((fraction * deadEnds + 0.5) / (1 - 2 * fraction)));
+        }
+        return limit;
+    }
+
+    //Validates with 'maxLoops', or with the loops allowed at 'braidFraction' if that is not negative.
+    private static Result validate(MazeGrid grid, Point entrance, Point exit, long maxLoops, double braidFraction) {
+        try {
+            return check(grid, entrance, exit, maxLoops, braidFraction);
+        } catch (RuntimeException e) {
+            // A corrupt deserialized grid can fail on any access (missing cells, short wall arrays)
+            return new Result("unreadable grid: " + e, 0, 0, 0, 0, 0);
+        }
+    }
+
+    private static Result check(MazeGrid grid, Point entrance, Point exit, long maxLoops, double braidFraction) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        if (width <= 0 || height <= 0) {
+            return new Result("empty grid " + width + "x" + height, 0, 0, 0, 0, 0);
+        }
+
+        // Rows alternate between the two halves of 'parent'. A set that reaches the current row always
+        // has its root there, so the half of the row before the previous one can simply be overwritten.
+        int[] parent = new int[2 * width];
+        long asymmetric = 0, loops = 0, passages = 0, deadEnds = 0;
+
+        byte[] above = new byte[width];
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            asymmetric += readRow(grid, y, row);
+            int base = (y & 1) * width;
+            int aboveBase = width - base;
+            int current = 0; // root of the set of cell x
+            for (int x = 0; x < width; x++) {
+                // A passage from the left joins the set of the previous cell, which has no other way into
+                // this cell yet, so it cannot close a loop
+                if (x > 0 && (row[x - 1] & RIGHT_WALL) == 0) {
+                    parent[base + x] = current;
+                    passages++;
+                } else {
+                    parent[base + x] = current = base + x;
+                }
+                // A passage up joins a set of the previous row, unless it is already the same set
+                if (y > 0 && (above[x] & BOTTOM_WALL) == 0) {
+                    passages++;
+                    int up = find(parent, aboveBase + x);
+                    if (up == current) {
+                        loops++;
+                    } else {
+                        parent[up] = current;
+                    }
+                }
+                if (isDeadEnd(row, above, x, y, width, height)) deadEnds++;
+            }
+            byte[] swap = above;
+            above = row;
+            row = swap;
+        }
+        // Every passage that does not close a loop joins two parts
+        long components = grid.getCellCount() - (passages - loops);
+        if (braidFraction >= 0) maxLoops = allowedLoops(grid.getCellCount(), deadEnds, braidFraction);
+
+        int borderOpenings = countBorderOpenings(grid);
+        String problem = null;
+        if (asymmetric > 0) {
+            problem = asymmetric + " walls differ between neighbouring cells";
+        } else if (components != 1) {
+            problem = "maze falls apart into " + components + " unconnected parts";
+        } else if (loops > maxLoops) {
+            problem = loops + " loops, at most " + maxLoops + " allowed";
+        } else if (!isOpenBorderCell(grid, entrance)) {
+            problem = "entrance is not an opening in the border";
+        } else if (!isOpenBorderCell(grid, exit)) {
+            problem = "exit is not an opening in the border";
+        } else if (borderOpenings > (entrance.x == exit.x && entrance.y == exit.y ? 1 : 2)) {
+            problem = borderOpenings + " openings in the border";
+        }
+        return new Result(problem, asymmetric, components, loops, deadEnds, borderOpenings);
+    }
+
+    //Checks if cell x of 'row' has exactly one passage to another cell.
+    private static boolean isDeadEnd(byte[] row, byte[] above, int x, int y, int width, int height) {
+        int passages = 0;
+        if (x > 0 && (row[x - 1] & RIGHT_WALL) == 0) passages++;
+        if (x < width - 1 && (row[x] & RIGHT_WALL) == 0) passages++;
+        if (y > 0 && (above[x] & BOTTOM_WALL) == 0) passages++;
+        if (y < height - 1 && (row[x] & BOTTOM_WALL) == 0) passages++;
+        return passages == 1;
+    }
+
+    //Reads the right and bottom walls of row y into 'row' and returns the number of walls in it
+    //that the neighbour to the right or below sees differently.
+    private static int readRow(MazeGrid grid, int y, byte[] row) {
+        int width = grid.getWidth();
+        if (grid instanceof PackedGrid packed) {
+            // Each wall is stored once, so walls are always symmetric: read 32 cells per word
+            long cell = (long) y * width;
+            long word = packed.getWord(cell >>> 5) >>> ((cell & 31) << 1);
+            for (int x = 0; x < width; x++, cell++) {
+                if ((cell & 31) == 0) word = packed.getWord(cell >>> 5);
+                row[x] = (byte) (word & 3);
+                word >>>= 2;
+            }
+            return 0;
+        }
+
+        int asymmetric = 0;
+        boolean lastRow = y == grid.getHeight() - 1;
+        for (int x = 0; x < width; x++) {
+            boolean right = grid.hasWall(x, y, MazeGrid.RIGHT);
+            boolean bottom = grid.hasWall(x, y, MazeGrid.BOTTOM);
+            if (x < width - 1 && right != grid.hasWall(x + 1, y, MazeGrid.LEFT)) asymmetric++;
+            if (!lastRow && bottom != grid.hasWall(x, y + 1, MazeGrid.TOP)) asymmetric++;
+            row[x] = (byte) ((right ? RIGHT_WALL : 0) | (bottom ? BOTTOM_WALL : 0));
+        }
+        return asymmetric;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static int countBorderOpenings(MazeGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int openings = 0;
+        for (int x = 0; x < width; x++) {
+            if (!grid.hasWall(x, 0, MazeGrid.TOP)) openings++;
+            if (!grid.hasWall(x, height - 1, MazeGrid.BOTTOM)) openings++;
+        }
+        for (int y = 0; y < height; y++) {
+            if (!grid.hasWall(0, y, MazeGrid.LEFT)) openings++;
+            if (!grid.hasWall(width - 1, y, MazeGrid.RIGHT)) openings++;
+        }
+        return openings;
+    }
+
+    private static boolean isOpenBorderCell(MazeGrid grid, Point cell) {
+        if (cell == null || !grid.isValidCell(cell.x, cell.y)) return false;
+        return (cell.y == 0 && !grid.hasWall(cell.x, cell.y, MazeGrid.TOP))
+                || (cell.x == grid.getWidth() - 1 && !grid.hasWall(cell.x, cell.y, MazeGrid.RIGHT))
+                || (cell.y == grid.getHeight() - 1 && !grid.hasWall(cell.x, cell.y, MazeGrid.BOTTOM))
+                || (cell.x == 0 && !grid.hasWall(cell.x, cell.y, MazeGrid.LEFT));
+    }
+}
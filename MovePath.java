@@ -0,0 +1,157 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+//A path of moves, 2 bits per move (the directions of MazeGrid: 0 = w, 1 = d, 2 = s, 3 = a), 32 moves per long.
+//poll() consumes moves from the front in O(1) by moving the start of the path, and slice() returns a
+//view on the same words instead of a copy. A path whose words are shared with a slice copies them
+//before it is changed again, so neither ever sees the other's changes.
+public class MovePath implements Serializable {
+
+    private static final char[] MOVES = {'w', 'd', 's', 'a'};
+
+    private long[] words;
+    private int start; // index of the first move in 'words'
+    private int end;   // index after the last move
+    private boolean shared;
+
+    public MovePath() {
+        this(32);
+    }
+
+    public MovePath(int capacity) {
+        this.words = new long[Math.max(1, (capacity + 31) >>> 5)];
+    }
+
+    private MovePath(long[] words, int start, int end) {
+        this.words = words;
+        this.start = start;
+        this.end = end;
+        this.shared = true;
+    }
+
+    //Move character of a direction.
+    public static char toMove(int dir) {
+        return MOVES[dir];
+    }
+
+    //Direction of a move character, -1 for anything but w, a, s and d.
+    public static int toDirection(char move) {
+        return switch (move) {
+            case 'w' -> MazeGrid.TOP;
+            case 'd' -> MazeGrid.RIGHT;
+            case 's' -> MazeGrid.BOTTOM;
+            case 'a' -> MazeGrid.LEFT;
+            default -> -1;
+        };
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return end == start;
+    }
+
+    //Direction of move i (0 = the next one).
+    public int get(int i) {
+        if (i < 0 || i >= end - start) {
+            throw new IndexOutOfBoundsException("move " + i + " of " + size());
+        }
+        return directionAt(start + i);
+    }
+
+    public char getMove(int i) {
+        return MOVES[get(i)];
+    }
+
+    public void add(int dir) {
+        if (shared || end == words.length << 5) {
+            words = copyWords(Math.max(2 * (end - start), 32));
+        }
+        words[end >>> 5] |= (long) dir << ((end & 31) << 1);
+        end++;
+    }
+
+    //Removes the next move and returns its direction, -1 if the path is empty.
+    public int poll() {
+        if (end == start) return -1;
+        return directionAt(start++);
+    }
+
+    //Moves from..to-1 as a path of their own, sharing the words of this one.
+    public MovePath slice(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("slice " + from + ".." + to + " of " + size());
+        }
+        shared = true;
+        return new MovePath(words, start + from, start + to);
+    }
+
+    public void clear() {
+        if (shared) {
+            words = new long[words.length];
+            shared = false;
+        } else {
+            Arrays.fill(words, 0);
+        }
+        start = 0;
+        end = 0;
+    }
+
+    //Reverses the order of the moves, for paths that were found from their end.
+    public void reverse() {
+        int size = size();
+        if (shared) {
+            words = copyWords(size);
+        }
+        for (int i = start, j = end - 1; i < j; i++, j--) {
+            int a = directionAt(i), b = directionAt(j);
+            setDirectionAt(i, b);
+            setDirectionAt(j, a);
+        }
+    }
+
+    //Bytes used by the moves of this path, not counting words shared with slices.
+    public long getMemoryFootprint() {
+        return 8L * words.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder moves = new StringBuilder(size());
+        for (int i = 0; i < size(); i++) {
+            moves.append(getMove(i));
+        }
+        return moves.toString();
+    }
+
+    //Copies the moves to new words with room for 'capacity' moves; they start at index 0.
+    private long[] copyWords(int capacity) {
+        int size = size();
+        long[] copy = new long[Math.max(1, (Math.max(capacity, size + 1) + 31) >>> 5)];
+        if ((start & 31) == 0) {
+            // Whole words; clear the moves after the end, which belong to the path this one was sliced from
+            int count = (size + 31) >>> 5;
+            System.arraycopy(words, start >>> 5, copy, 0, count);
+            if ((size & 31) != 0) copy[count - 1] &= (1L << ((size & 31) << 1)) - 1;
+        } else {
+            for (int i = 0; i < size; i++) {
+                copy[i >>> 5] |= (long) directionAt(start + i) << ((i & 31) << 1);
+            }
+        }
+        start = 0;
+        end = size;
+        shared = false;
+        return copy;
+    }
+
+    private int directionAt(int index) {
+        return (int) (words[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    private void setDirectionAt(int index, int dir) {
+        int shift = (index & 31) << 1;
+        words[index >>> 5] = (words[index >>> 5] & ~(3L << shift)) | ((long) dir << shift);
+    }
+}
@@ -0,0 +1,23 @@
+import java.util.Random;
+
+//Decides the moves of one player in a headless game (see TournamentSimulator).
+//Implementations keep per-game state, so every thread needs its own instances.
+public interface MovePolicy {
+
+    String getName();
+
+    //Called when a game starts and after every regeneration, with the player's position.
+    void reset(MazeGrid grid, int exitX, int exitY, int x, int y);
+
+    //Direction of the next move from (x, y), or -1 to pass. A move into a wall is lost, like in Maze.
+    int nextMove(MazeGrid grid, int x, int y);
+
+    //Creates a policy by name: "planner" or "random".
+    static MovePolicy create(String name, Random random) {
+        return switch (name.toLowerCase()) {
+            case "planner" -> new PlannerPolicy();
+            case "random" -> new RandomWalkPolicy(random);
+            default -> throw new IllegalArgumentException("Unknown policy " + name);
+        };
+    }
+}
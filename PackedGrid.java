@@ -0,0 +1,282 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+//Wall storage with 2 bits per cell (right and bottom wall only), packed 32 cells per long.
+//The top wall of a cell is the bottom wall of the cell above, the left wall the right wall of the cell to the left.
+//The words live outside the Java heap, either in direct buffers or in a memory-mapped file. The
+//file is deleted as soon as it is mapped where the platform allows it, so like direct memory its
+//space is returned when the GC frees the buffers: a grid that is no longer referenced needs no close().
+public class PackedGrid implements MazeGrid, Serializable {
+
+    //OFF_HEAP direct buffers count against -XX:MaxDirectMemorySize, which defaults to the maximum heap
+    //size (-Xmx); a grid that does not fit there falls back to MAPPED, which is limited only by disk.
+    public enum Storage { OFF_HEAP, MAPPED }
+
+    private static final long RIGHT_BIT = 1L;
+    private static final long BOTTOM_BIT = 2L;
+
+    // Each buffer segment holds 2^27 longs (1 GB), mapped/direct buffers are limited to 2 GB each
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private int width;
+    private int height;
+    private Storage storage;
+    private transient long wordCount;
+    private transient LongBuffer[] segments;
+    private transient File mappedFile;
+    private transient volatile boolean closed;
+
+    // Openings in the top row / left column, which have no bits of their own (entrance and exit)
+    private transient long[] openings;
+    private transient int openingCount;
+
+    public PackedGrid(int width, int height, Storage storage) {
+        this.width = width;
+        this.height = height;
+        this.storage = storage;
+        allocate();
+        reset();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public boolean hasWall(int x, int y, int dir) {
+        return switch (dir) {
+            case TOP -> y == 0 ? !isOpening(x, y, TOP) : getBit(x, y - 1, BOTTOM_BIT);
+            case RIGHT -> getBit(x, y, RIGHT_BIT);
+            case BOTTOM -> getBit(x, y, BOTTOM_BIT);
+            case LEFT -> x == 0 ? !isOpening(x, y, LEFT) : getBit(x - 1, y, RIGHT_BIT);
+            default -> true;
+        };
+    }
+
+    //Reads the own word once and the neighbours' bits for top and left, instead of four hasWall() calls.
+    @Override
+    public int getOpenings(int x, int y) {
+        long cell = (long) y * width + x;
+        long bits = getWord(cell >>> 5) >>> ((cell & 31) << 1);
+        int mask = 0;
+        if (y > 0 && !getBit(x, y - 1, BOTTOM_BIT)) mask |= 1 << TOP;
+        if (x < width - 1 && (bits & RIGHT_BIT) == 0) mask |= 1 << RIGHT;
+        if (y < height - 1 && (bits & BOTTOM_BIT) == 0) mask |= 1 << BOTTOM;
+        if (x > 0 && !getBit(x - 1, y, RIGHT_BIT)) mask |= 1 << LEFT;
+        return mask;
+    }
+
+    @Override
+    public void removeWall(int x, int y, int dir) {
+        switch (dir) {
+            case TOP -> {
+                if (y == 0) addOpening(x, y, TOP);
+                else clearBit(x, y - 1, BOTTOM_BIT);
+            }
+            case RIGHT -> clearBit(x, y, RIGHT_BIT);
+            case BOTTOM -> clearBit(x, y, BOTTOM_BIT);
+            case LEFT -> {
+                if (x == 0) addOpening(x, y, LEFT);
+                else clearBit(x - 1, y, RIGHT_BIT);
+            }
+            default -> throw new IllegalArgumentException("Invalid direction: " + dir);
+        }
+    }
+
+    @Override
+    public void reset() {
+        ensureOpen();
+        for (LongBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i++) {
+                segment.put(i, -1L);
+            }
+        }
+        openings = new long[4];
+        openingCount = 0;
+    }
+
+    @Override
+    public long getMemoryFootprint() {
+        return wordCount * Long.BYTES;
+    }
+
+    //Raw access to the packed words (bit 2*i = right wall, bit 2*i+1 = bottom wall of the i-th cell in the word).
+    public long getWord(long index) {
+        try {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+        } catch (IndexOutOfBoundsException e) {
+            throw accessFailed(e);
+        }
+    }
+
+    public void setWord(long index, long value) {
+        try {
+            segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+        } catch (IndexOutOfBoundsException e) {
+            throw accessFailed(e);
+        }
+    }
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    //Checks if close() was called; a closed grid cannot be read any more.
+    public boolean isClosed() {
+        return closed;
+    }
+
+    //Drops the buffers (and the backing file of a mapped grid, if it still exists) before the grid
+    //itself is unreachable. Only for an owner that no other thread reads the grid through, such as a
+    //pool or a benchmark; reads and writes afterwards throw IllegalStateException.
+    public void close() {
+        closed = true;
+        segments = new LongBuffer[0];
+        wordCount = 0;
+        if (mappedFile != null) {
+            mappedFile.delete();
+            mappedFile = null;
+        }
+    }
+
+    //Allocates the word segments in direct memory or in a temporary mapped file. Off-heap grids switch
+    //to a mapped file when the direct memory limit is reached.
+    private void allocate() {
+        long cells = (long) width * height;
+        wordCount = (cells + 31) >>> 5;
+        int segmentCount = (int) ((wordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new LongBuffer[segmentCount];
+        if (storage == Storage.OFF_HEAP) {
+            try {
+                for (int s = 0; s < segmentCount; s++) {
+                    long first = (long) s << SEGMENT_SHIFT;
+                    int longs = (int) Math.min(1L << SEGMENT_SHIFT, wordCount - first);
+                    segments[s] = ByteBuffer.allocateDirect(longs * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+                }
+                return;
+            } catch (OutOfMemoryError e) {
+                Arrays.fill(segments, null); // the GC frees the segments allocated so far
+                storage = Storage.MAPPED;
+            }
+        }
+
+        try (RandomAccessFile file = openMappedFile()) {
+            for (int s = 0; s < segmentCount; s++) {
+                long first = (long) s << SEGMENT_SHIFT;
+                int longs = (int) Math.min(1L << SEGMENT_SHIFT, wordCount - first);
+                ByteBuffer bytes = file.getChannel().map(FileChannel.MapMode.READ_WRITE, first * Long.BYTES, (long) longs * Long.BYTES);
+                segments[s] = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map maze grid: " + e.getMessage(), e);
+        }
+        if (mappedFile != null && mappedFile.delete()) {
+            mappedFile = null; // the mapping keeps the data until the buffers are freed
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Maze grid is closed");
+    }
+
+    //An access outside the buffers: a closed grid, or a cell outside the grid.
+    private RuntimeException accessFailed(IndexOutOfBoundsException e) {
+        return closed ? new IllegalStateException("Maze grid is closed", e) : e;
+    }
+
+    private RandomAccessFile openMappedFile() throws IOException {
+        mappedFile = File.createTempFile("maze-grid", ".bin");
+        mappedFile.deleteOnExit();
+        return new RandomAccessFile(mappedFile, "rw");
+    }
+
+    private boolean getBit(int x, int y, long bit) {
+        long cell = (long) y * width + x;
+        long word = getWord(cell >>> 5);
+        return (word & (bit << ((cell & 31) << 1))) != 0;
+    }
+
+    private void clearBit(int x, int y, long bit) {
+        long cell = (long) y * width + x;
+        long index = cell >>> 5;
+        try {
+            LongBuffer segment = segments[(int) (index >>> SEGMENT_SHIFT)];
+            int offset = (int) (index & SEGMENT_MASK);
+            segment.put(offset, segment.get(offset) & ~(bit << ((cell & 31) << 1)));
+        } catch (IndexOutOfBoundsException e) {
+            throw accessFailed(e);
+        }
+    }
+
+    private boolean isOpening(int x, int y, int dir) {
+        long key = (((long) y * width + x) << 2) | dir;
+        for (int i = 0; i < openingCount; i++) {
+            if (openings[i] == key) return true;
+        }
+        return false;
+    }
+
+    private void addOpening(int x, int y, int dir) {
+        if (isOpening(x, y, dir)) return;
+        if (openingCount == openings.length) {
+            openings = Arrays.copyOf(openings, openingCount * 2);
+        }
+        openings[openingCount++] = (((long) y * width + x) << 2) | dir;
+    }
+
+    //Streams the packed words instead of serializing buffers.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureOpen();
+        out.defaultWriteObject();
+        out.writeInt(openingCount);
+        for (int i = 0; i < openingCount; i++) {
+            out.writeLong(openings[i]);
+        }
+        for (long i = 0; i < wordCount; i++) {
+            out.writeLong(getWord(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (width <= 0 || height <= 0 || storage == null) {
+            throw new InvalidObjectException("Invalid maze grid " + width + "x" + height + " (" + storage + ")");
+        }
+        openingCount = in.readInt();
+        // Openings lie on the top row and the left column, so a count beyond the border is corrupt
+        if (openingCount < 0 || openingCount > 2L * (width + height)) {
+            throw new InvalidObjectException("Invalid opening count " + openingCount + " for a " + width + "x" + height + " maze");
+        }
+        allocate();
+        openings = new long[Math.max(4, openingCount)];
+        for (int i = 0; i < openingCount; i++) {
+            openings[i] = in.readLong();
+        }
+        for (LongBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i++) {
+                segment.put(i, in.readLong());
+            }
+        }
+    }
+}
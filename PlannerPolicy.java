@@ -0,0 +1,20 @@
+//The competitive-mode AI: plans the whole path with MazeSolver and replays it, replanning after a regeneration.
+public class PlannerPolicy implements MovePolicy {
+
+    private MovePath plan = new MovePath();
+
+    @Override
+    public String getName() {
+        return "planner";
+    }
+
+    @Override
+    public void reset(MazeGrid grid, int exitX, int exitY, int x, int y) {
+        plan = MazeSolver.solve(grid, x, y, exitX, exitY);
+    }
+
+    @Override
+    public int nextMove(MazeGrid grid, int x, int y) {
+        return plan.poll();
+    }
+}
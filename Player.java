@@ -5,7 +5,11 @@ public class Player implements Serializable {
     public int x, y;
 
     public Player(Cell entrance) {
-        this.x = entrance.x;
-        this.y = entrance.y;
+        this(entrance.x, entrance.y);
+    }
+
+    public Player(int x, int y) {
+        this.x = x;
+        this.y = y;
     }
 }
@@ -0,0 +1,118 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+//Generates a maze on a background thread while the game already shows it and the player walks it.
+//Carved cells are published in batches of 'batchCells': after each batch 'onBatch' runs on the
+//generator thread (Maze asks the event loop for a frame), and once the maze is complete 'onDone'
+//gets {entrance, exit}. Walls only ever open while a maze is generated, so what was drawn or walked
+//stays true. The grid has one writer, the generator thread, and no locks of its own: a reader sees the
+//cells of the published batches only after it has called sync(), and may also see some cells of
+//later batches. Until the generation is done, a reader that has not synced may see no batch at all.
+public class ProgressiveGeneration implements MazeGenerator.Progress {
+
+    private final MazeGrid grid;
+    private final long batchCells;
+    private final Runnable onBatch;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+
+    // Generator thread only
+    private long carved;
+    private long nextBatch;
+    private long entranceCell = -1;
+    private boolean entranceCarved;
+
+    private volatile Point entrance, exit;
+    private volatile long published;       // cells carved as of the last batch
+    private volatile boolean entranceReady; // the entrance was carved in a published batch
+    private volatile boolean done;
+    private volatile long firstBatchNanos, entranceNanos, doneNanos;
+
+    public ProgressiveGeneration(MazeGrid grid, long batchCells, Runnable onBatch) {
+        this.grid = grid;
+        this.batchCells = Math.max(1, batchCells);
+        this.onBatch = onBatch;
+        this.nextBatch = this.batchCells;
+    }
+
+    //Starts generating on a daemon thread and returns {entrance, exit} as soon as they are chosen.
+    public Point[] start(MazeGenerator generator, MazeGenerator.Algorithm algorithm, double braidFraction,
+                         Consumer<Point[]> onDone) {
+        Thread thread = new Thread(() -> {
+            Point[] openings = generator.generateMaze(grid, algorithm, braidFraction, this);
+            publish(grid.getCellCount());
+            doneNanos = System.nanoTime() - startNanos;
+            done = true;
+            onDone.accept(openings);
+        }, "maze-generator");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new Point[]{entrance, exit};
+    }
+
+    @Override
+    public void started(Point entrance, Point exit) {
+        this.entrance = entrance;
+        this.exit = exit;
+        this.entranceCell = (long) entrance.y * grid.getWidth() + entrance.x;
+        started.countDown();
+    }
+
+    @Override
+    public void carved(long cell) {
+        if (cell == entranceCell) entranceCarved = true;
+        if (++carved == nextBatch) {
+            nextBatch += batchCells;
+            publish(carved);
+        }
+    }
+
+    //Makes the cells of every batch published so far visible to the calling thread. Call it before
+    //reading the grid. Returns the number of cells they hold.
+    public long sync() {
+        return published; // pairs with the volatile write in publish()
+    }
+
+    //Checks if the player may move: the cells around the entrance are carved.
+    public boolean isEntranceReady() {
+        return entranceReady;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    //Share (0..1) of the cells carved as of the last batch.
+    public double getProgress() {
+        return (double) published / grid.getCellCount();
+    }
+
+    //Milliseconds from start() to the first batch, to the entrance being ready and to the complete maze.
+    public double getFirstBatchMillis() {
+        return firstBatchNanos / 1e6;
+    }
+
+    public double getEntranceReadyMillis() {
+        return entranceNanos / 1e6;
+    }
+
+    public double getDoneMillis() {
+        return doneNanos / 1e6;
+    }
+
+    private void publish(long cells) {
+        long now = System.nanoTime() - startNanos;
+        if (firstBatchNanos == 0) firstBatchNanos = now;
+        if (entranceCarved && !entranceReady) {
+            entranceNanos = now;
+            entranceReady = true;
+        }
+        published = cells; // the volatile write that makes the batch visible
+        onBatch.run();
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.Random;
+
+//Moves in a random open direction every turn.
+public class RandomWalkPolicy implements MovePolicy {
+
+    private final Random random;
+
+    public RandomWalkPolicy(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public void reset(MazeGrid grid, int exitX, int exitY, int x, int y) {
+    }
+
+    @Override
+    public int nextMove(MazeGrid grid, int x, int y) {
+        int openings = grid.getOpenings(x, y);
+        int count = Integer.bitCount(openings);
+        if (count == 0) return -1;
+        int pick = random.nextInt(count);
+        for (int dir = 0; dir < 4; dir++) {
+            if ((openings & (1 << dir)) != 0 && pick-- == 0) return dir;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.Arrays;
+
+//Which cells can be reached from a cell, 64 cells at a time. The walls are copied into two bit
+//planes with one row per (width + 63) / 64 longs: bit x of 'right' is set if (x, y) opens to the
+//right, bit x of 'down' if it opens to the cell below. The reached cells are a third plane. A flood
+//fill works on whole words: within a word, the reached bits spread along the horizontal passages in
+//six shift-and-mask steps (a Kogge-Stone scan in each direction); across words, bits spread to the
+//row above and below with one AND and to the neighbouring words of the row through the end bits.
+//A word is queued again only when it gains bits, so the fill ends at the fixpoint after at most
+//64 visits per word and usually a few. The arrays are kept for the next grid of the same size.
+public class Reachability {
+
+    private int width;
+    private int height;
+    private int rowWords; // longs per row
+    private long[] right = new long[0];
+    private long[] down = new long[0];
+    private long[] reached = new long[0];
+    private long[] queued = new long[0]; // one bit per word of 'reached'
+    private int[] stack = new int[0];
+    private long reachedCount;
+
+    //Copies the walls of 'grid'. Packed grids are read 32 cells per word.
+    public void load(MazeGrid grid) {
+        width = grid.getWidth();
+        height = grid.getHeight();
+        rowWords = (width + 63) >>> 6;
+        int words = Math.multiplyExact(rowWords, height);
+        if (right.length != words) {
+            right = new long[words];
+            down = new long[words];
+            reached = new long[words];
+            queued = new long[(words + 63) >>> 6];
+            stack = new int[words];
+        }
+        Arrays.fill(right, 0);
+        Arrays.fill(down, 0);
+        Arrays.fill(reached, 0);
+        reachedCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            if (grid instanceof PackedGrid packed) {
+                loadPackedRow(packed, y);
+            } else {
+                int row = y * rowWords;
+                for (int x = 0; x < width; x++) {
+                    int openings = grid.getOpenings(x, y);
+                    if ((openings & (1 << MazeGrid.RIGHT)) != 0) right[row + (x >>> 6)] |= 1L << x;
+                    if ((openings & (1 << MazeGrid.BOTTOM)) != 0) down[row + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+    }
+
+    //Checks if (targetX, targetY) can be reached from (startX, startY) in the loaded grid. Stops as
+    //soon as the target is reached, so afterwards isReached() only knows part of the cells.
+    public boolean isReachable(int startX, int startY, int targetX, int targetY) {
+        int target = targetY * rowWords + (targetX >>> 6);
+        long targetBit = 1L << targetX;
+        flood(startX, startY, target, targetBit);
+        reachedCount = count();
+        return (reached[target] & targetBit) != 0;
+    }
+
+    //Marks every cell that can be reached from (x, y) in the loaded grid. Returns their number.
+    public long fill(int x, int y) {
+        flood(x, y, -1, 0);
+        reachedCount = count();
+        return reachedCount;
+    }
+
+    //Checks if (x, y) was reached by the last fill().
+    public boolean isReached(int x, int y) {
+        return (reached[y * rowWords + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    //Cells reached by the last fill() or isReachable().
+    public long getReachedCount() {
+        return reachedCount;
+    }
+
+    //Bytes of the bit planes and the work stack.
+    public long getMemoryFootprint() {
+        return 8L * (right.length + down.length + reached.length + queued.length) + 4L * stack.length;
+    }
+
+    //Spreads the reached bits from the start word by word until nothing changes, or until the target
+    //bit is set if 'target' is a word index.
+    private void flood(int startX, int startY, int target, long targetBit) {
+        Arrays.fill(reached, 0);
+        Arrays.fill(queued, 0);
+        int start = startY * rowWords + (startX >>> 6);
+        reached[start] = 1L << startX;
+        stack[0] = start;
+        queued[start >>> 6] |= 1L << start;
+        int top = 1;
+
+        while (top > 0) {
+            int word = stack[--top];
+            queued[word >>> 6] &= ~(1L << word);
+            long bits = spread(reached[word], right[word]);
+            reached[word] = bits;
+
+            // Across the words of the row, then up and down. Bit 63 of the last word of a row never
+            // opens to the right, so a passage through bit 63 always stays in the row.
+            if ((bits & right[word] & Long.MIN_VALUE) != 0) {
+                top = offer(word + 1, 1L, top);
+            }
+            if ((bits & 1L) != 0 && word > 0 && (right[word - 1] & Long.MIN_VALUE) != 0) {
+                top = offer(word - 1, Long.MIN_VALUE, top);
+            }
+            if (word + rowWords < reached.length) top = offer(word + rowWords, bits & down[word], top);
+            if (word >= rowWords) top = offer(word - rowWords, bits & down[word - rowWords], top);
+            if (target >= 0 && (reached[target] & targetBit) != 0) return;
+        }
+    }
+
+    //Adds 'bits' to 'word' and queues the word if that reaches new cells. Returns the new stack top.
+    private int offer(int word, long bits, int top) {
+        long added = bits & ~reached[word];
+        if (added == 0) return top;
+        reached[word] |= added;
+        if ((queued[word >>> 6] & (1L << word)) == 0) {
+            queued[word >>> 6] |= 1L << word;
+            stack[top++] = word;
+        }
+        return top;
+    }
+
+    private long count() {
+        long count = 0;
+        for (long bits : reached) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    //Spreads 'bits' along the horizontal passages of one word: bit x of 'open' joins x and x + 1.
+    private static long spread(long bits, long open) {
+        // To the right: cell x + 1 takes the bit of x if x opens to the right
+        long joined = open << 1;
+        long result = bits;
+        result |= joined & (result << 1);
+        long span = joined & (joined << 1);
+        result |= span & (result << 2);
+        span &= span << 2;
+        result |= span & (result << 4);
+        span &= span << 4;
+        result |= span & (result << 8);
+        span &= span << 8;
+        result |= span & (result << 16);
+        span &= span << 16;
+        result |= span & (result << 32);
+
+        // To the left: cell x takes the bit of x + 1 if x opens to the right
+        result |= open & (result >>> 1);
+        span = open & (open >>> 1);
+        result |= span & (result >>> 2);
+        span &= span >>> 2;
+        result |= span & (result >>> 4);
+        span &= span >>> 4;
+        result |= span & (result >>> 8);
+        span &= span >>> 8;
+        result |= span & (result >>> 16);
+        span &= span >>> 16;
+        result |= span & (result >>> 32);
+        return result;
+    }
+
+    //Reads row y of a packed grid 32 cells at a time: the even bits of a window are right walls,
+    //the odd bits bottom walls. Border walls and cells past the row are masked off.
+    private void loadPackedRow(PackedGrid packed, int y) {
+        int row = y * rowWords;
+        long wordCount = packed.getWordCount();
+        for (int x = 0; x < width; x += 32) {
+            long cell = (long) y * width + x;
+            long index = cell >>> 5;
+            int shift = (int) (cell & 31) << 1;
+            long window = packed.getWord(index) >>> shift;
+            if (shift != 0 && index + 1 < wordCount) window |= packed.getWord(index + 1) << (64 - shift);
+
+            int cells = Math.min(32, width - x);
+            long inRow = cells == 32 ? 0xFFFFFFFFL : (1L << cells) - 1;
+            long rightOpen = ~evenBits(window) & inRow;
+            if (x + cells == width) rightOpen &= ~(1L << (cells - 1)); // no passage out of the right border
+            long downOpen = y < height - 1 ? ~evenBits(window >>> 1) & inRow : 0;
+            right[row + (x >>> 6)] |= rightOpen << (x & 32);
+            down[row + (x >>> 6)] |= downOpen << (x & 32);
+        }
+    }
+
+    //Bits 0, 2, 4, .. 62 of 'bits' packed into bits 0..31.
+    private static long evenBits(long bits) {
+        long x = bits & 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+}
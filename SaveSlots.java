@@ -0,0 +1,249 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+//Named save slots in one directory. Every slot file starts with a fixed HEADER_SIZE header
+//(size, mode, time, moves, timestamp) followed by the serialized game, so the slot list is
+//built by mapping only the headers and a slot is loaded without touching the others.
+public class SaveSlots {
+
+    public static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x4D5A5331; // "MZS1"
+    private static final short VERSION = 1;
+    private static final String EXTENSION = ".sav";
+    private static final Set<String> LEGACY_CLASSES = Set.of("Cell", "Player"); // changed since, same fields
+
+    private final Path directory;
+
+    public SaveSlots(Path directory) {
+        this.directory = directory;
+    }
+
+    //Header information of one slot.
+    public static class Slot {
+
+        public final String name;
+        public final int width;
+        public final int height;
+        public final boolean isCompetitiveMode;
+        public final int elapsedTime;
+        public final int humanMoveCount;
+        public final int aiMoveCount;
+        public final long timestamp;
+
+        public Slot(String name, int width, int height, boolean isCompetitiveMode,
+                    int elapsedTime, int humanMoveCount, int aiMoveCount, long timestamp) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.isCompetitiveMode = isCompetitiveMode;
+            this.elapsedTime = elapsedTime;
+            this.humanMoveCount = humanMoveCount;
+            this.aiMoveCount = aiMoveCount;
+            this.timestamp = timestamp;
+        }
+    }
+
+    //Reads the headers of all slots, newest first. Files that are not valid slots are skipped.
+    public List<Slot> list() throws IOException {
+        List<Slot> slots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return slots;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                Slot slot = readHeader(file);
+                if (slot != null) slots.add(slot);
+            }
+        }
+        slots.sort(Comparator.comparingLong((Slot slot) -> slot.timestamp).reversed());
+        return slots;
+    }
+
+    //Path of the slot file (the directory is created if needed).
+    public Path pathOf(String name) throws IOException {
+        Files.createDirectories(directory);
+        return directory.resolve(sanitize(name) + EXTENSION);
+    }
+
+    public boolean exists(String name) {
+        return Files.isRegularFile(directory.resolve(sanitize(name) + EXTENSION));
+    }
+
+    //Reads the game stored in a slot after checking its header. A file that does not start with a
+    //slot header is rejected before anything in it is deserialized.
+    public GameSnapshot load(String name) throws IOException, ClassNotFoundException {
+        try (InputStream file = Files.newInputStream(directory.resolve(sanitize(name) + EXTENSION))) {
+            ByteBuffer header = ByteBuffer.wrap(file.readNBytes(HEADER_SIZE));
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException("'" + name + "' is not a save slot of this version");
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(file))) {
+                return GameSnapshot.readFrom(in);
+            }
+        }
+    }
+
+    //Turns a save from before slots existed (savegame.dat, see readLegacy()) into the slot 'name',
+    //once: the old file is renamed to <file>.imported afterwards. Returns false if there was nothing
+    //to import or the slot already exists.
+    public boolean importLegacy(Path legacy, String name) throws IOException, ClassNotFoundException {
+        if (!Files.isRegularFile(legacy) || exists(name)) return false;
+        GameSnapshot snapshot;
+        try (InputStream file = Files.newInputStream(legacy);
+             ObjectInputStream in = new LegacyInputStream(new BufferedInputStream(file))) {
+            snapshot = readLegacy(in);
+        }
+        Path target = pathOf(name);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(encodeHeader(snapshot, Files.getLastModifiedTime(legacy).toMillis()));
+            OutputStream file = Channels.newOutputStream(channel); // closed with the channel
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file));
+            snapshot.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".imported"),
+                StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    //Reads the game of a savegame.dat written before slots existed: width, height and cell size, the
+    //maze as Cell[height][width], the players, the entrance and exit as Cells, the move counts, the
+    //time, the mode, the turn and the time until the next regeneration. The maze becomes a CellGrid
+    //and the entrance and exit Points. The old game had no terrain; braid, seed and heatmap are unknown.
+    static GameSnapshot readLegacy(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int width = in.readInt();
+        int height = in.readInt();
+        int cellSize = in.readInt();
+        Cell[][] cells = (Cell[][]) in.readObject();
+        Player player = (Player) in.readObject();
+        Player aiPlayer = (Player) in.readObject();
+        Cell entrance = (Cell) in.readObject();
+        Cell exit = (Cell) in.readObject();
+        int humanMoveCount = in.readInt();
+        int aiMoveCount = in.readInt();
+        int elapsedTime = in.readInt();
+        boolean isCompetitiveMode = in.readBoolean();
+        boolean isHumanTurn = in.readBoolean();
+        int timeUntilNextRegen = in.readInt();
+
+        if (width <= 0 || height <= 0 || cells == null || cells.length != height || player == null
+                || entrance == null || exit == null) {
+            throw new InvalidObjectException("Not a complete " + width + "x" + height + " game");
+        }
+        CellGrid grid = new CellGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            if (cells[y] == null || cells[y].length != width) {
+                throw new InvalidObjectException("Row " + y + " of the maze is not " + width + " cells wide");
+            }
+            for (int x = 0; x < width; x++) {
+                Cell cell = cells[y][x];
+                if (cell == null || cell.walls == null || cell.walls.length != 4) {
+                    throw new InvalidObjectException("Cell (" + x + ", " + y + ") is damaged");
+                }
+                System.arraycopy(cell.walls, 0, grid.getCell(x, y).walls, 0, 4);
+            }
+        }
+        return new GameSnapshot(0, true, width, height, cellSize, grid, player, aiPlayer,
+                new Point(entrance.x, entrance.y), new Point(exit.x, exit.y), humanMoveCount, aiMoveCount,
+                elapsedTime, isCompetitiveMode, isHumanTurn, timeUntilNextRegen, -1, 0, null, 0, null);
+    }
+
+    //Reads Cell and Player as the classes of this version. Their serialVersionUIDs are computed from
+    //the whole class and have changed since the old save was written, their fields have not: a
+    //descriptor is only replaced when its fields match.
+    static class LegacyInputStream extends ObjectInputStream {
+
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass saved = super.readClassDescriptor();
+            if (!LEGACY_CLASSES.contains(saved.getName())) return saved;
+            ObjectStreamClass local = ObjectStreamClass.lookup(Class.forName(saved.getName()));
+            return local != null && sameFields(saved, local) ? local : saved;
+        }
+
+        private static boolean sameFields(ObjectStreamClass a, ObjectStreamClass b) {
+            return Arrays.equals(signatures(a), signatures(b));
+        }
+
+        private static String[] signatures(ObjectStreamClass descriptor) {
+            ObjectStreamField[] fields = descriptor.getFields();
+            String[] signatures = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                signatures[i] = fields[i].getName() + ":" + fields[i].getTypeString() + fields[i].getTypeCode();
+            }
+            Arrays.sort(signatures);
+            return signatures;
+        }
+    }
+
+    //Builds the header written in front of a saved game.
+    public static ByteBuffer encodeHeader(GameSnapshot snapshot, long timestamp) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION);
+        header.put((byte) ((snapshot.isCompetitiveMode ? 1 : 0) | (snapshot.isHumanTurn ? 2 : 0)));
+        header.put((byte) 0);
+        header.putInt(snapshot.width).putInt(snapshot.height).putInt(snapshot.elapsedTime);
+        header.putInt(snapshot.humanMoveCount).putInt(snapshot.aiMoveCount).putLong(timestamp);
+        header.position(HEADER_SIZE);
+        header.flip();
+        return header;
+    }
+
+    //Keeps slot names usable as file names.
+    public static String sanitize(String name) {
+        String clean = name.trim().replaceAll("[^A-Za-z0-9_-]", "_");
+        if (clean.isEmpty()) clean = "quicksave";
+        return clean.length() > 32 ? clean.substring(0, 32) : clean;
+    }
+
+    private Slot readHeader(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return null;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) return null;
+            byte flags = header.get();
+            header.get();
+            int width = header.getInt();
+            int height = header.getInt();
+            int elapsedTime = header.getInt();
+            int humanMoveCount = header.getInt();
+            int aiMoveCount = header.getInt();
+            long timestamp = header.getLong();
+
+            String fileName = file.getFileName().toString();
+            String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+            return new Slot(name, width, height, (flags & 1) != 0, elapsedTime, humanMoveCount, aiMoveCount, timestamp);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Writes game snapshots on a background thread, each file starting with the SaveSlots header.
+//Each save goes to a temp file next to the target, is fsynced, then renamed over the target,
+//so a crash never leaves a half-written save behind. Heatmaps are added to their totals on the
+//same thread, under a lock file that other game processes take too.
+public class SaveWriter {
+
+    public static final String HEATMAP_EXTENSION = ".heatmap";
+    private static final String HEATMAP_LOCK_FILE = "heatmaps.lock";
+    private static final Object HEATMAP_LOCK = new Object(); // file locks do not exclude threads of one JVM
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "maze-save-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //Queues the snapshot for writing. The future completes once the target file is replaced.
+    public CompletableFuture<Path> save(GameSnapshot snapshot, Path target) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(snapshot, target);
+                return target;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    //Queues adding 'heatmap' to the total in 'target', which is created if needed. The heatmap must
+    //not change afterwards. Then deletes the least recently written heatmap files in the directory
+    //until they take at most 'budget' bytes; 'target' is kept.
+    public CompletableFuture<Path> addHeatmap(VisitHeatmap heatmap, Path target, long budget) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                addToTotal(heatmap, target.toAbsolutePath(), budget);
+                return target;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    private void addToTotal(VisitHeatmap heatmap, Path target, long budget) throws IOException {
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        synchronized (HEATMAP_LOCK) {
+            try (FileChannel lockFile = FileChannel.open(directory.resolve(HEATMAP_LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = lockFile.lock();
+                try {
+                    VisitHeatmap.Total total;
+                    try {
+                        total = VisitHeatmap.Total.load(target);
+                    } catch (ClassNotFoundException | ClassCastException e) {
+                        throw new IOException("Unreadable heatmap " + target.getFileName(), e);
+                    }
+                    if (total == null || total.getWidth() != heatmap.getWidth()
+                            || total.getHeight() != heatmap.getHeight()) {
+                        total = new VisitHeatmap.Total(heatmap.getWidth(), heatmap.getHeight());
+                    }
+                    total.add(heatmap);
+                    total.save(target);
+                    trimHeatmaps(directory, target, budget);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    //Deletes the least recently written heatmap files other than 'keep' beyond 'budget' bytes.
+    private static void trimHeatmaps(Path directory, Path keep, long budget) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (var listing = Files.newDirectoryStream(directory, "*" + HEATMAP_EXTENSION)) {
+            listing.forEach(files::add);
+        }
+        long used = Files.size(keep);
+        files.remove(keep);
+        files.sort(Comparator.comparing((Path file) -> file.toFile().lastModified()).reversed());
+        for (Path file : files) {
+            used += file.toFile().length();
+            if (used > budget) Files.deleteIfExists(file);
+        }
+    }
+
+    private void write(GameSnapshot snapshot, Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            file.getChannel().write(SaveSlots.encodeHeader(snapshot, System.currentTimeMillis()));
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file));
+            snapshot.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+
+        try {
+            Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,526 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Streams a live game to spectators over TCP, with non-blocking NIO on one daemon thread.
+//A new spectator gets a full frame (all walls, 2 bits per cell), then delta frames holding only the
+//fields that changed: players, move counts, timer, and after a regeneration the cells whose walls
+//differ. Nothing is queued per spectator: each has at most one frame in flight, and when that frame
+//is written the next one goes straight from what the spectator last saw to the newest snapshot, so
+//a slow spectator gets the updates it missed coalesced into one delta. Frames are built once and
+//shared by all spectators that saw the same snapshot.
+//
+//Frame format, big-endian: int length of the rest, byte FULL or DELTA, long version, then
+//  FULL:  int width, int height, then every field group below (walls as a bitmap)
+//  DELTA: byte mask of the field groups that follow
+//Field groups, in this order:
+//  PLAYER     byte present, int x, int y
+//  AI_PLAYER  byte present, int x, int y
+//  MOVES      int human, int ai
+//  TIME       int elapsed seconds, int seconds until the next regeneration
+//  FLAGS      byte: 1 game running, 2 competitive, 4 human's turn
+//  MAZE       int entrance x, y, int exit x, y, then
+//             FULL:  (cells + 3) / 4 bytes, cell i in bits 2*(i%4) (right wall) and 2*(i%4)+1 (bottom wall)
+//             DELTA: int count, then count times int cell (y * width + x), byte walls (bit 0 right, 1 bottom)
+//Top and left border walls are closed except at the entrance and exit.
+public class SpectatorServer implements Closeable {
+
+    public static final byte FULL = 'F';
+    public static final byte DELTA = 'D';
+
+    public static final int PLAYER = 1;
+    public static final int AI_PLAYER = 2;
+    public static final int MOVES = 4;
+    public static final int TIME = 8;
+    public static final int FLAGS = 16;
+    public static final int MAZE = 32;
+    private static final int ALL = 63;
+
+    private static final long STALL_MILLIS = 10_000; // a spectator that takes no data for this long is dropped
+    private static final int MAX_CACHED_FRAMES = 256;
+    private static final ByteBuffer NOTHING = ByteBuffer.allocate(0);
+    private static final long[] TOO_MANY = new long[0]; // wall diff larger than a full bitmap
+
+    //A connected spectator. Only touched by the server thread.
+    private static class Spectator {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        GameSnapshot seen;  // last snapshot sent, null before the full frame
+        ByteBuffer pending; // rest of the frame being written, a view of a shared frame
+        long lastProgress;
+
+        Spectator(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final AtomicReference<GameSnapshot> latest = new AtomicReference<>();
+    private volatile boolean running = true;
+
+    // Server thread only
+    private final List<Spectator> spectators = new ArrayList<>();
+    private GameSnapshot framesTo;                                     // snapshot the cached frames lead to
+    private final Map<GameSnapshot, ByteBuffer> frames = new IdentityHashMap<>(); // by the snapshot seen before
+    private final Map<MazeGrid, long[]> wallDiffs = new IdentityHashMap<>();      // to framesTo.grid, by old grid
+    private final ByteBuffer discard = ByteBuffer.allocate(256);
+
+    private volatile int connected;
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong fullFrames = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong(); // snapshots a spectator never saw on its own
+    private final AtomicLong dropped = new AtomicLong();
+
+    //Listens on 'port' (0 = any free port) and starts the server thread.
+    public SpectatorServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "maze-spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    //Makes 'snapshot' the state spectators catch up to. Cheap, called by the game thread after every batch.
+    public void publish(GameSnapshot snapshot) {
+        if (snapshot == null || latest.getAndSet(snapshot) == snapshot) return;
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Spectator spectator = (Spectator) key.attachment();
+                    if (key.isReadable()) read(spectator);
+                    if (key.isValid() && key.isWritable()) flush(spectator);
+                }
+
+                GameSnapshot current = latest.get();
+                long now = System.currentTimeMillis();
+                for (int i = spectators.size() - 1; i >= 0; i--) {
+                    Spectator spectator = spectators.get(i);
+                    if (spectator.pending == null && spectator.seen != current && current != null) {
+                        send(spectator, current);
+                    } else if (spectator.pending != null && now - spectator.lastProgress > STALL_MILLIS) {
+                        dropped.incrementAndGet();
+                        disconnect(spectator);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Spectator server stopped: " + e.getMessage());
+        } finally {
+            for (Spectator spectator : new ArrayList<>(spectators)) {
+                disconnect(spectator);
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Spectator spectator = new Spectator(channel, key);
+            key.attach(spectator);
+            spectators.add(spectator);
+            connected = spectators.size();
+        }
+    }
+
+    //Spectators send nothing; reading only notices when they hang up.
+    private void read(Spectator spectator) {
+        try {
+            discard.clear();
+            if (spectator.channel.read(discard) < 0) disconnect(spectator);
+        } catch (IOException e) {
+            disconnect(spectator);
+        }
+    }
+
+    //Starts sending the frame from what the spectator saw to 'current'.
+    private void send(Spectator spectator, GameSnapshot current) {
+        if (spectator.seen != null && current.version > spectator.seen.version + 1) {
+            coalesced.addAndGet(current.version - spectator.seen.version - 1);
+        }
+        ByteBuffer frame = frameFor(spectator.seen, current);
+        spectator.seen = current;
+        if (!frame.hasRemaining()) return; // nothing a spectator can see has changed
+        if (frame.get(4) == FULL) fullFrames.incrementAndGet();
+        spectator.pending = frame.duplicate();
+        spectator.lastProgress = System.currentTimeMillis();
+        flush(spectator);
+    }
+
+    //Writes as much of the pending frame as the socket takes, and waits for OP_WRITE if it is full.
+    private void flush(Spectator spectator) {
+        try {
+            int written = spectator.channel.write(spectator.pending);
+            if (written > 0) {
+                bytesSent.addAndGet(written);
+                spectator.lastProgress = System.currentTimeMillis();
+            }
+        } catch (IOException e) {
+            disconnect(spectator);
+            return;
+        }
+        if (spectator.pending.hasRemaining()) {
+            spectator.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            spectator.pending = null;
+            spectator.key.interestOps(SelectionKey.OP_READ);
+            framesSent.incrementAndGet();
+        }
+    }
+
+    private void disconnect(Spectator spectator) {
+        spectator.key.cancel();
+        try {
+            spectator.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        spectators.remove(spectator);
+        connected = spectators.size();
+    }
+
+    //The shared frame from 'seen' (null for a new spectator) to 'current'.
+    private ByteBuffer frameFor(GameSnapshot seen, GameSnapshot current) {
+        if (current != framesTo) {
+            frames.clear();
+            if (framesTo == null || framesTo.grid != current.grid) wallDiffs.clear();
+            framesTo = current;
+        }
+        ByteBuffer frame = frames.get(seen);
+        if (frame == null) {
+            frame = encode(seen, current);
+            if (frames.size() < MAX_CACHED_FRAMES) frames.put(seen, frame);
+        }
+        return frame;
+    }
+
+    private ByteBuffer encode(GameSnapshot from, GameSnapshot to) {
+        boolean full = from == null || from.width != to.width || from.height != to.height;
+        int mask = full ? ALL : changes(from, to);
+        if (mask == 0) return NOTHING;
+
+        long[] diff = null;
+        if (!full && (mask & MAZE) != 0) {
+            diff = from.grid == to.grid ? new long[0] : wallDiffs.computeIfAbsent(from.grid, g -> wallDiff(g, to.grid));
+            if (diff == TOO_MANY) {
+                full = true; // more changed cells than a bitmap of all of them costs
+                mask = ALL;
+            }
+        }
+
+        long cells = (long) to.width * to.height;
+        long size = 4 + 1 + 8 + (full ? 8 : 1) + groupSize(mask);
+        if ((mask & MAZE) != 0) size += full ? (cells + 3) / 4 : 4 + 5L * diff.length;
+        if (size > Integer.MAX_VALUE) throw new IllegalStateException("Maze too large to stream: " + cells + " cells");
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt((int) size - 4);
+        out.put(full ? FULL : DELTA);
+        out.putLong(to.version);
+        if (full) {
+            out.putInt(to.width);
+            out.putInt(to.height);
+        } else {
+            out.put((byte) mask);
+        }
+
+        if ((mask & PLAYER) != 0) putPlayer(out, to.player);
+        if ((mask & AI_PLAYER) != 0) putPlayer(out, to.aiPlayer);
+        if ((mask & MOVES) != 0) {
+            out.putInt(to.humanMoveCount);
+            out.putInt(to.aiMoveCount);
+        }
+        if ((mask & TIME) != 0) {
+            out.putInt(to.elapsedTime);
+            out.putInt(to.timeUntilNextRegen);
+        }
+        if ((mask & FLAGS) != 0) out.put(flags(to));
+        if ((mask & MAZE) != 0) {
+            putPoint(out, to.entrance);
+            putPoint(out, to.exit);
+            if (full) {
+                putWalls(out, to.grid);
+            } else {
+                out.putInt(diff.length);
+                for (long change : diff) {
+                    out.putInt((int) (change >>> 2));
+                    out.put((byte) (change & 3));
+                }
+            }
+        }
+        return out.flip().asReadOnlyBuffer();
+    }
+
+    private static int changes(GameSnapshot from, GameSnapshot to) {
+        int mask = 0;
+        if (!samePlayer(from.player, to.player)) mask |= PLAYER;
+        if (!samePlayer(from.aiPlayer, to.aiPlayer)) mask |= AI_PLAYER;
+        if (from.humanMoveCount != to.humanMoveCount || from.aiMoveCount != to.aiMoveCount) mask |= MOVES;
+        if (from.elapsedTime != to.elapsedTime || from.timeUntilNextRegen != to.timeUntilNextRegen) mask |= TIME;
+        if (flags(from) != flags(to)) mask |= FLAGS;
+        if (from.grid != to.grid || !samePoint(from.entrance, to.entrance) || !samePoint(from.exit, to.exit)) {
+            mask |= MAZE;
+        }
+        return mask;
+    }
+
+    private static int groupSize(int mask) {
+        int size = 0;
+        if ((mask & PLAYER) != 0) size += 9;
+        if ((mask & AI_PLAYER) != 0) size += 9;
+        if ((mask & MOVES) != 0) size += 8;
+        if ((mask & TIME) != 0) size += 8;
+        if ((mask & FLAGS) != 0) size += 1;
+        if ((mask & MAZE) != 0) size += 16;
+        return size;
+    }
+
+    //Cells whose right or bottom wall differs, as (cell << 2 | new walls). TOO_MANY if a full bitmap is smaller.
+    private static long[] wallDiff(MazeGrid from, MazeGrid to) {
+        int width = to.getWidth();
+        long cells = to.getCellCount();
+        long limit = (cells + 3) / 4 / 5;
+        long[] diff = new long[16];
+        int count = 0;
+
+        if (from instanceof PackedGrid a && to instanceof PackedGrid b) {
+            // Compare 32 cells per word
+            for (long w = 0; w < b.getWordCount(); w++) {
+                long word = b.getWord(w);
+                long changed = a.getWord(w) ^ word;
+                while (changed != 0) {
+                    int bit = Long.numberOfTrailingZeros(changed) & ~1;
+                    long cell = w * 32 + bit / 2;
+                    changed &= ~(3L << bit);
+                    if (cell >= cells) break;
+                    if (count == limit) return TOO_MANY;
+                    if (count == diff.length) diff = Arrays.copyOf(diff, count * 2);
+                    diff[count++] = cell << 2 | ((word >>> bit) & 3);
+                }
+            }
+        } else {
+            for (long cell = 0; cell < cells; cell++) {
+                int walls = walls(to, (int) (cell % width), (int) (cell / width));
+                if (walls == walls(from, (int) (cell % width), (int) (cell / width))) continue;
+                if (count == limit) return TOO_MANY;
+                if (count == diff.length) diff = Arrays.copyOf(diff, count * 2);
+                diff[count++] = cell << 2 | walls;
+            }
+        }
+        return Arrays.copyOf(diff, count);
+    }
+
+    private static void putWalls(ByteBuffer out, MazeGrid grid) {
+        int width = grid.getWidth();
+        long cells = grid.getCellCount();
+        if (grid instanceof PackedGrid packed) {
+            // The words already hold 2 bits per cell in cell order: copy them byte by byte, low byte first
+            long bytes = (cells + 3) / 4;
+            for (long b = 0; b < bytes; b++) {
+                out.put((byte) (packed.getWord(b >>> 3) >>> ((b & 7) << 3)));
+            }
+            return;
+        }
+        int bits = 0;
+        for (long cell = 0; cell < cells; cell++) {
+            bits |= walls(grid, (int) (cell % width), (int) (cell / width)) << ((cell & 3) << 1);
+            if ((cell & 3) == 3 || cell == cells - 1) {
+                out.put((byte) bits);
+                bits = 0;
+            }
+        }
+    }
+
+    private static int walls(MazeGrid grid, int x, int y) {
+        return (grid.hasWall(x, y, MazeGrid.RIGHT) ? 1 : 0) | (grid.hasWall(x, y, MazeGrid.BOTTOM) ? 2 : 0);
+    }
+
+    private static byte flags(GameSnapshot snapshot) {
+        return (byte) ((snapshot.isGameRunning ? 1 : 0) | (snapshot.isCompetitiveMode ? 2 : 0)
+                | (snapshot.isHumanTurn ? 4 : 0));
+    }
+
+    private static void putPlayer(ByteBuffer out, Player player) {
+        out.put((byte) (player == null ? 0 : 1));
+        out.putInt(player == null ? -1 : player.x);
+        out.putInt(player == null ? -1 : player.y);
+    }
+
+    private static void putPoint(ByteBuffer out, Point point) {
+        out.putInt(point == null ? -1 : point.x);
+        out.putInt(point == null ? -1 : point.y);
+    }
+
+    private static boolean samePlayer(Player a, Player b) {
+        return a == null ? b == null : b != null && a.x == b.x && a.y == b.y;
+    }
+
+    private static boolean samePoint(Point a, Point b) {
+        return a == null ? b == null : b != null && a.x == b.x && a.y == b.y;
+    }
+
+    public int getSpectatorCount() {
+        return connected;
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public String getStatistics() {
+        return String.format("spectators: %d connected, %d frames (%d full), %d KB sent, %d updates coalesced, %d dropped",
+                connected, framesSent.get(), fullFrames.get(), bytesSent.get() / 1024, coalesced.get(), dropped.get());
+    }
+
+    //The game as a spectator sees it, rebuilt from frames. For clients written in Java.
+    public static class View {
+
+        public long version = -1;
+        public int width, height;
+        public int playerX = -1, playerY = -1, aiX = -1, aiY = -1;
+        public int humanMoveCount, aiMoveCount, elapsedTime, timeUntilNextRegen;
+        public boolean isGameRunning, isCompetitiveMode, isHumanTurn;
+        public int entranceX, entranceY, exitX, exitY;
+        private byte[] walls = new byte[0];
+
+        //Applies one frame, without its length prefix.
+        public void apply(ByteBuffer frame) {
+            byte type = frame.get();
+            version = frame.getLong();
+            int mask;
+            if (type == FULL) {
+                width = frame.getInt();
+                height = frame.getInt();
+                walls = new byte[(int) (((long) width * height + 3) / 4)];
+                mask = ALL;
+            } else {
+                mask = frame.get();
+            }
+
+            if ((mask & PLAYER) != 0) {
+                frame.get();
+                playerX = frame.getInt();
+                playerY = frame.getInt();
+            }
+            if ((mask & AI_PLAYER) != 0) {
+                frame.get();
+                aiX = frame.getInt();
+                aiY = frame.getInt();
+            }
+            if ((mask & MOVES) != 0) {
+                humanMoveCount = frame.getInt();
+                aiMoveCount = frame.getInt();
+            }
+            if ((mask & TIME) != 0) {
+                elapsedTime = frame.getInt();
+                timeUntilNextRegen = frame.getInt();
+            }
+            if ((mask & FLAGS) != 0) {
+                int flags = frame.get();
+                isGameRunning = (flags & 1) != 0;
+                isCompetitiveMode = (flags & 2) != 0;
+                isHumanTurn = (flags & 4) != 0;
+            }
+            if ((mask & MAZE) != 0) {
+                entranceX = frame.getInt();
+                entranceY = frame.getInt();
+                exitX = frame.getInt();
+                exitY = frame.getInt();
+                if (type == FULL) {
+                    frame.get(walls);
+                } else {
+                    for (int n = frame.getInt(); n > 0; n--) {
+                        int cell = frame.getInt();
+                        int shift = (cell & 3) << 1;
+                        walls[cell >>> 2] = (byte) ((walls[cell >>> 2] & ~(3 << shift)) | (frame.get() << shift));
+                    }
+                }
+            }
+        }
+
+        //Checks if the cell (x, y) has a wall in the given direction, like MazeGrid.hasWall().
+        public boolean hasWall(int x, int y, int dir) {
+            return switch (dir) {
+                case MazeGrid.TOP -> y == 0 ? !isOpening(x, y) : bits(x, y - 1, 2);
+                case MazeGrid.RIGHT -> bits(x, y, 1);
+                case MazeGrid.BOTTOM -> bits(x, y, 2);
+                case MazeGrid.LEFT -> x == 0 ? !isOpening(x, y) : bits(x - 1, y, 1);
+                default -> true;
+            };
+        }
+
+        private boolean bits(int x, int y, int bit) {
+            int cell = y * width + x;
+            return ((walls[cell >>> 2] >>> ((cell & 3) << 1)) & bit) != 0;
+        }
+
+        private boolean isOpening(int x, int y) {
+            return (x == entranceX && y == entranceY) || (x == exitX && y == exitY);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.BitSet;
+
+//Draws the game in an ANSI terminal with box-drawing characters, no Turtle window needed.
+//The screen is a canvas of (2 * height + 1) rows and (2 * width + 1) columns: walls and corners on
+//the even rows and columns, cells in between. Each frame is built in memory and compared with what
+//is already on screen; only the changed characters are sent, using cursor positioning, in one write.
+//The first frame (and every frame after a size change) repaints the whole screen.
+public class TerminalRenderer {
+
+    private static final String ESC = "\u001b[";
+    // Corner characters indexed by the walls meeting there: 1 up, 2 right, 4 down, 8 left
+    private static final char HORIZONTAL = '\u2500';
+    private static final char VERTICAL = '\u2502';
+    private static final char PATH = '\u00B7';
+    private static final char ICE = '\u2591';
+    private static final char MUD = '\u2592';
+    private static final char[] HEAT = "\u2591\u2592\u2593\u2588".toCharArray(); // light to full, one per level
+    private static final char[] CORNERS = " \u2575\u2576\u2514\u2577\u2502\u250C\u251C\u2574\u2518\u2500\u2534\u2510\u2524\u252C\u253C".toCharArray();
+
+    // Colors, as SGR codes
+    private static final byte DEFAULT = 0;
+    private static final byte BLUE = 34;
+    private static final byte RED = 31;
+    private static final byte GREEN = 32;
+    private static final byte YELLOW = 33;
+    private static final byte MAGENTA = 35;
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(1 << 16);
+
+    private int rows, columns;
+    private MazeGrid wallsOf;           // grid the wall layer was built from (grids never change once published)
+    private Terrain terrainOf;          // terrain drawn into the wall layer
+    private char[] walls = new char[0]; // wall layer, rebuilt only when the grid changes
+    private char[] frame = new char[0];
+    private byte[] frameColors = new byte[0];
+    private char[] screen = new char[0];
+    private byte[] screenColors = new byte[0];
+    private String screenStatus = "";
+    private boolean repaint = true;
+    private long bytesWritten;
+
+    // Overlays for the next frames
+    private BitSet agents;
+    private byte[] heat; // heat level of every cell, 0 = not shown
+    private int pathX, pathY;
+    private MovePath path;
+
+    public TerminalRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    //Cells holding swarm agents (index y * width + x), or null for none.
+    public void setAgents(BitSet agents) {
+        this.agents = agents;
+    }
+
+    //Shows a path hint from (x, y) until clearPath() is called.
+    public void setPath(int x, int y, MovePath moves) {
+        this.pathX = x;
+        this.pathY = y;
+        this.path = moves;
+    }
+
+    public void clearPath() {
+        this.path = null;
+    }
+
+    //Shows a heatmap until clearHeatmap() is called: the level (0 to 4) of every cell, index y * width + x.
+    public void setHeatmap(byte[] levels) {
+        this.heat = levels;
+    }
+
+    public void clearHeatmap() {
+        this.heat = null;
+    }
+
+    //Rebuilds the walls with the next frame, for a grid that is still being generated.
+    public void invalidateWalls() {
+        wallsOf = null;
+    }
+
+    //Repaints the whole screen with the next frame.
+    public void invalidate() {
+        repaint = true;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    //Draws one frame of 'state' and leaves the cursor below the maze for the next prompt.
+    public void render(GameSnapshot state) {
+        int width = state.grid.getWidth();
+        int height = state.grid.getHeight();
+        if (2 * height + 1 != rows || 2 * width + 1 != columns) {
+            resize(2 * height + 1, 2 * width + 1);
+        }
+        if (state.grid != wallsOf || state.terrain != terrainOf) {
+            buildWalls(state.grid, state.terrain);
+        }
+
+        System.arraycopy(walls, 0, frame, 0, walls.length);
+        Arrays.fill(frameColors, DEFAULT);
+        drawOverlays(state);
+
+        buffer.setLength(0);
+        if (repaint) {
+            buffer.append(ESC).append("2J");
+            Arrays.fill(screen, '\0');
+            screenStatus = "";
+            repaint = false;
+        }
+        appendChanges();
+
+        String status = String.format("Time %02d:%02d  Moves %s", state.elapsedTime / 60, state.elapsedTime % 60,
+                state.isCompetitiveMode ? state.humanMoveCount + "/" + state.aiMoveCount : state.humanMoveCount);
+        if (!status.equals(screenStatus)) {
+            buffer.append(ESC).append(rows + 1).append(";1H").append(ESC).append("0m")
+                    .append(status).append(ESC).append('K');
+            screenStatus = status;
+        }
+        buffer.append(ESC).append("0m").append(ESC).append(rows + 3).append(";1H").append(ESC).append('J');
+
+        out.print(buffer);
+        out.flush();
+        bytesWritten += buffer.length();
+    }
+
+    private void resize(int newRows, int newColumns) {
+        rows = newRows;
+        columns = newColumns;
+        int size = rows * columns;
+        walls = new char[size];
+        frame = new char[size];
+        frameColors = new byte[size];
+        screen = new char[size];
+        screenColors = new byte[size];
+        wallsOf = null;
+        repaint = true;
+    }
+
+    private void buildWalls(MazeGrid grid, Terrain terrain) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        Arrays.fill(walls, ' ');
+
+        for (int y = 0; y <= height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Horizontal wall above cell (x, y); the last row is the bottom border
+                boolean wall = y < height ? grid.hasWall(x, y, MazeGrid.TOP) : grid.hasWall(x, y - 1, MazeGrid.BOTTOM);
+                if (wall) walls[(2 * y) * columns + 2 * x + 1] = HORIZONTAL;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x <= width; x++) {
+                // Vertical wall left of cell (x, y); the last column is the right border
+                boolean wall = x < width ? grid.hasWall(x, y, MazeGrid.LEFT) : grid.hasWall(x - 1, y, MazeGrid.RIGHT);
+                if (wall) walls[(2 * y + 1) * columns + 2 * x] = VERTICAL;
+            }
+        }
+        for (int r = 0; r < rows; r += 2) {
+            for (int c = 0; c < columns; c += 2) {
+                int mask = 0;
+                if (r > 0 && walls[(r - 1) * columns + c] == VERTICAL) mask |= 1;
+                if (c < columns - 1 && walls[r * columns + c + 1] == HORIZONTAL) mask |= 2;
+                if (r < rows - 1 && walls[(r + 1) * columns + c] == VERTICAL) mask |= 4;
+                if (c > 0 && walls[r * columns + c - 1] == HORIZONTAL) mask |= 8;
+                walls[r * columns + c] = CORNERS[mask];
+            }
+        }
+        if (terrain != null) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int cost = terrain.getCost(x, y);
+                    if (cost > Terrain.GROUND) walls[(2 * y + 1) * columns + 2 * x + 1] = cost == Terrain.ICE ? ICE : MUD;
+                }
+            }
+        }
+        wallsOf = grid;
+        terrainOf = terrain;
+    }
+
+    private void drawOverlays(GameSnapshot state) {
+        int width = state.grid.getWidth();
+        if (heat != null && heat.length == width * state.grid.getHeight()) {
+            for (int cell = 0; cell < heat.length; cell++) {
+                int level = Math.min(heat[cell], HEAT.length);
+                if (level > 0) put(2 * (cell / width) + 1, 2 * (cell % width) + 1, HEAT[level - 1], level > 2 ? RED : YELLOW);
+            }
+        }
+        if (path != null) {
+            int x = pathX, y = pathY;
+            for (int i = 0; i < path.size(); i++) {
+                int dir = path.get(i);
+                int dx = dir == MazeGrid.RIGHT ? 1 : dir == MazeGrid.LEFT ? -1 : 0;
+                int dy = dir == MazeGrid.BOTTOM ? 1 : dir == MazeGrid.TOP ? -1 : 0;
+                put(2 * y + 1 + dy, 2 * x + 1 + dx, PATH, GREEN); // the passage between the two cells
+                x += dx;
+                y += dy;
+                put(2 * y + 1, 2 * x + 1, PATH, GREEN);
+            }
+        }
+        if (agents != null) {
+            for (int cell = agents.nextSetBit(0); cell >= 0; cell = agents.nextSetBit(cell + 1)) {
+                put(2 * (cell / width) + 1, 2 * (cell % width) + 1, 'o', YELLOW);
+            }
+        }
+        put(2 * state.entrance.y + 1, 2 * state.entrance.x + 1, 'E', GREEN);
+        put(2 * state.exit.y + 1, 2 * state.exit.x + 1, 'X', RED);
+        if (state.isCompetitiveMode && state.aiPlayer != null) {
+            put(2 * state.aiPlayer.y + 1, 2 * state.aiPlayer.x + 1, 'A', RED);
+        }
+        if (state.player != null) {
+            boolean shared = state.isCompetitiveMode && state.aiPlayer != null
+                    && state.aiPlayer.x == state.player.x && state.aiPlayer.y == state.player.y;
+            put(2 * state.player.y + 1, 2 * state.player.x + 1, '@', shared ? MAGENTA : BLUE);
+        }
+    }
+
+    private void put(int row, int column, char c, byte color) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) return;
+        frame[row * columns + column] = c;
+        frameColors[row * columns + column] = color;
+    }
+
+    //Appends cursor moves and characters for every position that differs from the screen.
+    private void appendChanges() {
+        byte color = -1;
+        int cursor = -1; // canvas index the terminal cursor is at, -1 = unknown
+        for (int i = 0; i < frame.length; i++) {
+            if (frame[i] == screen[i] && frameColors[i] == screenColors[i]) continue;
+            if (i != cursor) {
+                buffer.append(ESC).append(i / columns + 1).append(';').append(i % columns + 1).append('H');
+            }
+            if (frameColors[i] != color) {
+                color = frameColors[i];
+                buffer.append(ESC).append(color).append('m');
+            }
+            buffer.append(frame[i]);
+            screen[i] = frame[i];
+            screenColors[i] = frameColors[i];
+            cursor = (i + 1) % columns == 0 ? -1 : i + 1;
+        }
+    }
+}
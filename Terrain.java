@@ -0,0 +1,86 @@
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+//Movement costs of the cells of a maze, one byte per cell next to the grid: entering a cell costs
+//its cost in moves. Ground costs 1, ice and mud more. Like a grid, a Terrain is never changed once
+//a game uses it.
+public class Terrain implements Serializable {
+
+    public static final byte GROUND = 1;
+    public static final byte ICE = 2;
+    public static final byte MUD = 4;
+    public static final int MAX_COST = 15;
+
+    private static final int PATCH = 4; // terrain comes in PATCH x PATCH blocks of cells
+
+    private final int width;
+    private final int height;
+    private final byte[] costs;
+
+    //Flat terrain: every cell is ground.
+    public Terrain(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.costs = new byte[Math.multiplyExact(width, height)];
+        Arrays.fill(costs, GROUND);
+    }
+
+    //Random patches of ice and mud (half each) covering about 'share' (0..1) of the cells. The same
+    //seed always gives the same terrain.
+    public static Terrain generate(int width, int height, double share, long seed) {
+        Terrain terrain = new Terrain(width, height);
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        for (int py = 0; py < height; py += PATCH) {
+            for (int px = 0; px < width; px += PATCH) {
+                if (random.nextDouble() >= share) continue;
+                byte cost = random.nextBoolean() ? ICE : MUD;
+                for (int y = py; y < Math.min(height, py + PATCH); y++) {
+                    for (int x = px; x < Math.min(width, px + PATCH); x++) {
+                        terrain.costs[y * width + x] = cost;
+                    }
+                }
+            }
+        }
+        return terrain;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    //Moves it costs to enter (x, y).
+    public int getCost(int x, int y) {
+        return costs[y * width + x];
+    }
+
+    //Moves it costs to enter the cell with index y * width + x.
+    public int getCost(int cell) {
+        return costs[cell];
+    }
+
+    //Sets the cost of (x, y), 1..MAX_COST.
+    public void setCost(int x, int y, int cost) {
+        if (cost < 1 || cost > MAX_COST) {
+            throw new IllegalArgumentException("Cost must be 1-" + MAX_COST + ": " + cost);
+        }
+        costs[y * width + x] = (byte) cost;
+    }
+
+    //Share of the cells (0..1) that are not ground.
+    public double getShare() {
+        long other = 0;
+        for (byte cost : costs) {
+            if (cost != GROUND) other++;
+        }
+        return costs.length == 0 ? 0 : (double) other / costs.length;
+    }
+
+    public long getMemoryFootprint() {
+        return costs.length;
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Headless competitive games between two move policies, no Turtle, Scanner or delays:
+//  java TournamentSimulator --games 10000 --players planner,random --size 20 [--regen 100] [--threads 8]
+//The rules follow competitive mode: players alternate single moves from the entrance, the first one
+//on the exit wins, and every 'regen' turns the maze is regenerated with both players kept in place.
+//The first mover alternates between games. Results depend only on the seed, not on the thread count.
+public class TournamentSimulator {
+
+    private final int width;
+    private final int height;
+    private final int games;
+    private final String[] players;
+    private final MazeGenerator.Algorithm algorithm;
+    private final long firstSeed;
+    private final int regenerationTurns; // 0 = never
+    private final int maxTurns;
+    private final int threads;
+
+    public TournamentSimulator(int width, int height, int games, String[] players, MazeGenerator.Algorithm algorithm,
+                               long firstSeed, int regenerationTurns, int maxTurns, int threads) {
+        this.width = width;
+        this.height = height;
+        this.games = games;
+        this.players = players;
+        this.algorithm = algorithm;
+        this.firstSeed = firstSeed;
+        this.regenerationTurns = regenerationTurns;
+        this.maxTurns = maxTurns;
+        this.threads = Math.max(1, threads);
+    }
+
+    //Totals of the games played by one thread.
+    public static class Results {
+
+        private long games, draws, turns, regenerations;
+        private final long[] wins = new long[2];
+        private final long[] moves = new long[2];
+        private final long[] winningMoves = new long[2];
+
+        public void merge(Results other) {
+            games += other.games;
+            draws += other.draws;
+            turns += other.turns;
+            regenerations += other.regenerations;
+            for (int p = 0; p < 2; p++) {
+                wins[p] += other.wins[p];
+                moves[p] += other.moves[p];
+                winningMoves[p] += other.winningMoves[p];
+            }
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getWins(int player) {
+            return wins[player];
+        }
+
+        public long getDraws() {
+            return draws;
+        }
+    }
+
+    public static void main(String[] args) {
+        int width = 20, height = 20, games = 1000, regen = 100, maxTurns = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        String[] players = {"planner", "random"};
+        MazeGenerator.Algorithm algorithm = MazeGenerator.Algorithm.DFS;
+
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--size" -> {
+                        String[] parts = value.toLowerCase().split("x");
+                        width = Integer.parseInt(parts[0]);
+                        height = parts.length > 1 ? Integer.parseInt(parts[1]) : width;
+                    }
+                    case "--games" -> games = Integer.parseInt(value);
+                    case "--players" -> {
+                        players = value.split(",");
+                        if (players.length != 2) throw new IllegalArgumentException("--players needs two names");
+                    }
+                    case "--algorithm" -> algorithm = MazeGenerator.Algorithm.valueOf(value.toUpperCase());
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--regen" -> regen = Integer.parseInt(value);
+                    case "--max-turns" -> maxTurns = Integer.parseInt(value);
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            for (String player : players) {
+                MovePolicy.create(player, new Random()); // fail early on unknown names
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.out.println("Usage: java TournamentSimulator --games N --players planner|random,planner|random "
+                    + "--size N|WxH [--algorithm dfs|eller] [--seed N] [--regen TURNS] [--max-turns N] [--threads N]");
+            return;
+        }
+        if (maxTurns <= 0) maxTurns = 100 * width * height;
+
+        TournamentSimulator simulator = new TournamentSimulator(width, height, games, players, algorithm,
+                seed, regen, maxTurns, threads);
+        long start = System.nanoTime();
+        Results results = simulator.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.print(results, seconds);
+    }
+
+    //Plays all games on the worker threads and merges their results.
+    public Results run() {
+        AtomicInteger next = new AtomicInteger();
+        Results[] perThread = new Results[threads];
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            Results results = perThread[t] = new Results();
+            workers[t] = new Thread(() -> {
+                PackedGrid grid = new PackedGrid(width, height, PackedGrid.Storage.OFF_HEAP);
+                Reachability reachability = new Reachability();
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < games) {
+                        playGame(grid, reachability, index, results);
+                    }
+                } finally {
+                    grid.close();
+                }
+            }, "tournament-" + t);
+            workers[t].start();
+        }
+
+        Results total = new Results();
+        for (int t = 0; t < threads; t++) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            total.merge(perThread[t]);
+        }
+        return total;
+    }
+
+    //Plays game 'index' in 'grid' and adds the outcome to 'results'.
+    private void playGame(PackedGrid grid, Reachability reachability, int index, Results results) {
+        Random random = new Random(firstSeed + index);
+        MazeGenerator generator = new MazeGenerator(random);
+        MovePolicy[] policies = {MovePolicy.create(players[0], random), MovePolicy.create(players[1], random)};
+
+        generator.generate(grid, algorithm);
+        Point[] openings = generator.createEntranceAndExit(grid);
+        Point exit = openings[1];
+        int[] x = {openings[0].x, openings[0].x};
+        int[] y = {openings[0].y, openings[0].y};
+        int[] moves = new int[2];
+        for (int p = 0; p < 2; p++) {
+            policies[p].reset(grid, exit.x, exit.y, x[p], y[p]);
+        }
+
+        int first = index & 1;
+        int winner = -1;
+        int turn = 0;
+        while (turn < maxTurns) {
+            int p = (first + turn) & 1;
+            int dir = policies[p].nextMove(grid, x[p], y[p]);
+            if (dir >= 0 && grid.canMove(x[p], y[p], dir)) {
+                x[p] += dir == MazeGrid.RIGHT ? 1 : dir == MazeGrid.LEFT ? -1 : 0;
+                y[p] += dir == MazeGrid.BOTTOM ? 1 : dir == MazeGrid.TOP ? -1 : 0;
+                moves[p]++;
+            }
+            turn++;
+            if (x[p] == exit.x && y[p] == exit.y) {
+                winner = p;
+                break;
+            }
+
+            if (regenerationTurns > 0 && turn % regenerationTurns == 0) {
+                exit = regenerate(grid, reachability, generator, x, y);
+                for (int q = 0; q < 2; q++) {
+                    policies[q].reset(grid, exit.x, exit.y, x[q], y[q]);
+                }
+                results.regenerations++;
+            }
+        }
+
+        results.games++;
+        results.turns += turn;
+        results.moves[0] += moves[0];
+        results.moves[1] += moves[1];
+        if (winner < 0) {
+            results.draws++;
+        } else {
+            results.wins[winner]++;
+            results.winningMoves[winner] += moves[winner];
+        }
+    }
+
+    //New maze in place, like Maze.regenerateMaze(): generate once more if a player cannot reach the exit.
+    //One fill from the exit answers for both players.
+    private Point regenerate(PackedGrid grid, Reachability reachability, MazeGenerator generator, int[] x, int[] y) {
+        generator.generate(grid, algorithm);
+        Point exit = generator.createEntranceAndExit(grid)[1];
+        reachability.load(grid);
+        reachability.fill(exit.x, exit.y);
+        for (int p = 0; p < 2; p++) {
+            if (!reachability.isReached(x[p], y[p])) {
+                generator.generate(grid, algorithm);
+                return generator.createEntranceAndExit(grid)[1];
+            }
+        }
+        return exit;
+    }
+
+    public void print(Results results, double seconds) {
+        System.out.printf("%d games, %dx%d %s, %s vs %s, regeneration every %d turns, %d threads%n",
+                results.games, width, height, algorithm, players[0], players[1], regenerationTurns, threads);
+        for (int p = 0; p < 2; p++) {
+            System.out.printf("  %-8s wins %6d (%5.1f%%), avg moves %.1f, avg moves when winning %.1f%n",
+                    players[p], results.wins[p], 100.0 * results.wins[p] / Math.max(1, results.games),
+                    (double) results.moves[p] / Math.max(1, results.games),
+                    (double) results.winningMoves[p] / Math.max(1, results.wins[p]));
+        }
+        System.out.printf("  draws    %6d (turn limit %d)%n", results.draws, maxTurns);
+        System.out.printf("  avg turns %.1f, regenerations %d%n",
+                (double) results.turns / Math.max(1, results.games), results.regenerations);
+        System.out.printf("Played in %.2f s (%.0f games/s)%n", seconds, results.games / seconds);
+    }
+}
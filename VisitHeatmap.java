@@ -0,0 +1,271 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//How often the human and the AI entered each cell in one game: two bytes per cell and player,
+//16-bit counters that stop at MAX_VISITS instead of wrapping around. A visit only increments an
+//array element, so counting every move allocates nothing. Saved with the game; a Total adds up
+//the heatmaps of many games on the same maze size.
+public class VisitHeatmap implements Serializable {
+
+    public static final int MAX_VISITS = 0xFFFF;
+    private static final short SATURATED = (short) MAX_VISITS;
+
+    private final int width;
+    private final int height;
+    private final short[] human; // unsigned
+    private final short[] ai;
+
+    public VisitHeatmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.human = new short[Math.multiplyExact(width, height)];
+        this.ai = new short[human.length];
+    }
+
+    private VisitHeatmap(VisitHeatmap other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.human = other.human.clone();
+        this.ai = other.ai.clone();
+    }
+
+    //A copy of the counts as they are now, for a save.
+    public VisitHeatmap copy() {
+        return new VisitHeatmap(this);
+    }
+
+    //Counts the human entering (x, y). Cells outside the maze are ignored.
+    public void visitHuman(int x, int y) {
+        visit(human, x, y);
+    }
+
+    //Counts the AI entering (x, y).
+    public void visitAI(int x, int y) {
+        visit(ai, x, y);
+    }
+
+    public int getHumanVisits(int x, int y) {
+        return human[y * width + x] & MAX_VISITS;
+    }
+
+    public int getAIVisits(int x, int y) {
+        return ai[y * width + x] & MAX_VISITS;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getMemoryFootprint() {
+        return 2L * human.length + 2L * ai.length;
+    }
+
+    private void visit(short[] counts, int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) return;
+        int cell = y * width + x;
+        if (counts[cell] != SATURATED) counts[cell]++;
+    }
+
+    //Adds up the heatmaps of 'maps' on 'threads' threads. All maps must have the size of the first.
+    //Throws an IllegalStateException if interrupted rather than return a partial total.
+    public static Total aggregate(List<VisitHeatmap> maps, int threads) {
+        if (maps.isEmpty()) throw new IllegalArgumentException("No heatmaps");
+        int width = maps.get(0).width, height = maps.get(0).height;
+        AtomicInteger next = new AtomicInteger();
+        Total[] totals = new Total[Math.max(1, threads)];
+        RuntimeException[] failure = new RuntimeException[1];
+        Thread[] workers = new Thread[totals.length];
+
+        for (int t = 0; t < workers.length; t++) {
+            Total total = totals[t] = new Total(width, height);
+            workers[t] = new Thread(() -> {
+                try {
+                    int first;
+                    while ((first = next.getAndAdd(Total.CLAIM)) < maps.size()) {
+                        for (int i = first; i < Math.min(maps.size(), first + Total.CLAIM); i++) {
+                            total.add(maps.get(i));
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                    next.set(maps.size());
+                }
+            }, "heatmap-" + t);
+            workers[t].start();
+        }
+
+        Total result = new Total(width, height);
+        for (int t = 0; t < workers.length; t++) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                next.set(maps.size()); // the workers stop after their current heatmaps
+                throw new IllegalStateException("Interrupted while adding up heatmaps", e);
+            }
+            result.merge(totals[t]);
+        }
+        if (failure[0] != null) throw failure[0];
+        return result;
+    }
+
+    //Visits summed over many games. Not thread-safe: aggregate() gives every thread its own and
+    //merges them. Heatmaps are first added into int counters, which the JIT vectorizes; those are
+    //moved to the long totals before they could overflow.
+    public static class Total implements Serializable {
+
+        static final int CLAIM = 256; // heatmaps a thread takes at a time
+        private static final int FLUSH = Integer.MAX_VALUE / MAX_VISITS; // heatmaps an int counter can hold
+
+        private final int width;
+        private final int height;
+        private final long[] human;
+        private final long[] ai;
+        private long games;
+        private transient int[] pendingHuman;
+        private transient int[] pendingAI;
+        private transient int pending; // heatmaps in the pending counters
+
+        public Total(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.human = new long[Math.multiplyExact(width, height)];
+            this.ai = new long[human.length];
+        }
+
+        public void add(VisitHeatmap map) {
+            if (map.width != width || map.height != height) {
+                throw new IllegalArgumentException("Heatmap is " + map.width + "x" + map.height + ", not "
+                        + width + "x" + height);
+            }
+            if (pending == FLUSH || pendingHuman == null) flush();
+            int[] h = pendingHuman, a = pendingAI;
+            short[] mh = map.human, ma = map.ai;
+            for (int i = 0; i < h.length; i++) {
+                h[i] += mh[i] & MAX_VISITS;
+            }
+            for (int i = 0; i < a.length; i++) {
+                a[i] += ma[i] & MAX_VISITS;
+            }
+            pending++;
+            games++;
+        }
+
+        public void merge(Total other) {
+            if (other.width != width || other.height != height) {
+                throw new IllegalArgumentException("Total is " + other.width + "x" + other.height + ", not "
+                        + width + "x" + height);
+            }
+            flush();
+            other.flush();
+            for (int i = 0; i < human.length; i++) {
+                human[i] += other.human[i];
+                ai[i] += other.ai[i];
+            }
+            games += other.games;
+        }
+
+        public long getHumanVisits(int x, int y) {
+            flush();
+            return human[y * width + x];
+        }
+
+        public long getAIVisits(int x, int y) {
+            flush();
+            return ai[y * width + x];
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        //Heat of every cell (index y * width + x) from 0 (never entered) to 'levels', on a log scale
+        //of the visits of both players, so a few busy cells do not hide the rest.
+        public byte[] getLevels(int levels) {
+            flush();
+            byte[] result = new byte[human.length];
+            long most = 0;
+            for (int i = 0; i < human.length; i++) {
+                most = Math.max(most, human[i] + ai[i]);
+            }
+            if (most == 0) return result;
+            double scale = levels / Math.log1p(most);
+            for (int i = 0; i < result.length; i++) {
+                long visits = human[i] + ai[i];
+                if (visits > 0) result[i] = (byte) Math.max(1, Math.min(levels, Math.ceil(Math.log1p(visits) * scale)));
+            }
+            return result;
+        }
+
+        //Reads a total written by save(), or returns null if 'file' does not exist.
+        public static Total load(Path file) throws IOException, ClassNotFoundException {
+            if (!Files.exists(file)) return null;
+            try (InputStream in = Files.newInputStream(file);
+                 ObjectInputStream objects = new ObjectInputStream(new BufferedInputStream(in))) {
+                return (Total) objects.readObject();
+            }
+        }
+
+        //Writes the total to a temp file next to 'file' and renames it over 'file'.
+        public void save(Path file) throws IOException {
+            Path absolute = file.toAbsolutePath();
+            Files.createDirectories(absolute.getParent());
+            Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ObjectOutputStream objects = new ObjectOutputStream(new BufferedOutputStream(out))) {
+                objects.writeObject(this);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            flush();
+            out.defaultWriteObject();
+        }
+
+        //Moves the pending int counters to the totals.
+        private void flush() {
+            if (pendingHuman == null) {
+                pendingHuman = new int[human.length];
+                pendingAI = new int[ai.length];
+                return;
+            }
+            if (pending == 0) return;
+            for (int i = 0; i < human.length; i++) {
+                human[i] += pendingHuman[i];
+                ai[i] += pendingAI[i];
+                pendingHuman[i] = 0;
+                pendingAI[i] = 0;
+            }
+            pending = 0;
+        }
+    }
+}
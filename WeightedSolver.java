@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+//Cheapest paths over a maze with Terrain costs: Dijkstra where a move costs the terrain cost of
+//the cell it enters. Costs are small integers (at most Terrain.MAX_COST), so the queue is a bucket
+//queue (Dial's algorithm): MAX_COST + 1 buckets in a ring, indexed by distance, each a doubly linked
+//list threaded through int arrays. Inserting, moving a cell to a cheaper bucket and taking the next
+//cell are O(1); no nodes are allocated. The arrays are kept for the next solve of the same size.
+public class WeightedSolver {
+
+    // Direction deltas: top, right, bottom, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    private static final int BUCKETS = Terrain.MAX_COST + 1; // 16, so a bucket is distance & MASK
+    private static final int MASK = BUCKETS - 1;
+    private static final int NONE = -1;
+
+    private int[] distance = new int[0];
+    private byte[] cameFrom = new byte[0]; // direction taken into the cell
+    private int[] next = new int[0];       // bucket lists
+    private int[] previous = new int[0];
+    private final int[] head = new int[BUCKETS];
+
+    //Finds a cheapest path from (startX, startY) to (targetX, targetY). Returns an empty path if the
+    //target cannot be reached.
+    public MovePath solve(MazeGrid grid, Terrain terrain, int startX, int startY, int targetX, int targetY) {
+        int width = grid.getWidth();
+        int start = startY * width + startX;
+        int target = targetY * width + targetX;
+        if (search(grid, terrain, start, target) == Integer.MAX_VALUE) return new MovePath();
+
+        // Walk back from the target, then reverse
+        MovePath moves = new MovePath(64);
+        for (int cell = target; cell != start; ) {
+            int dir = cameFrom[cell];
+            moves.add(dir);
+            cell -= DY[dir] * width + DX[dir];
+        }
+        moves.reverse();
+        return moves;
+    }
+
+    //Cost of a cheapest path from (startX, startY) to (targetX, targetY), Integer.MAX_VALUE if unreachable.
+    public int cost(MazeGrid grid, Terrain terrain, int startX, int startY, int targetX, int targetY) {
+        int width = grid.getWidth();
+        return search(grid, terrain, startY * width + startX, targetY * width + targetX);
+    }
+
+    //Bytes of the search arrays.
+    public long getMemoryFootprint() {
+        return 13L * distance.length;
+    }
+
+    private int search(MazeGrid grid, Terrain terrain, int start, int target) {
+        int width = grid.getWidth();
+        int cells = (int) grid.getCellCount();
+        if (distance.length != cells) {
+            distance = new int[cells];
+            cameFrom = new byte[cells];
+            next = new int[cells];
+            previous = new int[cells];
+        }
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(head, NONE);
+
+        distance[start] = 0;
+        insert(start, 0);
+        int queued = 1;
+        for (int current = 0; queued > 0; ) {
+            int bucket = current & MASK;
+            int cell = head[bucket];
+            if (cell == NONE) {
+                current++; // every queued cell is within MAX_COST of 'current', so this ends
+                continue;
+            }
+            remove(cell, bucket);
+            queued--;
+            if (cell == target) break;
+
+            int cx = cell % width;
+            int cy = cell / width;
+            int openings = grid.getOpenings(cx, cy);
+            for (int dir = 0; dir < 4; dir++) {
+                if ((openings & (1 << dir)) == 0) continue;
+                int neighbour = cell + DY[dir] * width + DX[dir];
+                int cost = current + terrain.getCost(neighbour);
+                int old = distance[neighbour];
+                if (cost >= old) continue;
+                if (old == Integer.MAX_VALUE) {
+                    queued++;
+                } else {
+                    remove(neighbour, old & MASK);
+                }
+                distance[neighbour] = cost;
+                cameFrom[neighbour] = (byte) dir;
+                insert(neighbour, cost & MASK);
+            }
+        }
+        return distance[target];
+    }
+
+    private void insert(int cell, int bucket) {
+        int first = head[bucket];
+        next[cell] = first;
+        previous[cell] = NONE;
+        if (first != NONE) previous[first] = cell;
+        head[bucket] = cell;
+    }
+
+    private void remove(int cell, int bucket) {
+        int before = previous[cell], after = next[cell];
+        if (before == NONE) {
+            head[bucket] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) previous[after] = before;
+    }
+}